@@ -1,6 +1,7 @@
 package com.soulware.platform.docexcelparser.application.service;
 
 import com.soulware.platform.docexcelparser.domain.model.PatientProfile;
+import com.soulware.platform.docexcelparser.infrastructure.parser.ExcelFormat;
 import com.soulware.platform.docexcelparser.infrastructure.parser.ExcelPatientParser;
 import com.soulware.platform.docexcelparser.application.service.PatientDataService;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -150,36 +151,11 @@ public class ExcelParserTester {
     }
     
     /**
-     * Valida si los bytes corresponden a un archivo Excel válido
+     * Valida si los bytes corresponden a un archivo Excel válido: firma y, para
+     * los .xlsx, directorio central con workbook (ver ExcelFormat.detect)
      */
     private boolean isValidExcelFile(byte[] bytes) {
-        if (bytes.length < 4) {
-            return false;
-        }
-        
-        // Verificar la firma ZIP (los archivos .xlsx son archivos ZIP)
-        byte[] zipSignature1 = {0x50, 0x4B, 0x03, 0x04}; // ZIP local file header
-        byte[] zipSignature2 = {0x50, 0x4B, 0x05, 0x06}; // ZIP central directory
-        byte[] zipSignature3 = {0x50, 0x4B, 0x07, 0x08}; // ZIP end of central directory
-        
-        return startsWith(bytes, zipSignature1) || 
-               startsWith(bytes, zipSignature2) || 
-               startsWith(bytes, zipSignature3);
-    }
-    
-    /**
-     * Verifica si un array de bytes comienza con otro array de bytes
-     */
-    private boolean startsWith(byte[] array, byte[] prefix) {
-        if (array.length < prefix.length) {
-            return false;
-        }
-        for (int i = 0; i < prefix.length; i++) {
-            if (array[i] != prefix[i]) {
-                return false;
-            }
-        }
-        return true;
+        return ExcelFormat.detect(bytes) != ExcelFormat.NOT_SPREADSHEET;
     }
     
     /**
@@ -1,7 +1,10 @@
 package com.soulware.platform.docexcelparser.application.service;
 
+import com.soulware.platform.docexcelparser.domain.model.ParseOutcome;
 import com.soulware.platform.docexcelparser.domain.model.PatientProfile;
+import com.soulware.platform.docexcelparser.infrastructure.logging.AppLog;
 import com.soulware.platform.docexcelparser.infrastructure.parser.ExcelPatientParser;
+import com.soulware.platform.docexcelparser.infrastructure.parser.StreamingBase64Decoder;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -16,6 +19,8 @@ import java.util.Map;
 @ApplicationScoped
 public class PatientDataService {
 
+    private static final AppLog log = AppLog.forClass(PatientDataService.class);
+
     @Inject
     private ExcelPatientParser excelParser;
 
@@ -35,13 +40,19 @@ public class PatientDataService {
         Map<String, Object> result = new HashMap<>();
         
         try {
-            // Limpiar y validar el base64
-            String cleanBase64 = cleanBase64Data(base64Content);
-            System.out.println("Base64 limpio - Longitud: " + cleanBase64.length());
-            System.out.println("Base64 limpio - Primeros 100 caracteres: " + cleanBase64.substring(0, Math.min(100, cleanBase64.length())));
+            // Limpiar y decodificar el base64
+            byte[] excelBytes = decodeBase64Data(base64Content);
             
             // Parsear el Excel y extraer datos del paciente
-            PatientProfile patient = excelParser.parsePatientFromExcel(cleanBase64);
+            ParseOutcome outcome = excelParser.parseOutcome(excelBytes);
+            if (!outcome.isSuccess()) {
+                result.put("success", false);
+                result.put("error", outcome.getErrorMessage());
+                result.put("errorCode", outcome.getErrorCode().name());
+                result.put("message", "El archivo no contiene un Excel procesable");
+                return result;
+            }
+            PatientProfile patient = outcome.getPatient();
             
             // Crear JSON con los datos del paciente
             String patientJson = objectMapper.writeValueAsString(patient);
@@ -52,8 +63,7 @@ public class PatientDataService {
             result.put("message", "Datos del paciente extraídos exitosamente");
             
         } catch (Exception e) {
-            System.err.println("Error processing patient data: " + e.getMessage());
-            e.printStackTrace();
+            log.error(() -> "Error processing patient data: " + e.getMessage(), e);
             
             result.put("success", false);
             result.put("error", e.getMessage());
@@ -64,50 +74,27 @@ public class PatientDataService {
     }
     
     /**
-     * Limpia y valida el base64 removiendo caracteres inválidos y corrigiendo padding
+     * Limpia y decodifica el base64 en una sola pasada: descarta espacios y
+     * caracteres inválidos y completa el padding sin crear Strings intermedios
      */
-    private String cleanBase64Data(String base64Data) {
+    private byte[] decodeBase64Data(String base64Data) {
         if (base64Data == null || base64Data.trim().isEmpty()) {
             throw new IllegalArgumentException("Base64 data is null or empty");
         }
         
-        System.out.println("=== LIMPIANDO BASE64 ===");
-        System.out.println("Base64 original length: " + base64Data.length());
-        System.out.println("Base64 original (primeros 100 chars): " + base64Data.substring(0, Math.min(100, base64Data.length())));
-        
-        // Remover espacios en blanco, saltos de línea y caracteres no válidos
-        String cleaned = base64Data.replaceAll("\\s+", "")
-                                  .replaceAll("[^A-Za-z0-9+/=]", "");
-        
-        System.out.println("Base64 después de limpiar: " + cleaned.length() + " chars");
-        System.out.println("Base64 limpio (primeros 100 chars): " + cleaned.substring(0, Math.min(100, cleaned.length())));
-        
-        // Verificar que la longitud sea múltiplo de 4
-        int remainder = cleaned.length() % 4;
-        if (remainder != 0) {
-            // Agregar padding si es necesario
-            int paddingNeeded = 4 - remainder;
-            cleaned += "====".substring(0, paddingNeeded);
-            System.out.println("Padding agregado: " + paddingNeeded + " caracteres");
-        }
-        
-        // Verificar que contenga solo caracteres válidos de base64
-        if (!cleaned.matches("^[A-Za-z0-9+/]*={0,2}$")) {
-            System.err.println("Base64 contiene caracteres inválidos después de limpiar");
-            System.err.println("Base64 problemático: " + cleaned.substring(0, Math.min(200, cleaned.length())));
-            throw new IllegalArgumentException("Invalid base64 characters found after cleaning");
-        }
+        StreamingBase64Decoder decoder = new StreamingBase64Decoder(base64Data.length());
+        decoder.update(base64Data, 0, base64Data.length());
+        byte[] excelBytes = decoder.toByteArray();
         
         // Validar que el base64 tenga al menos un tamaño mínimo razonable
-        if (cleaned.length() < 100) {
+        if (decoder.getValidChars() < 100) {
             throw new IllegalArgumentException("Base64 too short, likely invalid");
         }
         
-        System.out.println("Base64 final length: " + cleaned.length());
-        System.out.println("Base64 final (primeros 100 chars): " + cleaned.substring(0, Math.min(100, cleaned.length())));
-        System.out.println("=== BASE64 LIMPIO EXITOSAMENTE ===");
+        log.debug(() -> "Base64 decodificado: " + decoder.getValidChars() + " caracteres válidos, "
+            + decoder.getSkippedChars() + " descartados, " + excelBytes.length + " bytes");
         
-        return cleaned;
+        return excelBytes;
     }
 
     /**
@@ -117,9 +104,9 @@ public class PatientDataService {
      */
     public String getPatientSummary(String base64Content) {
         try {
-            // Limpiar y validar el base64
-            String cleanBase64 = cleanBase64Data(base64Content);
-            PatientProfile patient = excelParser.parsePatientFromExcel(cleanBase64);
+            // Limpiar y decodificar el base64
+            byte[] excelBytes = decodeBase64Data(base64Content);
+            PatientProfile patient = excelParser.parsePatientFromExcel(excelBytes);
             
             StringBuilder summary = new StringBuilder();
             summary.append("📋 RESUMEN DEL PACIENTE:\n");
@@ -1,5 +1,6 @@
 package com.soulware.platform.docexcelparser.application.usecase;
 
+import com.soulware.platform.docexcelparser.domain.model.ParseOutcome;
 import com.soulware.platform.docexcelparser.domain.model.PatientProfile;
 import com.soulware.platform.docexcelparser.domain.service.IExcelParserService;
 import com.soulware.platform.docexcelparser.domain.service.IFileStorageService;
@@ -9,7 +10,9 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 
-import java.util.Base64;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -35,53 +38,81 @@ public class ProcessExcelUseCase {
      * Procesa un archivo Excel desde MinIO usando su fileKey
      * @param fileKey Clave del archivo en MinIO
      * @param fileName Nombre del archivo
-     * @return PatientProfile procesado
+     * @return Resultado con el paciente guardado, o el motivo del rechazo (no se guarda ni publica nada)
      */
-    public PatientProfile processExcelFromFileKey(String fileKey, String fileName) {
+    public ParseOutcome processExcelFromFileKey(String fileKey, String fileName) {
         try {
-            // 1. Descargar archivo desde MinIO
-            byte[] excelBytes = fileStorageService.downloadFile(fileKey);
+            // 1-2. Leer el archivo desde MinIO directamente al parser (sin copia intermedia ni Base64)
+            ParseOutcome outcome;
+            try (IFileStorageService.FileStream excelStream = fileStorageService.openStream(fileKey)) {
+                outcome = excelParserService.parseOutcome(excelStream, excelStream.getSize());
+            }
             
-            // 2. Convertir a base64 para el parser
-            String base64Content = Base64.getEncoder().encodeToString(excelBytes);
+            // 3. Guardar y publicar solo si el archivo se pudo parsear
+            return persistAndPublish(outcome);
             
-            // 3. Parsear Excel
-            PatientProfile patient = excelParserService.parsePatientFromExcel(base64Content);
-            
-            // 4. Guardar en repositorio
-            patient = patientRepository.save(patient);
-            
-            // 5. Publicar mensaje con los datos procesados
-            messagePublisherService.publishPatientData(patient);
+        } catch (Exception e) {
+            throw new RuntimeException("Error processing Excel from fileKey: " + fileKey, e);
+        }
+    }
+
+    /**
+     * Procesa un workbook con varios pacientes desde MinIO usando su fileKey
+     * (una hoja por paciente o una hoja de listado con un paciente por fila)
+     * @param fileKey Clave del archivo en MinIO
+     * @param fileName Nombre del archivo
+     * @return Resultado con los pacientes guardados en el orden del workbook, o el motivo del rechazo
+     */
+    public ParseOutcome processExcelBatchFromFileKey(String fileKey, String fileName) {
+        try {
+            // 1-2. Leer el archivo desde MinIO (completo o por rangos) y parsear todas las hojas del workbook
+            ParseOutcome outcome = excelParserService.parseBatchOutcome(fileStorageService, fileKey);
+            if (outcome == null) {
+                throw new FileNotFoundException("File not found: " + fileKey);
+            }
             
-            return patient;
+            // 3. Guardar y publicar cada paciente
+            return persistAndPublish(outcome);
             
         } catch (Exception e) {
-            throw new RuntimeException("Error processing Excel from fileKey: " + fileKey, e);
+            throw new RuntimeException("Error processing Excel batch from fileKey: " + fileKey, e);
         }
     }
 
     /**
      * Procesa un archivo Excel desde base64 directamente
      * @param base64Content Contenido base64 del Excel
-     * @return PatientProfile procesado
+     * @return Resultado con el paciente guardado, o el motivo del rechazo
      */
-    public PatientProfile processExcelFromBase64(String base64Content) {
+    public ParseOutcome processExcelFromBase64(String base64Content) {
         try {
             // 1. Parsear Excel
-            PatientProfile patient = excelParserService.parsePatientFromExcel(base64Content);
-            
-            // 2. Guardar en repositorio
-            patient = patientRepository.save(patient);
+            ParseOutcome outcome = excelParserService.parseOutcome(base64Content);
             
-            // 3. Publicar mensaje con los datos procesados
-            messagePublisherService.publishPatientData(patient);
-            
-            return patient;
+            // 2. Guardar y publicar solo si el archivo se pudo parsear
+            return persistAndPublish(outcome);
             
         } catch (Exception e) {
             throw new RuntimeException("Error processing Excel from base64", e);
         }
     }
+
+    /**
+     * Guarda y publica los pacientes de un parsing exitoso.
+     * Las entradas rechazadas o fallidas se devuelven tal cual, sin tocar el
+     * repositorio ni la cola, para no registrar pacientes "de error".
+     */
+    private ParseOutcome persistAndPublish(ParseOutcome outcome) {
+        if (!outcome.isSuccess()) {
+            return outcome;
+        }
+        List<PatientProfile> processed = new ArrayList<>(outcome.getPatients().size());
+        for (PatientProfile patient : outcome.getPatients()) {
+            PatientProfile saved = patientRepository.save(patient);
+            messagePublisherService.publishPatientData(saved);
+            processed.add(saved);
+        }
+        return outcome.withPatients(processed);
+    }
 }
 
@@ -0,0 +1,169 @@
+package com.soulware.platform.docexcelparser.domain.model;
+
+import java.util.List;
+
+/**
+ * Resultado del parsing de un archivo Excel.
+ * Distingue un parsing exitoso de una entrada rechazada (archivo vacío, Base64
+ * inválido, no es una hoja de cálculo...), de un parsing cortado por exceder sus
+ * límites de recursos o de un error inesperado, sin usar excepciones para los
+ * rechazos esperados. Incluye los tiempos de cada etapa.
+ */
+public final class ParseOutcome {
+
+    /**
+     * Estado del parsing
+     */
+    public enum Status {
+        /** Se extrajeron pacientes del archivo */
+        SUCCESS,
+        /** La entrada no es un Excel procesable; no debe guardarse ni publicarse */
+        REJECTED,
+        /** El parsing se cortó al exceder un límite de recursos o al cancelarse */
+        ABORTED,
+        /** Error inesperado durante el parsing */
+        FAILED
+    }
+
+    /**
+     * Motivo del rechazo o del error
+     */
+    public enum ErrorCode {
+        EMPTY_INPUT,
+        INPUT_TOO_SMALL,
+        INVALID_BASE64,
+        NOT_SPREADSHEET,
+        INVALID_WORKBOOK,
+        NO_SHEETS,
+        CORRUPT_CONTAINER,
+        UNSUPPORTED_ZIP_FEATURE,
+        SUSPICIOUS_COMPRESSION,
+        MISSING_PART,
+        DECODED_BYTES_LIMIT,
+        INFLATED_BYTES_LIMIT,
+        ROW_LIMIT,
+        CELL_LIMIT,
+        TIME_LIMIT,
+        CANCELLED,
+        UNEXPECTED_ERROR
+    }
+
+    private final Status status;
+    private final List<PatientProfile> patients;
+    private final ErrorCode errorCode;
+    private final String errorMessage;
+    private final String sourceFormat;
+    private final long decodeNanos;
+    private final long detectNanos;
+    private final long parseNanos;
+
+    private ParseOutcome(Status status, List<PatientProfile> patients, ErrorCode errorCode, String errorMessage,
+                         String sourceFormat, long decodeNanos, long detectNanos, long parseNanos) {
+        this.status = status;
+        this.patients = patients;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+        this.sourceFormat = sourceFormat;
+        this.decodeNanos = decodeNanos;
+        this.detectNanos = detectNanos;
+        this.parseNanos = parseNanos;
+    }
+
+    /**
+     * @param patients Pacientes extraídos (al menos uno)
+     * @param sourceFormat Formato detectado del archivo
+     * @param detectNanos Tiempo de validación y detección de formato
+     * @param parseNanos Tiempo de extracción
+     */
+    public static ParseOutcome success(List<PatientProfile> patients, String sourceFormat, long detectNanos, long parseNanos) {
+        return new ParseOutcome(Status.SUCCESS, List.copyOf(patients), null, null, sourceFormat, 0, detectNanos, parseNanos);
+    }
+
+    public static ParseOutcome rejected(ErrorCode errorCode, String errorMessage, String sourceFormat, long detectNanos, long parseNanos) {
+        return new ParseOutcome(Status.REJECTED, List.of(), errorCode, errorMessage, sourceFormat, 0, detectNanos, parseNanos);
+    }
+
+    /**
+     * Parsing cortado por un límite de recursos (tamaño, filas, celdas, tiempo) o cancelado
+     */
+    public static ParseOutcome aborted(ErrorCode errorCode, String errorMessage, String sourceFormat, long detectNanos, long parseNanos) {
+        return new ParseOutcome(Status.ABORTED, List.of(), errorCode, errorMessage, sourceFormat, 0, detectNanos, parseNanos);
+    }
+
+    public static ParseOutcome failed(String errorMessage, String sourceFormat, long detectNanos, long parseNanos) {
+        return new ParseOutcome(Status.FAILED, List.of(), ErrorCode.UNEXPECTED_ERROR, errorMessage, sourceFormat, 0, detectNanos, parseNanos);
+    }
+
+    /**
+     * Copia con el tiempo de decodificación Base64 (cuando el Excel llegó embebido)
+     */
+    public ParseOutcome withDecodeNanos(long decodeNanos) {
+        return new ParseOutcome(status, patients, errorCode, errorMessage, sourceFormat, decodeNanos, detectNanos, parseNanos);
+    }
+
+    /**
+     * Copia con otros pacientes, por ejemplo los ya guardados en el repositorio
+     */
+    public ParseOutcome withPatients(List<PatientProfile> patients) {
+        return new ParseOutcome(status, List.copyOf(patients), errorCode, errorMessage, sourceFormat, decodeNanos, detectNanos, parseNanos);
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Primer paciente extraído (el único en archivos de un solo formulario)
+     * @return Paciente o null si el parsing no fue exitoso
+     */
+    public PatientProfile getPatient() {
+        return patients.isEmpty() ? null : patients.get(0);
+    }
+
+    public List<PatientProfile> getPatients() {
+        return patients;
+    }
+
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public String getSourceFormat() {
+        return sourceFormat;
+    }
+
+    public long getDecodeNanos() {
+        return decodeNanos;
+    }
+
+    public long getDetectNanos() {
+        return detectNanos;
+    }
+
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    public long getTotalMillis() {
+        return (decodeNanos + detectNanos + parseNanos) / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        return "ParseOutcome{" +
+                "status=" + status +
+                ", patients=" + patients.size() +
+                (errorCode != null ? ", errorCode=" + errorCode + ", errorMessage='" + errorMessage + '\'' : "") +
+                ", sourceFormat=" + sourceFormat +
+                ", totalMillis=" + getTotalMillis() +
+                '}';
+    }
+}
@@ -92,6 +92,10 @@ public class PatientProfile {
     @Embedded
     private ReferredTherapist referredTherapist;
 
+    // Formato del archivo de origen detectado por el parser (no se persiste)
+    @Transient
+    private String sourceFormat;
+
     // Constructores
     public PatientProfile() {
     }
@@ -321,6 +325,14 @@ public class PatientProfile {
         this.referredTherapist.setTherapistName(therapistName);
     }
 
+    public String getSourceFormat() {
+        return sourceFormat;
+    }
+
+    public void setSourceFormat(String sourceFormat) {
+        this.sourceFormat = sourceFormat;
+    }
+
     // Método de conveniencia para obtener el nombre del médico tratante
     public String getTherapistName() {
         return referredTherapist != null ? referredTherapist.getTherapistName() : null;
@@ -1,7 +1,14 @@
 package com.soulware.platform.docexcelparser.domain.service;
 
+import com.soulware.platform.docexcelparser.domain.model.ParseOutcome;
 import com.soulware.platform.docexcelparser.domain.model.PatientProfile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+
 /**
  * Interfaz de servicio de dominio para parsing de archivos Excel
  * Define el contrato para extraer datos de pacientes desde Excel
@@ -10,9 +17,135 @@ public interface IExcelParserService {
     
     /**
      * Parsea un archivo Excel desde base64 y extrae los datos del paciente
+     * Solo para mensajes legacy que traen el Excel embebido (excelBase64)
      * @param base64Content Contenido base64 del archivo Excel
      * @return PatientProfile con los datos extraídos
      */
     PatientProfile parsePatientFromExcel(String base64Content);
+    
+    /**
+     * Parsea un archivo Excel desde sus bytes y extrae los datos del paciente
+     * @param excelBytes Bytes del archivo Excel
+     * @return PatientProfile con los datos extraídos
+     */
+    PatientProfile parsePatientFromExcel(byte[] excelBytes);
+    
+    /**
+     * Parsea un archivo Excel leído desde un stream (no cierra el stream)
+     * @param excelStream Stream con el contenido del archivo Excel
+     * @return PatientProfile con los datos extraídos
+     * @throws IOException Si hay error leyendo el stream
+     */
+    default PatientProfile parsePatientFromExcel(InputStream excelStream) throws IOException {
+        return parsePatientFromExcel(excelStream.readAllBytes());
+    }
+    
+    /**
+     * Parsea un archivo Excel leído desde un canal (no cierra el canal)
+     * @param excelChannel Canal con el contenido del archivo Excel
+     * @return PatientProfile con los datos extraídos
+     * @throws IOException Si hay error leyendo el canal
+     */
+    default PatientProfile parsePatientFromExcel(ReadableByteChannel excelChannel) throws IOException {
+        return parsePatientFromExcel(Channels.newInputStream(excelChannel));
+    }
+    
+    /**
+     * Parsea un workbook que puede contener varios pacientes: uno por hoja de
+     * formulario y uno por fila en las hojas de tipo listado
+     * @param excelBytes Bytes del archivo Excel
+     * @return Pacientes extraídos en el orden de las hojas y filas
+     */
+    default List<PatientProfile> parsePatientsFromExcel(byte[] excelBytes) {
+        return List.of(parsePatientFromExcel(excelBytes));
+    }
+    
+    /**
+     * Parsea un archivo Excel desde sus bytes devolviendo el resultado tipado:
+     * las entradas inválidas se reportan como REJECTED con su código de error
+     * en lugar de un paciente "de error"
+     * @param excelBytes Bytes del archivo Excel
+     * @return Resultado con el paciente extraído o el motivo del rechazo
+     */
+    default ParseOutcome parseOutcome(byte[] excelBytes) {
+        long start = System.nanoTime();
+        try {
+            PatientProfile patient = parsePatientFromExcel(excelBytes);
+            return ParseOutcome.success(List.of(patient), patient.getSourceFormat(), 0, System.nanoTime() - start);
+        } catch (IllegalArgumentException e) {
+            return ParseOutcome.rejected(ParseOutcome.ErrorCode.INVALID_WORKBOOK, e.getMessage(), null, 0, System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            return ParseOutcome.failed(e.getMessage(), null, 0, System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * Igual que parseOutcome pero con todos los pacientes del workbook
+     * @param excelBytes Bytes del archivo Excel
+     * @return Resultado con los pacientes extraídos o el motivo del rechazo
+     */
+    default ParseOutcome parseBatchOutcome(byte[] excelBytes) {
+        long start = System.nanoTime();
+        try {
+            List<PatientProfile> patients = parsePatientsFromExcel(excelBytes);
+            return ParseOutcome.success(patients, patients.get(0).getSourceFormat(), 0, System.nanoTime() - start);
+        } catch (IllegalArgumentException e) {
+            return ParseOutcome.rejected(ParseOutcome.ErrorCode.INVALID_WORKBOOK, e.getMessage(), null, 0, System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            return ParseOutcome.failed(e.getMessage(), null, 0, System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * Igual que parseOutcome(byte[]) leyendo el archivo desde un stream (no cierra el stream)
+     * @param excelStream Stream con el contenido del archivo Excel, por ejemplo el de IFileStorageService.openStream
+     * @param sizeHint Tamaño esperado en bytes, o -1 si no se conoce
+     * @return Resultado con el paciente extraído o el motivo del rechazo
+     * @throws IOException Si hay error leyendo el stream
+     */
+    default ParseOutcome parseOutcome(InputStream excelStream, long sizeHint) throws IOException {
+        return parseOutcome(excelStream.readAllBytes());
+    }
+    
+    /**
+     * Igual que parseBatchOutcome(byte[]) leyendo el archivo desde un stream (no cierra el stream)
+     * @param excelStream Stream con el contenido del archivo Excel
+     * @param sizeHint Tamaño esperado en bytes, o -1 si no se conoce
+     * @return Resultado con los pacientes extraídos o el motivo del rechazo
+     * @throws IOException Si hay error leyendo el stream
+     */
+    default ParseOutcome parseBatchOutcome(InputStream excelStream, long sizeHint) throws IOException {
+        return parseBatchOutcome(excelStream.readAllBytes());
+    }
+    
+    /**
+     * Igual que parseBatchOutcome(byte[]) leyendo el archivo desde el almacenamiento;
+     * la implementación puede descargar solo las partes que usa
+     * @param storage Almacenamiento de archivos
+     * @param fileKey Clave del archivo
+     * @return Resultado con los pacientes extraídos o el motivo del rechazo, o null si el archivo no existe
+     * @throws IOException Si hay error al leer el archivo
+     */
+    default ParseOutcome parseBatchOutcome(IFileStorageService storage, String fileKey) throws IOException {
+        try (IFileStorageService.FileStream excelStream = storage.fetch(fileKey)) {
+            return excelStream != null ? parseBatchOutcome(excelStream, excelStream.getSize()) : null;
+        }
+    }
+    
+    /**
+     * Parsea un archivo Excel en base64 devolviendo el resultado tipado
+     * @param base64Content Contenido base64 del archivo Excel
+     * @return Resultado con el paciente extraído o el motivo del rechazo
+     */
+    default ParseOutcome parseOutcome(String base64Content) {
+        long start = System.nanoTime();
+        try {
+            PatientProfile patient = parsePatientFromExcel(base64Content);
+            return ParseOutcome.success(List.of(patient), patient.getSourceFormat(), 0, System.nanoTime() - start);
+        } catch (IllegalArgumentException e) {
+            return ParseOutcome.rejected(ParseOutcome.ErrorCode.INVALID_BASE64, e.getMessage(), null, 0, System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            return ParseOutcome.failed(e.getMessage(), null, 0, System.nanoTime() - start);
+        }
+    }
 }
-
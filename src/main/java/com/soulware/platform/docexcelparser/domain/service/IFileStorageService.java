@@ -1,6 +1,10 @@
 package com.soulware.platform.docexcelparser.domain.service;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Interfaz de servicio de dominio para almacenamiento de archivos
@@ -16,6 +20,64 @@ public interface IFileStorageService {
      */
     byte[] downloadFile(String fileKey) throws IOException;
     
+    /**
+     * Obtiene el contenido y los metadatos del archivo con una sola petición
+     * (sin verificar antes su existencia ni consultar su información por separado)
+     * @param fileKey Clave del archivo
+     * @return Stream del archivo con su tamaño, tipo y fecha de modificación, o null
+     *         si el archivo no existe; el llamador debe cerrarlo
+     * @throws IOException Si hay error al obtener el archivo
+     */
+    FileStream fetch(String fileKey) throws IOException;
+    
+    /**
+     * Obtiene el archivo solo si cambió respecto de la versión indicada (GET condicional)
+     * @param fileKey Clave del archivo
+     * @param etag ETag de la versión que ya se tiene
+     * @return Stream del archivo si cambió; un stream vacío con isNotModified() si no
+     *         cambió; o null si el archivo no existe
+     * @throws IOException Si hay error al obtener el archivo
+     */
+    FileStream fetchIfNoneMatch(String fileKey, String etag) throws IOException;
+    
+    /**
+     * Lee solo un rango de bytes del archivo (GET con cabecera Range)
+     * @param fileKey Clave del archivo
+     * @param offset Posición del primer byte, o negativo para leer los últimos length bytes
+     * @param length Cantidad de bytes a leer (se devuelven menos si el archivo termina antes)
+     * @param ifMatch ETag que debe tener el archivo, o null para no comprobarlo
+     * @return Rango leído con el tamaño total y el ETag del archivo, o null si el archivo no existe
+     * @throws IOException Si hay error al leer o el archivo ya no tiene el ETag indicado
+     */
+    ByteRange readRange(String fileKey, long offset, int length, String ifMatch) throws IOException;
+    
+    /**
+     * Indica que el archivo se va a pedir pronto: la implementación puede empezar
+     * a descargarlo en segundo plano para que el próximo fetch no espere la red.
+     * Por defecto no hace nada.
+     * @param fileKey Clave del archivo
+     */
+    default void prefetch(String fileKey) {
+    }
+    
+    /**
+     * Abre el contenido del archivo como stream, sin cargarlo completo en memoria:
+     * los bytes se leen de la red a medida que se consumen
+     * @param fileKey Clave del archivo
+     * @return Stream del archivo con su tamaño; el llamador debe cerrarlo
+     * @throws IOException Si el archivo no existe o no se puede abrir
+     */
+    FileStream openStream(String fileKey) throws IOException;
+    
+    /**
+     * Copia el contenido del archivo al canal con un buffer de tamaño fijo
+     * @param fileKey Clave del archivo
+     * @param target Canal de destino (no se cierra)
+     * @return Bytes copiados
+     * @throws IOException Si hay error al leer el archivo o al escribir en el canal
+     */
+    long readInto(String fileKey, WritableByteChannel target) throws IOException;
+    
     /**
      * Verifica si un archivo existe
      * @param fileKey Clave del archivo
@@ -37,6 +99,182 @@ public interface IFileStorageService {
      */
     void deleteFile(String fileKey) throws IOException;
     
+    /**
+     * Programa la eliminación de un archivo en segundo plano; las eliminaciones
+     * pendientes se envían agrupadas. Los errores se registran y no se propagan.
+     * @param fileKey Clave del archivo
+     */
+    void deleteFileLater(String fileKey);
+    
+    /**
+     * Stream del contenido de un archivo junto con los metadatos de la respuesta
+     */
+    class FileStream extends FilterInputStream {
+        private final long size;
+        private final String contentType;
+        private final String lastModified;
+        private final String etag;
+        private final boolean notModified;
+        // Contenido completo si la respuesta ya está en memoria (ver ofBytes)
+        private final byte[] content;
+        private final ByteArrayInputStream contentStream;
+        
+        /**
+         * @param in Stream de la respuesta del almacenamiento
+         * @param size Tamaño en bytes, o -1 si no se conoce
+         * @param contentType Tipo de contenido
+         */
+        public FileStream(InputStream in, long size, String contentType) {
+            this(in, size, contentType, "");
+        }
+        
+        /**
+         * @param in Stream de la respuesta del almacenamiento
+         * @param size Tamaño en bytes, o -1 si no se conoce
+         * @param contentType Tipo de contenido
+         * @param lastModified Fecha de modificación, o vacío si no se conoce
+         */
+        public FileStream(InputStream in, long size, String contentType, String lastModified) {
+            this(in, size, contentType, lastModified, null);
+        }
+        
+        /**
+         * @param in Stream de la respuesta del almacenamiento
+         * @param size Tamaño en bytes, o -1 si no se conoce
+         * @param contentType Tipo de contenido
+         * @param lastModified Fecha de modificación, o vacío si no se conoce
+         * @param etag ETag de la versión obtenida, o null si no se conoce
+         */
+        public FileStream(InputStream in, long size, String contentType, String lastModified, String etag) {
+            this(in, size, contentType, lastModified, etag, false);
+        }
+        
+        private FileStream(InputStream in, long size, String contentType, String lastModified, String etag,
+                           boolean notModified) {
+            super(in);
+            this.size = size;
+            this.contentType = contentType;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.notModified = notModified;
+            this.content = null;
+            this.contentStream = null;
+        }
+        
+        private FileStream(ByteArrayInputStream contentStream, byte[] content, String contentType,
+                           String lastModified, String etag) {
+            super(contentStream);
+            this.size = content.length;
+            this.contentType = contentType;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.notModified = false;
+            this.content = content;
+            this.contentStream = contentStream;
+        }
+        
+        /**
+         * Respuesta ya descargada completa en memoria; quien la consume puede tomar
+         * el arreglo con getBufferedContent en lugar de leer el stream y copiarlo
+         * @param content Contenido completo (no se copia)
+         */
+        public static FileStream ofBytes(byte[] content, String contentType, String lastModified, String etag) {
+            return new FileStream(new ByteArrayInputStream(content), content, contentType, lastModified, etag);
+        }
+        
+        /**
+         * Respuesta de un GET condicional cuya versión no cambió: sin contenido
+         * @param etag ETag de la versión vigente
+         */
+        public static FileStream notModified(String etag) {
+            return new FileStream(InputStream.nullInputStream(), 0, "application/octet-stream", "", etag, true);
+        }
+        
+        /**
+         * @return Tamaño en bytes, o -1 si no se conoce
+         */
+        public long getSize() {
+            return size;
+        }
+        
+        public String getContentType() {
+            return contentType;
+        }
+        
+        public String getLastModified() {
+            return lastModified;
+        }
+        
+        /**
+         * @return ETag de la versión obtenida, o null si no se conoce
+         */
+        public String getEtag() {
+            return etag;
+        }
+        
+        /**
+         * @return true si es la respuesta de un GET condicional sin cambios
+         */
+        public boolean isNotModified() {
+            return notModified;
+        }
+        
+        /**
+         * Contenido completo si la respuesta ya está en memoria y todavía no se
+         * leyó nada del stream
+         * @return El arreglo de la respuesta (sin copiar), o null
+         */
+        public byte[] getBufferedContent() {
+            return contentStream != null && contentStream.available() == content.length ? content : null;
+        }
+        
+        /**
+         * Metadatos de la respuesta, los mismos que devuelve getFileInfo
+         */
+        public FileInfo getInfo() {
+            return new FileInfo(size, contentType, lastModified);
+        }
+    }
+    
+    /**
+     * Rango de bytes leído de un archivo
+     */
+    class ByteRange {
+        private final byte[] bytes;
+        private final long offset;
+        private final long totalSize;
+        private final String etag;
+        
+        /**
+         * @param bytes Contenido del rango
+         * @param offset Posición del primer byte dentro del archivo
+         * @param totalSize Tamaño total del archivo
+         * @param etag ETag del archivo, o null si no se conoce
+         */
+        public ByteRange(byte[] bytes, long offset, long totalSize, String etag) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.totalSize = totalSize;
+            this.etag = etag;
+        }
+        
+        public byte[] getBytes() {
+            return bytes;
+        }
+        
+        public long getOffset() {
+            return offset;
+        }
+        
+        public long getTotalSize() {
+            return totalSize;
+        }
+        
+        public String getEtag() {
+            return etag;
+        }
+    }
+    
     /**
      * Clase para información del archivo
      */
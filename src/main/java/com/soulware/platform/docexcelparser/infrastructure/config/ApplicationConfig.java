@@ -1,6 +1,7 @@
 package com.soulware.platform.docexcelparser.infrastructure.config;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import java.nio.file.Path;
 import java.util.logging.Logger;
 
 /**
@@ -146,6 +147,253 @@ public class ApplicationConfig {
             System.getenv("S3_REGION") : "us-east-1";
     }
     
+    /**
+     * Directorio de la caché local de archivos descargados
+     * Variable de entorno: S3_CACHE_DIR
+     * Default: docexcelparser-s3-cache dentro del directorio temporal del sistema
+     */
+    public String getS3CacheDir() {
+        String dir = System.getenv("S3_CACHE_DIR");
+        return dir != null && !dir.isBlank() ? dir.trim()
+            : Path.of(System.getProperty("java.io.tmpdir"), "docexcelparser-s3-cache").toString();
+    }
+    
+    /**
+     * Tamaño máximo en disco de la caché local de archivos descargados. Solo
+     * conviene si los mismos archivos se leen varias veces: el listener elimina
+     * cada archivo al procesarlo, así que ahí la caché nunca acierta
+     * Variable de entorno: S3_CACHE_MAX_BYTES (0 = caché desactivada)
+     * Default: 0
+     */
+    public long getS3CacheMaxBytes() {
+        return getNonNegativeLong("S3_CACHE_MAX_BYTES", 0);
+    }
+    
+    /**
+     * Descargas simultáneas como máximo con el cliente S3 asíncrono, incluidas las anticipadas
+     * Variable de entorno: S3_ASYNC_DOWNLOADS (0 = solo cliente síncrono, sin descargas anticipadas)
+     * Default: 4
+     */
+    public int getS3AsyncDownloads() {
+        String downloadsStr = System.getenv("S3_ASYNC_DOWNLOADS");
+        if (downloadsStr != null) {
+            try {
+                return Math.max(0, Integer.parseInt(downloadsStr.trim()));
+            } catch (NumberFormatException e) {
+                logger.warning("Invalid S3_ASYNC_DOWNLOADS value: " + downloadsStr + ", using default 4");
+            }
+        }
+        return 4;
+    }
+    
+    /**
+     * Bytes que se piden del final de un .xlsx para leer su directorio central y, a
+     * partir de él, descargar solo las partes que usa el parser (lecturas por rango).
+     * Los archivos más chicos llegan completos en esa primera petición.
+     * Variable de entorno: S3_RANGED_READ_TAIL_BYTES (0 = descargar siempre el archivo completo)
+     * Default: 0
+     */
+    public int getS3RangedReadTailBytes() {
+        String tailStr = System.getenv("S3_RANGED_READ_TAIL_BYTES");
+        if (tailStr != null) {
+            try {
+                return Math.max(0, Integer.parseInt(tailStr.trim()));
+            } catch (NumberFormatException e) {
+                logger.warning("Invalid S3_RANGED_READ_TAIL_BYTES value: " + tailStr + ", using default 0");
+            }
+        }
+        return 0;
+    }
+    
+    // ========== Parser Configuration ==========
+    
+    /**
+     * Motor de parsing de Excel: "streaming" (SAX sobre el XML de la hoja) o "dom" (XSSFWorkbook)
+     * Variable de entorno: EXCEL_PARSER_ENGINE
+     * Default: streaming
+     */
+    public String getExcelParserEngine() {
+        return System.getenv("EXCEL_PARSER_ENGINE") != null ? 
+            System.getenv("EXCEL_PARSER_ENGINE") : "streaming";
+    }
+    
+    /**
+     * Indica si se debe usar el motor streaming (el DOM queda como respaldo)
+     */
+    public boolean isStreamingParserEnabled() {
+        return !"dom".equalsIgnoreCase(getExcelParserEngine().trim());
+    }
+    
+    /**
+     * Cantidad máxima de planes de layout de formularios en la caché LRU del parser
+     * Variable de entorno: EXCEL_LAYOUT_CACHE_SIZE
+     * Default: 32
+     */
+    public int getLayoutCacheSize() {
+        String sizeStr = System.getenv("EXCEL_LAYOUT_CACHE_SIZE");
+        if (sizeStr != null) {
+            try {
+                return Math.max(1, Integer.parseInt(sizeStr.trim()));
+            } catch (NumberFormatException e) {
+                logger.warning("Invalid EXCEL_LAYOUT_CACHE_SIZE value: " + sizeStr + ", using default 32");
+            }
+        }
+        return 32;
+    }
+    
+    /**
+     * Hilos del pool fork-join que extrae en paralelo las hojas de un workbook con varios pacientes
+     * Variable de entorno: EXCEL_BATCH_PARALLELISM
+     * Default: min(4, procesadores disponibles)
+     */
+    public int getExcelBatchParallelism() {
+        int defaultParallelism = Math.min(4, Runtime.getRuntime().availableProcessors());
+        String parallelismStr = System.getenv("EXCEL_BATCH_PARALLELISM");
+        if (parallelismStr != null) {
+            try {
+                return Math.max(1, Integer.parseInt(parallelismStr.trim()));
+            } catch (NumberFormatException e) {
+                logger.warning("Invalid EXCEL_BATCH_PARALLELISM value: " + parallelismStr
+                    + ", using default " + defaultParallelism);
+            }
+        }
+        return defaultParallelism;
+    }
+    
+    /**
+     * Filas de un formulario que se leen como máximo para buscar los datos del paciente;
+     * la lectura termina antes si todos los campos ya se resolvieron. No aplica a listados.
+     * Variable de entorno: EXCEL_FORM_ROW_BUDGET (0 = sin límite)
+     * Default: 2000
+     */
+    public int getExcelFormRowBudget() {
+        String budgetStr = System.getenv("EXCEL_FORM_ROW_BUDGET");
+        if (budgetStr != null) {
+            try {
+                return Math.max(0, Integer.parseInt(budgetStr.trim()));
+            } catch (NumberFormatException e) {
+                logger.warning("Invalid EXCEL_FORM_ROW_BUDGET value: " + budgetStr + ", using default 2000");
+            }
+        }
+        return 2000;
+    }
+    
+    /**
+     * Tamaño máximo de un archivo Excel ya decodificado; los mayores se descartan sin parsear
+     * Variable de entorno: EXCEL_MAX_DECODED_BYTES (0 = sin límite)
+     * Default: 52428800 (50 MB)
+     */
+    public long getExcelMaxDecodedBytes() {
+        return getNonNegativeLong("EXCEL_MAX_DECODED_BYTES", 50L * 1024 * 1024);
+    }
+    
+    /**
+     * Bytes descomprimidos como máximo de las partes de un .xlsx (protege contra bombas ZIP)
+     * Variable de entorno: EXCEL_MAX_INFLATED_BYTES (0 = sin límite)
+     * Default: 268435456 (256 MB)
+     */
+    public long getExcelMaxInflatedBytes() {
+        return getNonNegativeLong("EXCEL_MAX_INFLATED_BYTES", 256L * 1024 * 1024);
+    }
+    
+    /**
+     * Filas que se recorren como máximo en un archivo, sumando todas sus hojas
+     * Variable de entorno: EXCEL_MAX_ROWS (0 = sin límite)
+     * Default: 1000000
+     */
+    public long getExcelMaxRows() {
+        return getNonNegativeLong("EXCEL_MAX_ROWS", 1_000_000L);
+    }
+    
+    /**
+     * Celdas que se recorren como máximo en un archivo, sumando todas sus hojas
+     * Variable de entorno: EXCEL_MAX_CELLS (0 = sin límite)
+     * Default: 10000000
+     */
+    public long getExcelMaxCells() {
+        return getNonNegativeLong("EXCEL_MAX_CELLS", 10_000_000L);
+    }
+    
+    /**
+     * Tiempo máximo de parsing de un archivo en milisegundos
+     * Variable de entorno: EXCEL_PARSE_TIMEOUT_MS (0 = sin límite)
+     * Default: 60000
+     */
+    public long getExcelParseTimeoutMillis() {
+        return getNonNegativeLong("EXCEL_PARSE_TIMEOUT_MS", 60_000L);
+    }
+    
+    /**
+     * Lee un límite numérico no negativo; un valor inválido usa el default con una advertencia
+     */
+    private long getNonNegativeLong(String name, long defaultValue) {
+        String valueStr = System.getenv(name);
+        if (valueStr != null) {
+            try {
+                return Math.max(0, Long.parseLong(valueStr.trim()));
+            } catch (NumberFormatException e) {
+                logger.warning("Invalid " + name + " value: " + valueStr + ", using default " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+    
+    /**
+     * Archivo JSON externo con el mapeo de etiquetas del formulario a campos del paciente
+     * Variable de entorno: EXCEL_FIELD_MAPPING_FILE
+     * Default: null (se usa patient-field-mapping.json incluido en la aplicación)
+     */
+    public String getExcelFieldMappingFile() {
+        String path = System.getenv("EXCEL_FIELD_MAPPING_FILE");
+        return path != null && !path.isBlank() ? path.trim() : null;
+    }
+    
+    // ========== Logging Configuration ==========
+    
+    /**
+     * Nivel mínimo de log de la aplicación: DEBUG, INFO, WARN, ERROR u OFF
+     * Variable de entorno: LOG_LEVEL
+     * Default: INFO
+     */
+    public String getLogLevel() {
+        return System.getenv("LOG_LEVEL") != null ? 
+            System.getenv("LOG_LEVEL") : "INFO";
+    }
+    
+    /**
+     * Capacidad de la cola del appender asíncrono; si se llena, los mensajes se descartan
+     * Variable de entorno: LOG_QUEUE_CAPACITY
+     * Default: 8192
+     */
+    public int getLogQueueCapacity() {
+        String capacityStr = System.getenv("LOG_QUEUE_CAPACITY");
+        if (capacityStr != null) {
+            try {
+                return Math.max(16, Integer.parseInt(capacityStr.trim()));
+            } catch (NumberFormatException e) {
+                logger.warning("Invalid LOG_QUEUE_CAPACITY value: " + capacityStr + ", using default 8192");
+            }
+        }
+        return 8192;
+    }
+    
+    /**
+     * Cada cuántos mensajes se incluye una vista previa del payload (Base64, JSON) en los logs
+     * Variable de entorno: LOG_PREVIEW_SAMPLE_RATE
+     * Default: 100 (1 de cada 100)
+     */
+    public int getLogPreviewSampleRate() {
+        String rateStr = System.getenv("LOG_PREVIEW_SAMPLE_RATE");
+        if (rateStr != null) {
+            try {
+                return Math.max(1, Integer.parseInt(rateStr.trim()));
+            } catch (NumberFormatException e) {
+                logger.warning("Invalid LOG_PREVIEW_SAMPLE_RATE value: " + rateStr + ", using default 100");
+            }
+        }
+        return 100;
+    }
+    
     // ========== Server Configuration ==========
     
     /**
@@ -189,6 +437,21 @@ public class ApplicationConfig {
         logger.info("S3 Endpoint: " + getS3Endpoint());
         logger.info("S3 Bucket: " + getS3Bucket());
         logger.info("S3 Region: " + getS3Region());
+        logger.info("S3 Cache: " + (getS3CacheMaxBytes() > 0
+            ? getS3CacheMaxBytes() + " bytes in " + getS3CacheDir() : "disabled"));
+        logger.info("S3 Async Downloads: " + getS3AsyncDownloads());
+        logger.info("S3 Ranged Read Tail Bytes: " + getS3RangedReadTailBytes());
+        logger.info("Excel Parser Engine: " + getExcelParserEngine());
+        logger.info("Excel Layout Cache Size: " + getLayoutCacheSize());
+        logger.info("Excel Batch Parallelism: " + getExcelBatchParallelism());
+        logger.info("Excel Form Row Budget: " + getExcelFormRowBudget());
+        logger.info("Excel Parse Limits: decoded=" + getExcelMaxDecodedBytes() + " bytes, inflated="
+            + getExcelMaxInflatedBytes() + " bytes, rows=" + getExcelMaxRows() + ", cells=" + getExcelMaxCells()
+            + ", timeout=" + getExcelParseTimeoutMillis() + " ms");
+        logger.info("Excel Field Mapping File: " + (getExcelFieldMappingFile() != null ? getExcelFieldMappingFile() : "(default)"));
+        logger.info("Log Level: " + getLogLevel());
+        logger.info("Log Queue Capacity: " + getLogQueueCapacity());
+        logger.info("Log Preview Sample Rate: " + getLogPreviewSampleRate());
         logger.info("Server Host: " + getServerHost());
         logger.info("Server Port: " + getServerPort());
         logger.info("=================================");
@@ -1,6 +1,7 @@
 package com.soulware.platform.docexcelparser.infrastructure.config;
 
 import com.soulware.platform.docexcelparser.application.service.PatientDataService;
+import com.soulware.platform.docexcelparser.infrastructure.messaging.ExcelInputEnvelope;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -766,18 +767,18 @@ public class JMSConfig {
         System.out.println("Longitud del mensaje: " + message.length());
         System.out.println("Primeros 200 caracteres: " + message.substring(0, Math.min(200, message.length())));
         
-        // Método 1: Buscar en formato JSON estándar
-        if (message.contains("\"excelBase64\"")) {
-            System.out.println("Formato JSON detectado");
-            int startIndex = message.indexOf("\"excelBase64\":\"");
-            if (startIndex != -1) {
-                startIndex += "\"excelBase64\":\"".length();
-                int endIndex = message.indexOf("\"", startIndex);
-                if (endIndex != -1) {
-                    String base64 = message.substring(startIndex, endIndex);
+        // Método 1: Leer el sobre JSON por tokens (sin árbol ni búsquedas con indexOf)
+        if (message.trim().startsWith("{")) {
+            try {
+                ExcelInputEnvelope envelope = ExcelInputEnvelope.read(message);
+                if (envelope.hasExcelBase64()) {
+                    System.out.println("Formato JSON detectado");
+                    String base64 = envelope.readExcelBase64();
                     System.out.println("ExcelBase64 encontrado en JSON: " + base64.length() + " caracteres");
                     return base64;
                 }
+            } catch (IOException e) {
+                System.out.println("Mensaje no es JSON válido, buscando Base64 en el texto: " + e.getMessage());
             }
         }
         
@@ -0,0 +1,169 @@
+package com.soulware.platform.docexcelparser.infrastructure.logging;
+
+import com.soulware.platform.docexcelparser.infrastructure.config.ApplicationConfig;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Fachada de logging para las rutas calientes (listener JMS, parser, envío de pacientes).
+ *
+ * El nivel se compara antes de construir cualquier String: los mensajes con
+ * concatenaciones se pasan como Supplier y solo se evalúan si el nivel está
+ * habilitado. La escritura la hace un appender asíncrono con cola acotada, así
+ * que registrar un mensaje nunca bloquea el procesamiento.
+ *
+ * Configuración (ver ApplicationConfig): LOG_LEVEL, LOG_QUEUE_CAPACITY y
+ * LOG_PREVIEW_SAMPLE_RATE.
+ */
+public final class AppLog {
+
+    private static final LogLevel LEVEL;
+    private static final int PREVIEW_SAMPLE_RATE;
+    private static final AsyncLogAppender APPENDER;
+    private static final AtomicLong PREVIEW_COUNTER = new AtomicLong();
+
+    static {
+        ApplicationConfig config = new ApplicationConfig();
+        LEVEL = LogLevel.parse(config.getLogLevel(), LogLevel.INFO);
+        PREVIEW_SAMPLE_RATE = config.getLogPreviewSampleRate();
+        APPENDER = new AsyncLogAppender(config.getLogQueueCapacity());
+    }
+
+    private final String name;
+
+    private AppLog(String name) {
+        this.name = name;
+    }
+
+    public static AppLog forClass(Class<?> type) {
+        return new AppLog(type.getSimpleName());
+    }
+
+    public static LogLevel getLevel() {
+        return LEVEL;
+    }
+
+    /**
+     * Mensajes descartados desde el arranque porque la cola del appender estaba llena
+     */
+    public static long getDroppedCount() {
+        return APPENDER.getDroppedCount();
+    }
+
+    public boolean isEnabled(LogLevel level) {
+        return level != LogLevel.OFF && level.compareTo(LEVEL) >= 0;
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(LogLevel.DEBUG);
+    }
+
+    public boolean isInfoEnabled() {
+        return isEnabled(LogLevel.INFO);
+    }
+
+    // ========== DEBUG ==========
+
+    public void debug(String message) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            APPENDER.append(LogLevel.DEBUG, name, message, null);
+        }
+    }
+
+    public void debug(Supplier<String> message) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            APPENDER.append(LogLevel.DEBUG, name, message.get(), null);
+        }
+    }
+
+    // ========== INFO ==========
+
+    public void info(String message) {
+        if (isEnabled(LogLevel.INFO)) {
+            APPENDER.append(LogLevel.INFO, name, message, null);
+        }
+    }
+
+    public void info(Supplier<String> message) {
+        if (isEnabled(LogLevel.INFO)) {
+            APPENDER.append(LogLevel.INFO, name, message.get(), null);
+        }
+    }
+
+    // ========== WARN ==========
+
+    public void warn(String message) {
+        if (isEnabled(LogLevel.WARN)) {
+            APPENDER.append(LogLevel.WARN, name, message, null);
+        }
+    }
+
+    public void warn(Supplier<String> message) {
+        if (isEnabled(LogLevel.WARN)) {
+            APPENDER.append(LogLevel.WARN, name, message.get(), null);
+        }
+    }
+
+    public void warn(String message, Throwable error) {
+        if (isEnabled(LogLevel.WARN)) {
+            APPENDER.append(LogLevel.WARN, name, message, error);
+        }
+    }
+
+    public void warn(Supplier<String> message, Throwable error) {
+        if (isEnabled(LogLevel.WARN)) {
+            APPENDER.append(LogLevel.WARN, name, message.get(), error);
+        }
+    }
+
+    // ========== ERROR ==========
+
+    public void error(String message) {
+        if (isEnabled(LogLevel.ERROR)) {
+            APPENDER.append(LogLevel.ERROR, name, message, null);
+        }
+    }
+
+    public void error(Supplier<String> message) {
+        if (isEnabled(LogLevel.ERROR)) {
+            APPENDER.append(LogLevel.ERROR, name, message.get(), null);
+        }
+    }
+
+    public void error(String message, Throwable error) {
+        if (isEnabled(LogLevel.ERROR)) {
+            APPENDER.append(LogLevel.ERROR, name, message, error);
+        }
+    }
+
+    public void error(Supplier<String> message, Throwable error) {
+        if (isEnabled(LogLevel.ERROR)) {
+            APPENDER.append(LogLevel.ERROR, name, message.get(), error);
+        }
+    }
+
+    // ========== Previews ==========
+
+    /**
+     * Vista previa muestreada de un payload (Base64, JSON de paciente, cuerpo del mensaje).
+     * Solo 1 de cada LOG_PREVIEW_SAMPLE_RATE llamadas incluye el contenido; el resto
+     * devuelve únicamente el tamaño. Debe usarse dentro de un Supplier para que ni
+     * siquiera el conteo se haga con el nivel deshabilitado.
+     * @param payload Contenido a mostrar
+     * @param maxChars Máximo de caracteres a incluir
+     */
+    public static String preview(CharSequence payload, int maxChars) {
+        if (payload == null) {
+            return "null";
+        }
+        int length = payload.length();
+        if (PREVIEW_COUNTER.getAndIncrement() % PREVIEW_SAMPLE_RATE != 0) {
+            return "<" + length + " chars>";
+        }
+        if (length <= maxChars) {
+            return payload.toString();
+        }
+        return payload.subSequence(0, maxChars) + "... <" + length + " chars>";
+    }
+}
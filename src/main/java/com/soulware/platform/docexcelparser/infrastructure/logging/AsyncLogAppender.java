@@ -0,0 +1,130 @@
+package com.soulware.platform.docexcelparser.infrastructure.logging;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appender asíncrono con cola acotada.
+ * Los hilos que registran solo encolan el evento (sin formatear ni escribir);
+ * un hilo daemon arma la línea con fecha, nivel y logger y la escribe en
+ * System.out/System.err. Si la cola está llena el evento se descarta y se
+ * cuenta, en lugar de bloquear al listener JMS o al parser.
+ */
+final class AsyncLogAppender {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private final BlockingQueue<Event> queue;
+    // Descartados desde el último aviso y total desde el arranque
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong totalDropped = new AtomicLong();
+    private final PrintStream out;
+    private final PrintStream err;
+
+    AsyncLogAppender(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.out = System.out;
+        this.err = System.err;
+        Thread drainer = new Thread(this::drain, "app-log-appender");
+        drainer.setDaemon(true);
+        drainer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "app-log-flush"));
+    }
+
+    /**
+     * Encola un evento sin bloquear
+     */
+    void append(LogLevel level, String logger, String message, Throwable error) {
+        if (!queue.offer(new Event(System.currentTimeMillis(), level, logger, Thread.currentThread().getName(), message, error))) {
+            dropped.incrementAndGet();
+            totalDropped.incrementAndGet();
+        }
+    }
+
+    long getDroppedCount() {
+        return totalDropped.get();
+    }
+
+    private void drain() {
+        while (true) {
+            try {
+                Event event = queue.poll(1, TimeUnit.SECONDS);
+                if (event != null) {
+                    write(event);
+                }
+                reportDropped();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flush();
+                return;
+            } catch (RuntimeException e) {
+                // Un evento mal formado no debe detener el hilo de escritura
+                err.println("Log appender error: " + e);
+            }
+        }
+    }
+
+    /**
+     * Escribe lo que quede en la cola (al apagar la aplicación)
+     */
+    private void flush() {
+        Event event;
+        while ((event = queue.poll()) != null) {
+            write(event);
+        }
+        reportDropped();
+        out.flush();
+        err.flush();
+    }
+
+    private void reportDropped() {
+        long count = dropped.getAndSet(0);
+        if (count > 0) {
+            err.println(TIMESTAMP.format(LocalDateTime.now()) + " WARN  [AsyncLogAppender] "
+                + count + " log messages dropped (queue full)");
+        }
+    }
+
+    private void write(Event event) {
+        PrintStream stream = event.level.compareTo(LogLevel.WARN) >= 0 ? err : out;
+        StringBuilder line = new StringBuilder(event.message.length() + 64);
+        line.append(TIMESTAMP.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(event.timestamp), ZoneId.systemDefault())))
+            .append(' ').append(pad(event.level.name()))
+            .append(" [").append(event.thread).append("] ")
+            .append(event.logger).append(" - ")
+            .append(event.message);
+        stream.println(line);
+        if (event.error != null) {
+            event.error.printStackTrace(stream);
+        }
+    }
+
+    private static String pad(String level) {
+        return level.length() >= 5 ? level : (level + "     ").substring(0, 5);
+    }
+
+    private static final class Event {
+        final long timestamp;
+        final LogLevel level;
+        final String logger;
+        final String thread;
+        final String message;
+        final Throwable error;
+
+        Event(long timestamp, LogLevel level, String logger, String thread, String message, Throwable error) {
+            this.timestamp = timestamp;
+            this.level = level;
+            this.logger = logger;
+            this.thread = thread;
+            this.message = message != null ? message : "null";
+            this.error = error;
+        }
+    }
+}
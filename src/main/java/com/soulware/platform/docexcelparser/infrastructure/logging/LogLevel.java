@@ -0,0 +1,41 @@
+package com.soulware.platform.docexcelparser.infrastructure.logging;
+
+/**
+ * Niveles del log de la aplicación, de menor a mayor severidad
+ */
+public enum LogLevel {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    OFF;
+
+    /**
+     * Interpreta el nivel configurado (sin distinguir mayúsculas)
+     * @param value Nombre del nivel, p. ej. "debug" o "WARN"
+     * @param fallback Nivel a usar si el valor es nulo o desconocido
+     */
+    public static LogLevel parse(String value, LogLevel fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        switch (value.trim().toUpperCase()) {
+            case "DEBUG":
+            case "FINE":
+            case "TRACE":
+                return DEBUG;
+            case "INFO":
+                return INFO;
+            case "WARN":
+            case "WARNING":
+                return WARN;
+            case "ERROR":
+            case "SEVERE":
+                return ERROR;
+            case "OFF":
+                return OFF;
+            default:
+                return fallback;
+        }
+    }
+}
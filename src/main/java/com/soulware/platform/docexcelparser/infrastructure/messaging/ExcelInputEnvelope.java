@@ -0,0 +1,254 @@
+package com.soulware.platform.docexcelparser.infrastructure.messaging;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.soulware.platform.docexcelparser.infrastructure.parser.StreamingBase64Decoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+
+/**
+ * Sobre (envelope) de los mensajes de la cola excel-input leído con el parser de
+ * tokens de Jackson, sin construir un árbol JsonNode.
+ *
+ * Los campos pequeños (messageId, fileName, status, fileKey) se leen en una pasada.
+ * El valor de excelBase64, que puede ocupar varios MB, se salta sin materializarlo
+ * y solo se recuerda su posición; al pedir el Excel se vuelve a abrir el parser en
+ * esa posición y se decodifica directamente desde el JSON, sin copiar el String.
+ */
+public final class ExcelInputEnvelope {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    // Tolera padding faltante; los saltos de línea y espacios ya se ignoran al decodificar
+    private static final Base64Variant LENIENT_BASE64 =
+        Base64Variants.MIME_NO_LINEFEEDS.withReadPadding(Base64Variant.PaddingReadBehaviour.PADDING_ALLOWED);
+
+    private final String text;
+    private final byte[] bytes;
+
+    private String messageId;
+    private String fileName;
+    private String status;
+    private String fileKey;
+    // Posición (carácter o byte según la fuente) donde empieza el valor de excelBase64
+    private long excelBase64Offset = -1;
+    private long excelBase64Length;
+
+    private ExcelInputEnvelope(String text, byte[] bytes) {
+        this.text = text;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Lee el sobre desde el texto de un TextMessage
+     * @throws IOException Si el contenido no es un objeto JSON válido
+     */
+    public static ExcelInputEnvelope read(String json) throws IOException {
+        ExcelInputEnvelope envelope = new ExcelInputEnvelope(json, null);
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            envelope.readFields(parser);
+        }
+        return envelope;
+    }
+
+    /**
+     * Lee el sobre desde el cuerpo UTF-8 de un BytesMessage, sin convertirlo a String
+     * @throws IOException Si el contenido no es un objeto JSON válido
+     */
+    public static ExcelInputEnvelope read(byte[] json) throws IOException {
+        ExcelInputEnvelope envelope = new ExcelInputEnvelope(null, json);
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            envelope.readFields(parser);
+        }
+        return envelope;
+    }
+
+    private void readFields(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Message is not a JSON object");
+        }
+        boolean measuringExcel = false;
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            if (measuringExcel) {
+                excelBase64Length = offsetOf(parser) - excelBase64Offset;
+                measuringExcel = false;
+            }
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "messageId":
+                    messageId = parser.getValueAsString();
+                    break;
+                case "fileName":
+                    fileName = parser.getValueAsString();
+                    break;
+                case "status":
+                    status = parser.getValueAsString();
+                    break;
+                case "fileKey":
+                    fileKey = parser.getValueAsString();
+                    break;
+                case "excelBase64":
+                    if (value == JsonToken.VALUE_STRING) {
+                        // No se llama getText(): Jackson salta el valor sin decodificarlo ni copiarlo
+                        excelBase64Offset = offsetOf(parser);
+                        measuringExcel = true;
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        if (measuringExcel) {
+            excelBase64Length = (token != null ? offsetOf(parser) : sourceLength()) - excelBase64Offset;
+        }
+    }
+
+    private long offsetOf(JsonParser parser) {
+        return text != null
+            ? parser.currentTokenLocation().getCharOffset()
+            : parser.currentTokenLocation().getByteOffset();
+    }
+
+    private long sourceLength() {
+        return text != null ? text.length() : bytes.length;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getFileKey() {
+        return fileKey;
+    }
+
+    public boolean hasFileKey() {
+        return fileKey != null;
+    }
+
+    public boolean hasExcelBase64() {
+        return excelBase64Offset >= 0;
+    }
+
+    /**
+     * Tamaño aproximado del valor excelBase64 en la fuente (caracteres o bytes), sin leerlo
+     */
+    public long getExcelBase64Length() {
+        return excelBase64Length;
+    }
+
+    /**
+     * Decodifica el Excel embebido leyendo el valor directamente desde el JSON.
+     * Si el Base64 trae caracteres que el decodificador de Jackson no acepta, se
+     * usa el decodificador tolerante del parser.
+     * @return Bytes del Excel o null si el mensaje no trae excelBase64
+     * @throws IOException Si el valor no se puede leer o decodificar
+     */
+    public byte[] decodeExcel() throws IOException {
+        if (!hasExcelBase64()) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE - 8, excelBase64Length / 4 * 3 + 16));
+        try (JsonParser parser = openValueParser()) {
+            parser.readBinaryValue(LENIENT_BASE64, out);
+            return out.toByteArray();
+        } catch (IOException | IllegalArgumentException strictFailure) {
+            return decodeLenient();
+        }
+    }
+
+    /**
+     * Texto Base64 del Excel embebido, para los servicios que todavía trabajan con Strings
+     * @return Valor de excelBase64 o null si el mensaje no lo trae
+     */
+    public String readExcelBase64() throws IOException {
+        if (!hasExcelBase64()) {
+            return null;
+        }
+        try (JsonParser parser = openValueParser()) {
+            return parser.getText();
+        }
+    }
+
+    private byte[] decodeLenient() throws IOException {
+        StreamingBase64Decoder decoder = new StreamingBase64Decoder((int) Math.min(Integer.MAX_VALUE / 2, excelBase64Length));
+        try (JsonParser parser = openValueParser()) {
+            parser.getText(new Writer() {
+                @Override
+                public void write(char[] chars, int offset, int length) {
+                    decoder.update(chars, offset, length);
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+        }
+        try {
+            return decoder.toByteArray();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid excelBase64: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Abre un parser posicionado en el valor de excelBase64 (sin copiar la fuente)
+     */
+    private JsonParser openValueParser() throws IOException {
+        JsonParser parser;
+        if (text != null) {
+            Reader reader = new StringReader(text);
+            reader.skip(excelBase64Offset);
+            parser = JSON_FACTORY.createParser(reader);
+        } else {
+            parser = JSON_FACTORY.createParser(bytes, (int) excelBase64Offset, bytes.length - (int) excelBase64Offset);
+        }
+        if (parser.nextToken() != JsonToken.VALUE_STRING) {
+            parser.close();
+            throw new IOException("excelBase64 value not found at offset " + excelBase64Offset);
+        }
+        return parser;
+    }
+
+    /**
+     * Resumen del sobre sin el contenido del Excel, apto para logs e historial
+     */
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder("{");
+        summary.append("\"messageId\":").append(quote(messageId));
+        summary.append(",\"fileName\":").append(quote(fileName));
+        summary.append(",\"status\":").append(quote(status));
+        if (fileKey != null) {
+            summary.append(",\"fileKey\":").append(quote(fileKey));
+        }
+        if (hasExcelBase64()) {
+            summary.append(",\"excelBase64\":\"<").append(excelBase64Length).append(" chars>\"");
+        }
+        return summary.append('}').toString();
+    }
+
+    private static String quote(String value) {
+        return value == null ? "null" : "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -7,6 +7,7 @@ import com.soulware.platform.docexcelparser.domain.model.LegalGuardian;
 import com.soulware.platform.docexcelparser.domain.model.ReferredTherapist;
 import com.soulware.platform.docexcelparser.domain.service.IMessagePublisherService;
 import com.soulware.platform.docexcelparser.infrastructure.config.ApplicationConfig;
+import com.soulware.platform.docexcelparser.infrastructure.logging.AppLog;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.apache.activemq.ActiveMQConnectionFactory;
 
@@ -16,7 +17,6 @@ import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.logging.Logger;
 
 /**
  * Servicio para enviar datos completos del paciente a una cola separada
@@ -25,7 +25,7 @@ import java.util.logging.Logger;
 @ApplicationScoped
 public class PatientJSONSenderService implements IMessagePublisherService {
 
-    private static final Logger logger = Logger.getLogger(PatientJSONSenderService.class.getName());
+    private static final AppLog log = AppLog.forClass(PatientJSONSenderService.class);
     
     private final ApplicationConfig config = new ApplicationConfig();
     
@@ -53,12 +53,8 @@ public class PatientJSONSenderService implements IMessagePublisherService {
      */
     public boolean sendPatientDataToQueue(PatientProfile patientProfile) {
         try {
-            System.out.println("==========================================");
-            System.out.println("=== ENVIANDO DATOS DE PACIENTE A COLA SEPARADA ===");
             String queueName = config.getJmsQueuePatientData();
-            System.out.println("=== COLA: " + queueName + " ===");
-            System.out.println("=== TIMESTAMP: " + LocalDateTime.now() + " ===");
-            System.out.println("==========================================");
+            log.debug(() -> "Enviando datos de paciente a cola: " + queueName);
 
             // Crear conexión JMS si no existe
             if (connection == null) {
@@ -70,9 +66,7 @@ public class PatientJSONSenderService implements IMessagePublisherService {
 
             // Convertir a JSON
             String jsonData = objectMapper.writeValueAsString(patientData);
-            System.out.println("JSON generado:");
-            System.out.println(jsonData);
-            System.out.println("Longitud del JSON: " + jsonData.length() + " caracteres");
+            log.debug(() -> "JSON generado: " + AppLog.preview(jsonData, 512));
 
             // Crear mensaje JMS
             TextMessage message = session.createTextMessage(jsonData);
@@ -87,23 +81,15 @@ public class PatientJSONSenderService implements IMessagePublisherService {
             // Enviar mensaje
             producer.send(message);
             
-            System.out.println("==========================================");
-            System.out.println("✅ MENSAJE ENVIADO EXITOSAMENTE");
-            System.out.println("✅ COLA: " + queueName);
-            System.out.println("✅ PACIENTE: " + patientProfile.getFirstNames() + " " + patientProfile.getPaternalSurname());
-            System.out.println("✅ MÉDICO: " + (patientProfile.getTherapistName() != null ? patientProfile.getTherapistName() : "No especificado"));
-            System.out.println("✅ RESPONSABLES: " + patientProfile.getLegalGuardians().size());
-            System.out.println("==========================================");
+            log.info(() -> "✅ Mensaje enviado a " + queueName
+                + " - paciente: " + patientProfile.getFirstNames() + " " + patientProfile.getPaternalSurname()
+                + ", médico: " + (patientProfile.getTherapistName() != null ? patientProfile.getTherapistName() : "No especificado")
+                + ", responsables: " + patientProfile.getLegalGuardians().size());
 
             return true;
 
         } catch (Exception e) {
-            System.err.println("==========================================");
-            System.err.println("❌ ERROR ENVIANDO DATOS DE PACIENTE");
-            System.err.println("❌ ERROR: " + e.getMessage());
-            System.err.println("==========================================");
-            logger.severe("Error sending patient data to queue: " + e.getMessage());
-            e.printStackTrace();
+            log.error(() -> "❌ Error sending patient data to queue: " + e.getMessage(), e);
             return false;
         }
     }
@@ -112,8 +98,6 @@ public class PatientJSONSenderService implements IMessagePublisherService {
      * Inicializa la conexión JMS
      */
     private void initializeJMSConnection() throws JMSException {
-        System.out.println("=== INICIALIZANDO CONEXIÓN JMS PARA COLA SEPARADA ===");
-        
         String brokerUrl = config.getJmsBrokerUrl();
         String queueName = config.getJmsQueuePatientData();
         
@@ -129,7 +113,7 @@ public class PatientJSONSenderService implements IMessagePublisherService {
         
         connection.start();
         
-        System.out.println("✅ Conexión JMS inicializada para cola: " + queueName);
+        log.info(() -> "✅ Conexión JMS inicializada para cola: " + queueName);
     }
 
     /**
@@ -196,6 +180,7 @@ public class PatientJSONSenderService implements IMessagePublisherService {
         metadata.put("version", "1.0");
         metadata.put("totalLegalGuardians", legalGuardians.size());
         metadata.put("hasTherapist", therapist != null && therapist.hasName());
+        metadata.put("sourceFormat", patient.getSourceFormat());
         
         patientData.put("metadata", metadata);
         
@@ -224,9 +209,9 @@ public class PatientJSONSenderService implements IMessagePublisherService {
                 connection.close();
                 connection = null;
             }
-            System.out.println("✅ Conexión JMS cerrada para PatientJSONSenderService");
+            log.info("✅ Conexión JMS cerrada para PatientJSONSenderService");
         } catch (JMSException e) {
-            logger.severe("Error closing JMS connection: " + e.getMessage());
+            log.error(() -> "Error closing JMS connection: " + e.getMessage(), e);
         }
     }
 }
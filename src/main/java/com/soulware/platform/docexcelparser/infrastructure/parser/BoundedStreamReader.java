@@ -0,0 +1,94 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import com.soulware.platform.docexcelparser.domain.service.IFileStorageService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Lectura de un archivo desde un stream (por ejemplo la respuesta GET del
+ * almacenamiento) directamente al arreglo que usa el parser.
+ *
+ * Con el tamaño conocido reserva el arreglo exacto y lee sobre él en bloques de
+ * READ_AHEAD bytes, sin buffers intermedios ni la copia final de
+ * InputStream.readAllBytes; el límite de bytes decodificados se comprueba antes
+ * de reservar memoria y, si el tamaño no se conoce, a medida que llegan los datos.
+ * Si el stream es una respuesta que el almacenamiento ya tiene completa en
+ * memoria (FileStream.ofBytes) se usa ese arreglo, sin leerlo ni copiarlo.
+ */
+final class BoundedStreamReader {
+
+    /** Bytes pedidos al stream en cada lectura */
+    static final int READ_AHEAD = 64 * 1024;
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private BoundedStreamReader() {
+    }
+
+    /**
+     * Lee el stream completo
+     * @param in Stream a leer (no se cierra)
+     * @param sizeHint Tamaño esperado en bytes, o -1 si no se conoce
+     * @param limits Límites del parsing; se aplica maxDecodedBytes
+     * @return Contenido leído
+     * @throws ParseBudget.Exceeded Si el contenido supera maxDecodedBytes
+     * @throws IOException Si hay error leyendo el stream
+     */
+    static byte[] readAll(InputStream in, long sizeHint, ParseBudget.Limits limits) throws IOException {
+        if (in instanceof IFileStorageService.FileStream fileStream) {
+            byte[] buffered = fileStream.getBufferedContent();
+            if (buffered != null) {
+                check(buffered.length, limits);
+                return buffered;
+            }
+        }
+        if (sizeHint >= 0) {
+            check(sizeHint, limits);
+        }
+        byte[] buffer = new byte[initialCapacity(sizeHint, limits)];
+        int length = 0;
+        while (true) {
+            if (length == buffer.length) {
+                // Tamaño desconocido o mayor al anunciado: se comprueba un byte más antes de crecer
+                int next = in.read();
+                if (next < 0) {
+                    break;
+                }
+                check(length + 1L, limits);
+                buffer = Arrays.copyOf(buffer, grow(buffer.length));
+                buffer[length++] = (byte) next;
+            }
+            int read = in.read(buffer, length, Math.min(READ_AHEAD, buffer.length - length));
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        check(length, limits);
+        return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+    }
+
+    private static int initialCapacity(long sizeHint, ParseBudget.Limits limits) {
+        if (sizeHint < 0) {
+            // Sin tamaño conocido no se lee más allá de un byte sobre el límite
+            return limits.maxDecodedBytes > 0 ? (int) Math.min(READ_AHEAD, limits.maxDecodedBytes + 1) : READ_AHEAD;
+        }
+        return (int) Math.min(sizeHint, MAX_ARRAY_SIZE);
+    }
+
+    private static int grow(int capacity) {
+        if (capacity >= MAX_ARRAY_SIZE) {
+            throw new OutOfMemoryError("File too large to read into memory");
+        }
+        return (int) Math.min(Math.max(capacity * 2L, READ_AHEAD), MAX_ARRAY_SIZE);
+    }
+
+    private static void check(long size, ParseBudget.Limits limits) {
+        ParseBudget.Exceeded tooLarge = ParseBudget.checkDecodedBytes(size, limits);
+        if (tooLarge != null) {
+            throw tooLarge;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import java.text.ParsePosition;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+
+/**
+ * Conversiones tipadas de valores de celda que no lanzan excepciones.
+ *
+ * Las celdas de fecha y número se leen desde su valor nativo (número de serie de
+ * Excel, double) en lugar de pasar por su representación en texto; el texto solo
+ * se parsea cuando la celda es realmente de texto, con formateadores ya
+ * construidos y sin usar excepciones para los formatos que no coinciden.
+ */
+final class CellValues {
+
+    private CellValues() {
+    }
+
+    /**
+     * Fecha de un número de serie de Excel, como días desde 1970-01-01
+     * @param serial Valor numérico de la celda
+     * @param date1904 true si el workbook usa el sistema de fechas de 1904
+     */
+    static long excelDateToEpochDay(double serial, boolean date1904) {
+        return DateUtil.getLocalDateTime(serial, date1904).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * Parsea una fecha probando los formatos en orden, sin lanzar excepciones.
+     * Resuelve año, mes y día como ResolverStyle.SMART (un día 31 en un mes de
+     * 30 días se ajusta al último día del mes).
+     * @return Fecha del primer formato que reconoce todo el texto, o null
+     */
+    static LocalDate parseDate(String text, DateTimeFormatter[] formats) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        for (DateTimeFormatter format : formats) {
+            ParsePosition position = new ParsePosition(0);
+            TemporalAccessor parsed = format.parseUnresolved(text, position);
+            if (parsed == null || position.getErrorIndex() >= 0 || position.getIndex() != text.length()) {
+                continue;
+            }
+            LocalDate date = resolveDate(parsed);
+            if (date != null) {
+                return date;
+            }
+        }
+        return null;
+    }
+
+    private static LocalDate resolveDate(TemporalAccessor parsed) {
+        ChronoField yearField = parsed.isSupported(ChronoField.YEAR) ? ChronoField.YEAR : ChronoField.YEAR_OF_ERA;
+        if (!parsed.isSupported(yearField) || !parsed.isSupported(ChronoField.MONTH_OF_YEAR)
+                || !parsed.isSupported(ChronoField.DAY_OF_MONTH)) {
+            return null;
+        }
+        long year = parsed.getLong(yearField);
+        long month = parsed.getLong(ChronoField.MONTH_OF_YEAR);
+        long day = parsed.getLong(ChronoField.DAY_OF_MONTH);
+        long minYear = yearField == ChronoField.YEAR ? Year.MIN_VALUE : 1;
+        if (year < minYear || year > Year.MAX_VALUE || month < 1 || month > 12 || day < 1 || day > 31) {
+            return null;
+        }
+        LocalDate firstOfMonth = LocalDate.of((int) year, (int) month, 1);
+        return firstOfMonth.withDayOfMonth((int) Math.min(day, firstOfMonth.lengthOfMonth()));
+    }
+
+    /**
+     * Parsea un entero decimal (con signo opcional y espacios alrededor) sin lanzar excepciones
+     * @return Valor, o missing si el texto no es un entero válido para long
+     */
+    static long parseLong(String text, long missing) {
+        if (text == null) {
+            return missing;
+        }
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return missing;
+        }
+        boolean negative = text.charAt(start) == '-';
+        if (negative || text.charAt(start) == '+') {
+            start++;
+        }
+        if (start == end) {
+            return missing;
+        }
+        // Se acumula en negativo para cubrir Long.MIN_VALUE sin desbordar
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < (Long.MIN_VALUE + digit) / 10) {
+                return missing;
+            }
+            result = result * 10 - digit;
+        }
+        if (!negative && result == Long.MIN_VALUE) {
+            return missing;
+        }
+        return negative ? result : -result;
+    }
+}
@@ -0,0 +1,275 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Representación compacta de una hoja ya formateada.
+ *
+ * Las celdas se guardan en orden de lectura (fila y columna crecientes) en
+ * arreglos paralelos de enteros: fila, columna, tipo, valor nativo (números y
+ * fechas) e índice del valor formateado en un pool de strings sin duplicados.
+ * Se construye una sola vez desde POI (o desde cualquier lector que entregue
+ * filas y celdas en orden) y a partir de ahí el índice de etiquetas, la huella
+ * del layout, la validación del plan y la extracción trabajan sobre ella sin
+ * navegar objetos Row/Cell ni volver a formatear celdas.
+ */
+final class CompactSheet {
+
+    static final byte BLANK = 0;
+    static final byte STRING = 1;
+    static final byte NUMERIC = 2;
+    static final byte BOOLEAN = 3;
+    static final byte FORMULA = 4;
+    static final byte ERROR = 5;
+    /** Celda numérica con formato de fecha */
+    static final byte DATE = 6;
+
+    private final int[] rows;
+    private final int[] columns;
+    private final byte[] types;
+    // Índice en el pool; -1 para celdas sin valor
+    private final int[] valueIds;
+    // NUMERIC: valor truncado a long; DATE: días desde 1970-01-01
+    private final long[] numbers;
+    private final String[] pool;
+    private final int cellCount;
+
+    // Filas físicas (también las que no tienen celdas) y su primera celda
+    private final int[] rowNumbers;
+    private final int[] rowStarts;
+    private final int rowCount;
+    private final int lastRowNum;
+
+    private CompactSheet(Builder builder) {
+        this.cellCount = builder.cellCount;
+        this.rows = Arrays.copyOf(builder.rows, cellCount);
+        this.columns = Arrays.copyOf(builder.columns, cellCount);
+        this.types = Arrays.copyOf(builder.types, cellCount);
+        this.valueIds = Arrays.copyOf(builder.valueIds, cellCount);
+        this.numbers = Arrays.copyOf(builder.numbers, cellCount);
+        this.pool = new String[builder.pool.size()];
+        for (Map.Entry<String, Integer> entry : builder.pool.entrySet()) {
+            pool[entry.getValue()] = entry.getKey();
+        }
+        this.rowCount = builder.rowCount;
+        this.rowNumbers = Arrays.copyOf(builder.rowNumbers, rowCount);
+        this.rowStarts = Arrays.copyOf(builder.rowStarts, rowCount + 1);
+        this.rowStarts[rowCount] = cellCount;
+        this.lastRowNum = builder.lastRowNum;
+    }
+
+    /**
+     * Construye la hoja compacta desde POI formateando cada celda una sola vez
+     * @param sheet Hoja de POI
+     * @param formatter Conversión de la celda a texto (null si no tiene valor)
+     * @param maxRows Filas a incluir como máximo (0 = todas)
+     * @param budget Presupuesto del archivo; cada fila se descuenta de él
+     * @return Hoja compacta
+     */
+    static CompactSheet of(Sheet sheet, Function<Cell, String> formatter, int maxRows, ParseBudget budget) {
+        Builder builder = new Builder();
+        for (Row row : sheet) {
+            if (maxRows > 0 && row.getRowNum() >= maxRows) {
+                break;
+            }
+            builder.startRow(row.getRowNum());
+            for (Cell cell : row) {
+                byte type = typeOf(cell);
+                long number = 0;
+                if (type == DATE) {
+                    number = cell.getLocalDateTimeCellValue().toLocalDate().toEpochDay();
+                } else if (type == NUMERIC) {
+                    number = (long) cell.getNumericCellValue();
+                }
+                builder.cell(cell.getColumnIndex(), type, formatter.apply(cell), number);
+            }
+            budget.addRow(row.getPhysicalNumberOfCells());
+        }
+        builder.lastRowNum = maxRows > 0 ? Math.min(sheet.getLastRowNum(), maxRows - 1) : sheet.getLastRowNum();
+        return builder.build();
+    }
+
+    private static byte typeOf(Cell cell) {
+        switch (cell.getCellType()) {
+            case STRING:
+                return STRING;
+            case NUMERIC:
+                return DateUtil.isCellDateFormatted(cell) ? DATE : NUMERIC;
+            case BOOLEAN:
+                return BOOLEAN;
+            case FORMULA:
+                return FORMULA;
+            case ERROR:
+                return ERROR;
+            default:
+                return BLANK;
+        }
+    }
+
+    int cellCount() {
+        return cellCount;
+    }
+
+    int row(int cell) {
+        return rows[cell];
+    }
+
+    int column(int cell) {
+        return columns[cell];
+    }
+
+    byte type(int cell) {
+        return types[cell];
+    }
+
+    /**
+     * Valor formateado de la celda (recortado si es texto), o null si no tiene valor
+     */
+    String value(int cell) {
+        int id = valueIds[cell];
+        return id < 0 ? null : pool[id];
+    }
+
+    /**
+     * Valor nativo de una celda NUMERIC (truncado a long) o DATE (días desde 1970-01-01)
+     */
+    long number(int cell) {
+        return numbers[cell];
+    }
+
+    /**
+     * Cantidad de filas físicas; se recorren con rowStart/rowEnd
+     */
+    int rowCount() {
+        return rowCount;
+    }
+
+    int rowNumber(int rowIndex) {
+        return rowNumbers[rowIndex];
+    }
+
+    /**
+     * Primera celda de la fila física indicada
+     */
+    int rowStart(int rowIndex) {
+        return rowStarts[rowIndex];
+    }
+
+    /**
+     * Celda siguiente a la última de la fila física indicada
+     */
+    int rowEnd(int rowIndex) {
+        return rowStarts[rowIndex + 1];
+    }
+
+    /**
+     * Última fila de la hoja considerada (equivalente a Sheet.getLastRowNum)
+     */
+    int getLastRowNum() {
+        return lastRowNum;
+    }
+
+    /**
+     * Fila física con el número dado o la siguiente existente
+     * @return Índice de la fila física (puede ser rowCount si no hay más filas)
+     */
+    int rowIndexFrom(int rowNumber) {
+        int index = Arrays.binarySearch(rowNumbers, 0, rowCount, rowNumber);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Busca una celda por posición
+     * @return Índice de la celda o -1 si no existe
+     */
+    int find(int row, int column) {
+        int rowIndex = Arrays.binarySearch(rowNumbers, 0, rowCount, row);
+        if (rowIndex < 0) {
+            return -1;
+        }
+        int cell = Arrays.binarySearch(columns, rowStarts[rowIndex], rowStarts[rowIndex + 1], column);
+        return cell >= 0 ? cell : -1;
+    }
+
+    /**
+     * Valor de la celda en la posición dada, o null si no existe o no tiene valor
+     */
+    String valueAt(int row, int column) {
+        int cell = find(row, column);
+        return cell < 0 ? null : value(cell);
+    }
+
+    /**
+     * Cantidad de strings distintos guardados
+     */
+    int poolSize() {
+        return pool.length;
+    }
+
+    /**
+     * Acumula filas y celdas en orden de lectura
+     */
+    static final class Builder {
+        private int[] rows = new int[64];
+        private int[] columns = new int[64];
+        private byte[] types = new byte[64];
+        private int[] valueIds = new int[64];
+        private long[] numbers = new long[64];
+        private int cellCount = 0;
+        private final Map<String, Integer> pool = new HashMap<>();
+
+        private int[] rowNumbers = new int[16];
+        private int[] rowStarts = new int[17];
+        private int rowCount = 0;
+        private int currentRow = -1;
+        private int lastRowNum = -1;
+
+        /**
+         * Comienza una fila; las filas deben llegar en orden creciente
+         */
+        void startRow(int rowNum) {
+            if (rowCount == rowNumbers.length) {
+                rowNumbers = Arrays.copyOf(rowNumbers, rowCount * 2);
+                rowStarts = Arrays.copyOf(rowStarts, rowCount * 2 + 1);
+            }
+            rowNumbers[rowCount] = rowNum;
+            rowStarts[rowCount] = cellCount;
+            rowCount++;
+            currentRow = rowNum;
+            lastRowNum = rowNum;
+        }
+
+        /**
+         * Agrega una celda a la fila actual; las columnas deben llegar en orden creciente
+         * @param number Valor nativo para NUMERIC y DATE (ver CompactSheet.number)
+         */
+        void cell(int column, byte type, String value, long number) {
+            if (cellCount == rows.length) {
+                int capacity = cellCount * 2;
+                rows = Arrays.copyOf(rows, capacity);
+                columns = Arrays.copyOf(columns, capacity);
+                types = Arrays.copyOf(types, capacity);
+                valueIds = Arrays.copyOf(valueIds, capacity);
+                numbers = Arrays.copyOf(numbers, capacity);
+            }
+            rows[cellCount] = currentRow;
+            columns[cellCount] = column;
+            types[cellCount] = type;
+            valueIds[cellCount] = value == null ? -1 : pool.computeIfAbsent(value, key -> pool.size());
+            numbers[cellCount] = number;
+            cellCount++;
+        }
+
+        CompactSheet build() {
+            return new CompactSheet(this);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Formato de archivo detectado por sus bytes iniciales (magic bytes) y, en el caso
+ * de ZIP, por el directorio central. Permite elegir el lector adecuado antes de
+ * abrir el workbook, en lugar de intentar OOXML y recurrir a otros lectores según
+ * el mensaje de la excepción.
+ */
+public enum ExcelFormat {
+
+    /** Excel 97-2003 (.xls), contenedor OLE2 / CFB */
+    OLE2,
+    /** Office Open XML transicional (.xlsx) */
+    OOXML,
+    /** Office Open XML estricto (ISO 29500 Strict) */
+    STRICT_OOXML,
+    /** Empieza como ZIP pero su directorio central falta o está dañado (descarga incompleta); se lee reparándolo */
+    TRUNCATED_ZIP,
+    /** Cualquier otro contenido: ZIP sin workbook, texto, PDF, etc. */
+    NOT_SPREADSHEET;
+
+    private static final byte[] OLE2_MAGIC = {
+        (byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1
+    };
+    private static final byte[] ZIP_MAGIC = {0x50, 0x4B};
+
+    private static final String CONTENT_TYPES_PART = "[Content_Types].xml";
+    private static final String ROOT_RELS_PART = "_rels/.rels";
+    private static final String STRICT_OFFICE_DOCUMENT =
+        "http://purl.oclc.org/ooxml/officeDocument/relationships/officeDocument";
+
+    /**
+     * Detecta el formato sin abrir el workbook: solo lee la firma, el directorio
+     * central del ZIP y, para distinguir OOXML estricto, la parte _rels/.rels
+     * @param bytes Contenido del archivo
+     * @return Formato detectado
+     */
+    public static ExcelFormat detect(byte[] bytes) {
+        if (bytes == null || bytes.length < OLE2_MAGIC.length) {
+            return NOT_SPREADSHEET;
+        }
+        if (hasOle2Signature(bytes)) {
+            return OLE2;
+        }
+        if (!hasZipSignature(bytes)) {
+            return NOT_SPREADSHEET;
+        }
+
+        ZipCentralDirectory directory = ZipCentralDirectory.read(bytes);
+        if (directory == null) {
+            return TRUNCATED_ZIP;
+        }
+        if (directory.find(CONTENT_TYPES_PART) == null || !hasWorkbookPart(directory)) {
+            return NOT_SPREADSHEET;
+        }
+        return ooxmlVariant(bytes, directory);
+    }
+
+    /**
+     * Distingue OOXML transicional de estricto por la relación officeDocument de _rels/.rels
+     * @param bytes Contenido del archivo
+     * @param directory Directorio central ya leído de un paquete con workbook
+     */
+    static ExcelFormat ooxmlVariant(byte[] bytes, ZipCentralDirectory directory) {
+        ZipCentralDirectory.Entry rels = directory.find(ROOT_RELS_PART);
+        if (rels != null) {
+            try {
+                String relsXml = new String(ZipCentralDirectory.readEntry(bytes, rels), StandardCharsets.UTF_8);
+                if (relsXml.contains(STRICT_OFFICE_DOCUMENT)) {
+                    return STRICT_OOXML;
+                }
+            } catch (Exception e) {
+                // Datos de la parte corruptos: se decide al abrir el paquete
+            }
+        }
+        return OOXML;
+    }
+
+    /**
+     * Indica si el formato se puede leer con el motor streaming de XSSF
+     */
+    public boolean isStreamable() {
+        return this == OOXML;
+    }
+
+    static boolean hasOle2Signature(byte[] bytes) {
+        return startsWith(bytes, OLE2_MAGIC);
+    }
+
+    static boolean hasZipSignature(byte[] bytes) {
+        return startsWith(bytes, ZIP_MAGIC);
+    }
+
+    static boolean hasWorkbookPart(ZipCentralDirectory directory) {
+        for (ZipCentralDirectory.Entry entry : directory.entries()) {
+            if (entry.name.startsWith("xl/") && entry.name.endsWith("workbook.xml")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(byte[] array, byte[] prefix) {
+        if (array.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (array[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,327 +1,639 @@
 package com.soulware.platform.docexcelparser.infrastructure.parser;
 
+import com.soulware.platform.docexcelparser.domain.model.ParseOutcome;
 import com.soulware.platform.docexcelparser.domain.model.PatientProfile;
 import com.soulware.platform.docexcelparser.domain.model.LegalGuardian;
 import com.soulware.platform.docexcelparser.domain.model.ReferredTherapist;
 import com.soulware.platform.docexcelparser.domain.service.IExcelParserService;
+import com.soulware.platform.docexcelparser.domain.service.IFileStorageService;
+import com.soulware.platform.docexcelparser.infrastructure.config.ApplicationConfig;
+import com.soulware.platform.docexcelparser.infrastructure.logging.AppLog;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellAddress;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.Base64;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.ZipException;
 
 /**
  * Implementación de infraestructura para parsing de archivos Excel
  * Extrae datos de pacientes desde archivos Excel en base64
+ * Según EXCEL_PARSER_ENGINE usa el motor streaming (SAX) o el DOM (XSSFWorkbook);
+ * el DOM se mantiene siempre como respaldo si el streaming falla
  */
 @ApplicationScoped
 public class ExcelPatientParser implements IExcelParserService {
 
+    private static final AppLog log = AppLog.forClass(ExcelPatientParser.class);
+
+    /** Mapeo de etiquetas del formulario a campos del paciente, compilado al iniciar */
+    static final FieldMapping FIELD_MAPPING = FieldMapping.load(new ApplicationConfig().getExcelFieldMappingFile());
+
+    /** Etiquetas del formulario médico que se buscan en la hoja (orden del mapeo) */
+    static final String[] PATIENT_LABELS = FIELD_MAPPING.labels();
+
+    /** PATIENT_LABELS compiladas, sin distinguir acentos, mayúsculas ni espacios */
+    static final LabelMatcher PATIENT_LABEL_MATCHER = LabelMatcher.of(PATIENT_LABELS);
+
+    private final ApplicationConfig config = new ApplicationConfig();
+    private final StreamingExcelPatientParser streamingParser = new StreamingExcelPatientParser();
+    private final LayoutPlanCache layoutCache = new LayoutPlanCache(config.getLayoutCacheSize());
+    private final int rowBudget = config.getExcelFormRowBudget();
+    private final ParseBudget.Limits limits = ParseBudget.Limits.from(config);
+    private final int rangedReadTailBytes = config.getS3RangedReadTailBytes();
+
     /**
      * Parsea un archivo Excel desde base64 y extrae los datos del paciente
      * @param base64Content Contenido base64 del archivo Excel
-     * @return PatientProfile con los datos extraídos
+     * @return PatientProfile con los datos extraídos (o un paciente de error si la entrada se rechaza)
      */
+    @Override
     public PatientProfile parsePatientFromExcel(String base64Content) {
+        return toPatient(parseOutcome(base64Content));
+    }
+    
+    /**
+     * Parsea un archivo Excel desde sus bytes y extrae los datos del paciente
+     * Evita el ida y vuelta por Base64 cuando el archivo viene del almacenamiento
+     * @param excelBytes Bytes del archivo Excel
+     * @return PatientProfile con los datos extraídos (o un paciente de error si la entrada se rechaza)
+     */
+    @Override
+    public PatientProfile parsePatientFromExcel(byte[] excelBytes) {
+        return toPatient(parseOutcome(excelBytes));
+    }
+    
+    /**
+     * Parsea un workbook con varios pacientes: uno por hoja de formulario y uno por
+     * fila en las hojas de tipo listado. Las hojas sin datos se omiten.
+     * @param excelBytes Bytes del archivo Excel
+     * @return Pacientes extraídos en el orden de las hojas y filas
+     */
+    @Override
+    public List<PatientProfile> parsePatientsFromExcel(byte[] excelBytes) {
+        ParseOutcome outcome = parseBatchOutcome(excelBytes);
+        return outcome.isSuccess() ? outcome.getPatients() : List.of(toPatient(outcome));
+    }
+    
+    /**
+     * Decodifica el Base64 y parsea el Excel; un Base64 inválido se rechaza sin lanzar excepciones
+     */
+    @Override
+    public ParseOutcome parseOutcome(String base64Content) {
+        long start = System.nanoTime();
+        log.debug(() -> "=== INICIANDO PARSING DE EXCEL === Base64: " + AppLog.preview(base64Content, 100));
+        
+        if (base64Content == null || base64Content.trim().isEmpty()) {
+            return reject(ParseOutcome.ErrorCode.EMPTY_INPUT, "Base64 content is null or empty", null, start, start);
+        }
+        
+        // Tamaño decodificado antes de reservar memoria para él
+        ParseBudget.Exceeded tooLarge = ParseBudget.checkDecodedBytes(StreamingBase64Decoder.exactCapacity(base64Content), limits);
+        if (tooLarge != null) {
+            return abort(tooLarge, null, start, start);
+        }
+        
+        // Limpiar y decodificar base64 en una sola pasada (tolera espacios, saltos y padding faltante)
+        byte[] excelBytes = StreamingBase64Decoder.tryDecode(base64Content);
+        if (excelBytes == null) {
+            log.warn(() -> "Base64 inválido: " + AppLog.preview(base64Content, 200));
+            return reject(ParseOutcome.ErrorCode.INVALID_BASE64, "Invalid Base64 format", null, start, start);
+        }
+        long decodeNanos = System.nanoTime() - start;
+        log.debug(() -> "Excel bytes decoded successfully: " + excelBytes.length + " bytes");
+        
+        return parseOutcome(excelBytes).withDecodeNanos(decodeNanos);
+    }
+    
+    /**
+     * Lee el archivo desde el stream del almacenamiento directamente al arreglo del
+     * parser (ver BoundedStreamReader): con el tamaño conocido no hay copias
+     * intermedias y un archivo que supera EXCEL_MAX_DECODED_BYTES se corta sin descargarlo
+     */
+    @Override
+    public ParseOutcome parseOutcome(InputStream excelStream, long sizeHint) throws IOException {
+        long start = System.nanoTime();
+        byte[] excelBytes;
         try {
-            System.out.println("=== INICIANDO PARSING DE EXCEL ===");
-            System.out.println("Base64 length: " + base64Content.length());
-            System.out.println("Base64 (primeros 100 chars): " + base64Content.substring(0, Math.min(100, base64Content.length())));
+            excelBytes = BoundedStreamReader.readAll(excelStream, sizeHint, limits);
+        } catch (ParseBudget.Exceeded e) {
+            return abort(e, null, start, start);
+        }
+        log.debug(() -> "Excel leído desde stream: " + excelBytes.length + " bytes en "
+            + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return parseOutcome(excelBytes);
+    }
+    
+    /**
+     * Igual que parseOutcome(InputStream, long) con todos los pacientes del workbook
+     */
+    @Override
+    public ParseOutcome parseBatchOutcome(InputStream excelStream, long sizeHint) throws IOException {
+        long start = System.nanoTime();
+        byte[] excelBytes;
+        try {
+            excelBytes = BoundedStreamReader.readAll(excelStream, sizeHint, limits);
+        } catch (ParseBudget.Exceeded e) {
+            return abort(e, null, start, start);
+        }
+        log.debug(() -> "Excel leído desde stream: " + excelBytes.length + " bytes en "
+            + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return parseBatchOutcome(excelBytes);
+    }
+    
+    /**
+     * Con S3_RANGED_READ_TAIL_BYTES configurado descarga por rangos solo las partes
+     * que usa el parser (ver RangedPartReader); si no, descarga el archivo completo
+     */
+    @Override
+    public ParseOutcome parseBatchOutcome(IFileStorageService storage, String fileKey) throws IOException {
+        if (rangedReadTailBytes == 0) {
+            return IExcelParserService.super.parseBatchOutcome(storage, fileKey);
+        }
+        long start = System.nanoTime();
+        byte[] excelBytes;
+        try {
+            excelBytes = RangedPartReader.read(storage, fileKey, rangedReadTailBytes, limits);
+        } catch (ParseBudget.Exceeded e) {
+            return abort(e, null, start, start);
+        }
+        if (excelBytes == null) {
+            return null;
+        }
+        log.debug(() -> "Excel leído por rangos: " + excelBytes.length + " bytes en "
+            + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return parseBatchOutcome(excelBytes);
+    }
+    
+    /**
+     * Parsea un archivo Excel de un solo paciente.
+     * Las entradas vacías, demasiado pequeñas, sin formato de hoja de cálculo o sin
+     * hojas se rechazan con su código sin construir excepciones.
+     */
+    @Override
+    public ParseOutcome parseOutcome(byte[] excelBytes) {
+        long start = System.nanoTime();
+        ExcelPreflight.Result preflight = preflight(excelBytes);
+        long detected = System.nanoTime();
+        if (!preflight.isAccepted()) {
+            return rejectPreflight(preflight, start, detected);
+        }
+        ExcelFormat format = preflight.format;
+        ParseBudget budget = ParseBudget.start(limits);
+        
+        try {
+            log.debug(() -> "=== PARSING DE EXCEL DESDE BYTES: " + excelBytes.length + " bytes ===");
             
-            // Validar que el base64 no esté vacío
-            if (base64Content == null || base64Content.trim().isEmpty()) {
-                throw new IllegalArgumentException("Base64 content is null or empty");
+            // Motor streaming: no construye el workbook completo en memoria
+            if (config.isStreamingParserEnabled() && format.isStreamable()) {
+                try {
+                    PatientProfile patient = streamingParser.parsePatientFromBytes(excelBytes, budget);
+                    patient.setSourceFormat(format.name());
+                    log.info(() -> "Parsing streaming completado: " + excelBytes.length + " bytes, formato " + patient.getSourceFormat());
+                    return ParseOutcome.success(List.of(patient), format.name(), detected - start, System.nanoTime() - detected);
+                } catch (ParseBudget.Exceeded e) {
+                    throw e;
+                } catch (Exception e) {
+                    // Sin respaldo DOM si el fallo vino de un límite agotado
+                    budget.checkTime();
+                    log.warn(() -> "Streaming parser falló, usando DOM como respaldo: " + e.getMessage());
+                }
             }
             
-            // Decodificar base64 a bytes con manejo de errores específicos
-            byte[] excelBytes;
-            try {
-                excelBytes = Base64.getDecoder().decode(base64Content);
-                System.out.println("Excel bytes decoded successfully: " + excelBytes.length + " bytes");
-            } catch (IllegalArgumentException e) {
-                System.err.println("Error decodificando Base64: " + e.getMessage());
-                System.err.println("Base64 problemático: " + base64Content.substring(0, Math.min(200, base64Content.length())));
-                throw new IllegalArgumentException("Invalid Base64 format: " + e.getMessage(), e);
+            // El DOM descomprime todo el paquete: se descuenta lo que declara el directorio central,
+            // sin sumar lo que ya contó el intento streaming
+            budget.resetCounts();
+            budget.addInflatedBytes(preflight.declaredInflatedBytes);
+            Workbook workbook = openWorkbook(excelBytes, format);
+            if (workbook == null) {
+                PatientProfile patient = repair(() -> streamingParser.parseSalvagedPatient(excelBytes, budget));
+                patient.setSourceFormat(format.name());
+                return ParseOutcome.success(List.of(patient), format.name(), detected - start, System.nanoTime() - detected);
             }
+            budget.checkTime();
             
-            // Validar que los bytes decodificados tengan un tamaño mínimo razonable
-            if (excelBytes.length < 1000) {
-                throw new IllegalArgumentException("Decoded bytes too small (" + excelBytes.length + " bytes), likely not a valid Excel file");
+            // Validar que el workbook tenga al menos una hoja
+            if (workbook.getNumberOfSheets() == 0) {
+                workbook.close();
+                return reject(ParseOutcome.ErrorCode.NO_SHEETS, "Excel file has no sheets", format, start, detected);
             }
             
-            // Validar que los primeros bytes sean de un archivo Excel válido
-            if (!isValidExcelFile(excelBytes)) {
-                throw new IllegalArgumentException("Decoded bytes do not appear to be a valid Excel file");
+            Sheet poiSheet = workbook.getSheetAt(0); // Primera hoja
+            log.debug(() -> "Sheet name: " + poiSheet.getSheetName()
+                + ", rows: " + (poiSheet.getLastRowNum() + 1)
+                + ", columns: " + (poiSheet.getRow(0) != null ? poiSheet.getRow(0).getLastCellNum() : 0));
+            
+            // Cada celda se formatea una sola vez; el resto de la extracción usa la hoja compacta
+            CompactSheet sheet = CompactSheet.of(poiSheet, this::getCellValueAsString, rowBudget, budget);
+            log.debug(() -> "Hoja compacta: " + sheet.cellCount() + " celdas, " + sheet.poolSize() + " valores distintos");
+            
+            // Crear objeto PatientProfile
+            PatientProfile patient = null;
+            
+            // Si el layout ya es conocido, leer directamente con el plan cacheado
+            long fingerprint = LayoutPlanCache.fingerprint(sheet);
+            ExtractionPlan plan = layoutCache.get(fingerprint);
+            if (plan != null) {
+                patient = extractWithPlan(sheet, plan);
+                if (patient == null) {
+                    log.debug("Plan de layout inválido para la hoja, redescubriendo...");
+                    layoutCache.invalidate(fingerprint);
+                }
             }
             
-            // Crear workbook desde bytes con manejo de errores específicos
-            Workbook workbook;
-            try {
-                workbook = new XSSFWorkbook(new ByteArrayInputStream(excelBytes));
-                System.out.println("Workbook created successfully");
-                System.out.println("Number of sheets: " + workbook.getNumberOfSheets());
-            } catch (Exception e) {
-                System.err.println("Error creating workbook from bytes: " + e.getMessage());
+            if (patient == null) {
+                patient = new PatientProfile();
+                ExtractionPlan.Builder planBuilder = new ExtractionPlan.Builder();
                 
-                // Intentar métodos alternativos para archivos corruptos
-                if (e.getMessage().contains("invalid distance too far back") || 
-                    e.getMessage().contains("corrupted") ||
-                    e.getMessage().contains("compression")) {
-                    
-                    System.out.println("=== INTENTANDO RECUPERACIÓN DE ARCHIVO CORRUPTO ===");
-                    
-                    // Método 1: Intentar con HSSFWorkbook (formato .xls)
-                    try {
-                        System.out.println("Intentando con formato .xls (HSSF)...");
-                        workbook = new HSSFWorkbook(new ByteArrayInputStream(excelBytes));
-                        System.out.println("Workbook HSSF creado exitosamente");
-                    } catch (Exception e2) {
-                        System.out.println("HSSF también falló: " + e2.getMessage());
-                        
-                        // Método 2: Intentar reparar el ZIP
-                        try {
-                            System.out.println("Intentando reparar archivo ZIP...");
-                            byte[] repairedBytes = repairZipFile(excelBytes);
-                            if (repairedBytes != null) {
-                                workbook = new XSSFWorkbook(new ByteArrayInputStream(repairedBytes));
-                                System.out.println("Archivo ZIP reparado exitosamente");
-                            } else {
-                                throw new IllegalArgumentException("No se pudo reparar el archivo ZIP");
-                            }
-                        } catch (Exception e3) {
-                            System.err.println("Reparación ZIP falló: " + e3.getMessage());
-                            throw new IllegalArgumentException("Archivo Excel corrupto o incompleto. Error: " + e.getMessage(), e);
-                        }
-                    }
-                } else {
-                    throw new IllegalArgumentException("Cannot create Excel workbook from decoded bytes: " + e.getMessage(), e);
+                // Extraer datos del formulario médico
+                SheetLabelIndex labelIndex = SheetLabelIndex.build(sheet, PATIENT_LABEL_MATCHER, rowBudget);
+                log.debug(() -> "Etiquetas indexadas: " + labelIndex.size());
+                extractPatientData(sheet, labelIndex, patient);
+                for (String label : PATIENT_LABELS) {
+                    planBuilder.label(label, sheet, labelIndex.find(label));
                 }
+                
+                // Responsables legales y médico tratante en una sola pasada
+                extractSectionsData(sheet, patient, planBuilder);
+                
+                layoutCache.put(fingerprint, planBuilder.build());
             }
+            log.debug(() -> "Layout cache - hits: " + layoutCache.getHits() + ", misses: " + layoutCache.getMisses()
+                + ", invalidaciones: " + layoutCache.getInvalidations());
             
-            // Validar que el workbook tenga al menos una hoja
-            if (workbook.getNumberOfSheets() == 0) {
-                workbook.close();
-                throw new IllegalArgumentException("Excel file has no sheets");
+            workbook.close();
+            patient.setSourceFormat(format.name());
+            if (log.isInfoEnabled()) {
+                log.info("Parsing DOM completado: " + excelBytes.length + " bytes, formato " + format.name());
             }
+            return ParseOutcome.success(List.of(patient), format.name(), detected - start, System.nanoTime() - detected);
             
-            Sheet sheet = workbook.getSheetAt(0); // Primera hoja
-            System.out.println("Sheet name: " + sheet.getSheetName());
-            System.out.println("Sheet rows: " + (sheet.getLastRowNum() + 1));
-            System.out.println("Sheet columns: " + sheet.getRow(0) != null ? sheet.getRow(0).getLastCellNum() : 0);
-            
-            // Crear objeto PatientProfile
-            PatientProfile patient = new PatientProfile();
+        } catch (ParseBudget.Exceeded e) {
+            return abort(e, format, start, detected);
+        } catch (IllegalArgumentException e) {
+            // openWorkbook: el contenido no se pudo abrir ni reparar
+            return reject(ParseOutcome.ErrorCode.INVALID_WORKBOOK, e.getMessage(), format, start, detected);
+        } catch (Exception e) {
+            log.error(() -> "Unexpected error parsing Excel file: " + e.getMessage(), e);
+            return ParseOutcome.failed(e.getMessage(), format.name(), detected - start, System.nanoTime() - detected);
+        }
+    }
+    
+    /**
+     * Parsea un workbook con varios pacientes con las mismas reglas de rechazo que parseOutcome
+     */
+    @Override
+    public ParseOutcome parseBatchOutcome(byte[] excelBytes) {
+        long start = System.nanoTime();
+        ExcelPreflight.Result preflight = preflight(excelBytes);
+        long detected = System.nanoTime();
+        if (!preflight.isAccepted()) {
+            return rejectPreflight(preflight, start, detected);
+        }
+        ExcelFormat format = preflight.format;
+        ParseBudget budget = ParseBudget.start(limits);
+        
+        try {
+            log.debug(() -> "=== PARSING MULTI-PACIENTE DESDE BYTES: " + excelBytes.length + " bytes ===");
             
-            // Extraer datos del formulario médico
-            extractPatientData(sheet, patient);
+            // Motor streaming: hojas en paralelo sobre una tabla de shared strings compartida
+            if (config.isStreamingParserEnabled() && format.isStreamable()) {
+                try {
+                    List<PatientProfile> patients = streamingParser.parsePatientsFromBytes(excelBytes, budget);
+                    for (PatientProfile patient : patients) {
+                        patient.setSourceFormat(format.name());
+                    }
+                    log.info(() -> "Parsing streaming completado: " + patients.size() + " pacientes");
+                    return ParseOutcome.success(patients, format.name(), detected - start, System.nanoTime() - detected);
+                } catch (ParseBudget.Exceeded e) {
+                    throw e;
+                } catch (Exception e) {
+                    // Sin respaldo DOM si el fallo vino de un límite agotado
+                    budget.checkTime();
+                    log.warn(() -> "Streaming parser falló, usando DOM como respaldo: " + e.getMessage());
+                }
+            }
             
-            // Extraer datos de responsables legales
-            extractLegalGuardiansData(sheet, patient);
+            // El DOM descomprime todo el paquete: se descuenta lo que declara el directorio central,
+            // sin sumar lo que ya contó el intento streaming
+            budget.resetCounts();
+            budget.addInflatedBytes(preflight.declaredInflatedBytes);
+            Workbook workbook = openWorkbook(excelBytes, format);
+            if (workbook == null) {
+                List<PatientProfile> patients = repair(() -> streamingParser.parseSalvagedPatients(excelBytes, budget));
+                for (PatientProfile patient : patients) {
+                    patient.setSourceFormat(format.name());
+                }
+                return ParseOutcome.success(patients, format.name(), detected - start, System.nanoTime() - detected);
+            }
+            budget.checkTime();
+            if (workbook.getNumberOfSheets() == 0) {
+                workbook.close();
+                return reject(ParseOutcome.ErrorCode.NO_SHEETS, "Excel file has no sheets", format, start, detected);
+            }
             
-            // Extraer datos del médico tratante principal
-            extractReferredTherapistData(sheet, patient);
+            // Mismo extractor que el motor streaming, alimentado con las celdas del DOM
+            List<PatientProfile> patients = new ArrayList<>();
+            StreamingPatientExtractor firstSheet = null;
+            for (Sheet sheet : workbook) {
+                // Las filas se descuentan del presupuesto al compactar la hoja, no al reproducirla
+                StreamingPatientExtractor extractor = new StreamingPatientExtractor(rowBudget, ParseBudget.unlimited());
+                CompactSheet compact = CompactSheet.of(sheet, this::getCellValueAsString, 0, budget);
+                try {
+                    for (int rowIndex = 0; rowIndex < compact.rowCount(); rowIndex++) {
+                        int rowNumber = compact.rowNumber(rowIndex);
+                        extractor.startRow(rowNumber);
+                        for (int cell = compact.rowStart(rowIndex); cell < compact.rowEnd(rowIndex); cell++) {
+                            String value = compact.value(cell);
+                            if (value != null) {
+                                extractor.cell(compact.column(cell), value, compact.type(cell), compact.number(cell));
+                            }
+                        }
+                        extractor.endRow(rowNumber);
+                    }
+                } catch (StreamingPatientExtractor.StopReading stop) {
+                    // Formulario resuelto o presupuesto de filas agotado: no hace falta recorrer el resto
+                }
+                extractor.endSheet();
+                if (firstSheet == null) {
+                    firstSheet = extractor;
+                }
+                if (extractor.hasPatientData()) {
+                    patients.addAll(extractor.toPatientProfiles());
+                }
+            }
+            if (patients.isEmpty()) {
+                patients.add(firstSheet.toPatientProfile());
+            }
             
             workbook.close();
-            System.out.println("=== PARSING COMPLETADO EXITOSAMENTE ===");
-            return patient;
+            for (PatientProfile patient : patients) {
+                patient.setSourceFormat(format.name());
+            }
+            log.info(() -> "Parsing DOM completado: " + patients.size() + " pacientes");
+            return ParseOutcome.success(patients, format.name(), detected - start, System.nanoTime() - detected);
             
+        } catch (ParseBudget.Exceeded e) {
+            return abort(e, format, start, detected);
         } catch (IllegalArgumentException e) {
-            System.err.println("Validation error parsing Excel file: " + e.getMessage());
-            return createDefaultPatient("Validation Error: " + e.getMessage());
+            return reject(ParseOutcome.ErrorCode.INVALID_WORKBOOK, e.getMessage(), format, start, detected);
         } catch (Exception e) {
-            System.err.println("Unexpected error parsing Excel file: " + e.getMessage());
-            e.printStackTrace();
-            return createDefaultPatient("Unexpected Error: " + e.getMessage());
+            log.error(() -> "Unexpected error parsing Excel file: " + e.getMessage(), e);
+            return ParseOutcome.failed(e.getMessage(), format.name(), detected - start, System.nanoTime() - detected);
         }
     }
     
     /**
-     * Valida si los bytes decodificados corresponden a un archivo Excel válido
+     * Paciente para los métodos que devuelven PatientProfile: el extraído o, si la
+     * entrada se rechazó, el paciente de error de siempre
      */
-    private boolean isValidExcelFile(byte[] bytes) {
-        if (bytes.length < 4) {
-            return false;
+    private PatientProfile toPatient(ParseOutcome outcome) {
+        if (outcome.isSuccess()) {
+            return outcome.getPatient();
         }
-        
-        // Verificar la firma ZIP (los archivos .xlsx son archivos ZIP)
-        // ZIP signature: 50 4B 03 04 o 50 4B 05 06 o 50 4B 07 08
-        byte[] zipSignature1 = {0x50, 0x4B, 0x03, 0x04}; // ZIP local file header
-        byte[] zipSignature2 = {0x50, 0x4B, 0x05, 0x06}; // ZIP central directory
-        byte[] zipSignature3 = {0x50, 0x4B, 0x07, 0x08}; // ZIP end of central directory
-        
-        boolean isValidZip = startsWith(bytes, zipSignature1) || 
-                            startsWith(bytes, zipSignature2) || 
-                            startsWith(bytes, zipSignature3);
-        
-        System.out.println("Excel file validation - ZIP signature: " + isValidZip);
-        return isValidZip;
+        String prefix;
+        switch (outcome.getStatus()) {
+            case REJECTED:
+                prefix = "Validation Error: ";
+                break;
+            case ABORTED:
+                prefix = "Limit Exceeded: ";
+                break;
+            default:
+                prefix = "Unexpected Error: ";
+        }
+        PatientProfile patient = createDefaultPatient(prefix + outcome.getErrorMessage());
+        patient.setSourceFormat(outcome.getSourceFormat() != null ? outcome.getSourceFormat() : ExcelFormat.NOT_SPREADSHEET.name());
+        return patient;
+    }
+    
+    /**
+     * Rechazo de una entrada esperable (sin stack trace); se registra en WARN una sola línea
+     */
+    private ParseOutcome reject(ParseOutcome.ErrorCode errorCode, String message, ExcelFormat format, long start, long detected) {
+        ParserMetrics.recordRejection(errorCode);
+        log.warn(() -> "Excel rechazado (" + errorCode + "): " + message);
+        long now = System.nanoTime();
+        return ParseOutcome.rejected(errorCode, message, format != null ? format.name() : null,
+            detected - start, now - detected);
+    }
+    
+    /**
+     * Parsing cortado por el presupuesto de recursos; se registra en WARN una sola línea
+     */
+    private ParseOutcome abort(ParseBudget.Exceeded reason, ExcelFormat format, long start, long detected) {
+        ParserMetrics.recordAborted(reason.getErrorCode());
+        log.warn(() -> "Parsing de Excel cortado (" + reason.getErrorCode() + "): " + reason.getMessage());
+        long now = System.nanoTime();
+        return ParseOutcome.aborted(reason.getErrorCode(), reason.getMessage(), format != null ? format.name() : null,
+            detected - start, now - detected);
     }
     
     /**
-     * Verifica si un array de bytes comienza con otro array de bytes
+     * Crea el workbook con el lector que corresponde al formato detectado.
+     * @return Workbook, o null si el paquete está dañado (ZIP truncado o datos
+     *         comprimidos corruptos) y hay que leerlo por el camino de reparación
      */
-    private boolean startsWith(byte[] array, byte[] prefix) {
-        if (array.length < prefix.length) {
-            return false;
+    private Workbook openWorkbook(byte[] excelBytes, ExcelFormat format) {
+        switch (format) {
+            case OLE2:
+                try {
+                    Workbook workbook = new HSSFWorkbook(new ByteArrayInputStream(excelBytes));
+                    log.debug("Workbook HSSF (.xls) creado exitosamente");
+                    return workbook;
+                } catch (Exception e) {
+                    throw new IllegalArgumentException("Cannot create .xls workbook: " + e.getMessage(), e);
+                }
+            case TRUNCATED_ZIP:
+                log.debug("=== ZIP SIN DIRECTORIO CENTRAL, INTENTANDO REPARACIÓN ===");
+                return null;
+            default:
+                try {
+                    Workbook workbook = new XSSFWorkbook(new ByteArrayInputStream(excelBytes));
+                    log.debug(() -> "Workbook created successfully, sheets: " + workbook.getNumberOfSheets());
+                    return workbook;
+                } catch (Exception e) {
+                    log.warn(() -> "Error creating workbook from bytes: " + e.getMessage());
+                    if (isCorruptCompression(e)) {
+                        log.debug("=== INTENTANDO RECUPERACIÓN DE ARCHIVO CORRUPTO ===");
+                        return null;
+                    }
+                    throw new IllegalArgumentException("Cannot create Excel workbook from decoded bytes: " + e.getMessage(), e);
+                }
         }
-        for (int i = 0; i < prefix.length; i++) {
-            if (array[i] != prefix[i]) {
-                return false;
+    }
+    
+    /**
+     * Indica si el fallo al abrir el paquete se debe a datos comprimidos corruptos
+     */
+    private static boolean isCorruptCompression(Exception e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ZipException || cause instanceof DataFormatException) {
+                return true;
+            }
+            String message = String.valueOf(cause.getMessage());
+            if (message.contains("invalid distance too far back") ||
+                message.contains("corrupted") ||
+                message.contains("compression")) {
+                return true;
             }
         }
-        return true;
+        return false;
+    }
+    
+    /**
+     * Parsing de un paquete dañado sobre las partes recuperadas por el motor
+     * streaming; registra cuántas veces se usa y cuánto tarda
+     */
+    private <T> T repair(SalvageParse<T> salvage) {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            T result = salvage.parse();
+            succeeded = true;
+            log.info(() -> "Archivo ZIP reparado en " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return result;
+        } catch (ParseBudget.Exceeded | IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn(() -> "Reparación ZIP falló: " + e.getMessage());
+            throw new IllegalArgumentException("Archivo Excel corrupto o incompleto. Error: " + e.getMessage(), e);
+        } finally {
+            ParserMetrics.recordRepair(succeeded, System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * Lectura de las partes recuperadas de un paquete dañado
+     */
+    private interface SalvageParse<T> {
+        T parse() throws Exception;
+    }
+    
+    /**
+     * Validación previa (ExcelPreflight): tamaño, formato y estructura del paquete
+     * antes de crear ningún objeto de POI
+     */
+    private ExcelPreflight.Result preflight(byte[] excelBytes) {
+        ExcelPreflight.Result preflight = ExcelPreflight.check(excelBytes, limits);
+        if (preflight.format != null) {
+            ParserMetrics.recordFormat(preflight.format);
+            log.debug(() -> "Formato detectado: " + preflight.format + " (" + ParserMetrics.formatSummary() + ")");
+        }
+        return preflight;
+    }
+    
+    /**
+     * Rechazo de la validación previa; los límites de tamaño se reportan como parsing cortado
+     */
+    private ParseOutcome rejectPreflight(ExcelPreflight.Result preflight, long start, long detected) {
+        if (preflight.isLimitExceeded()) {
+            return abort(new ParseBudget.Exceeded(preflight.errorCode, preflight.message), preflight.format, start, detected);
+        }
+        return reject(preflight.errorCode, preflight.message, preflight.format, start, detected);
+    }
+    
+    /**
+     * Extrae los datos usando un plan de layout cacheado
+     * Lee las etiquetas en sus coordenadas y recorre solo las ventanas de los
+     * encabezados conocidos, sin barrer la hoja completa
+     * @return PatientProfile extraído o null si el plan no aplica a la hoja
+     */
+    private PatientProfile extractWithPlan(CompactSheet sheet, ExtractionPlan plan) {
+        if (!plan.matches(sheet)) {
+            return null;
+        }
+        log.debug("=== EXTRAYENDO CON PLAN DE LAYOUT CACHEADO ===");
+        PatientProfile patient = new PatientProfile();
+        extractPatientData(sheet, plan.labelIndex(), patient);
+        
+        // Solo se recorren las filas que cubren las secciones conocidas
+        int firstRow = Integer.MAX_VALUE;
+        int lastRow = -1;
+        for (ExtractionPlan.PlannedCell header : plan.guardianHeaders()) {
+            firstRow = Math.min(firstRow, header.address.getRow());
+            lastRow = Math.max(lastRow, header.address.getRow() + FormSectionScanner.MAX_SECTION_ROWS - 1);
+        }
+        for (ExtractionPlan.PlannedCell header : plan.therapistHeaders()) {
+            firstRow = Math.min(firstRow, header.address.getRow());
+            lastRow = Math.max(lastRow, header.address.getRow() + FormSectionScanner.MAX_SECTION_ROWS - 1);
+        }
+        if (lastRow >= 0) {
+            FormSectionScanner sections = new FormSectionScanner();
+            scanSections(sheet, firstRow, Math.min(lastRow, sheet.getLastRowNum()), sections);
+            applySections(sections, patient);
+        }
+        return patient;
     }
     
     /**
      * Extrae los datos del paciente desde la hoja de Excel
      */
-    private void extractPatientData(Sheet sheet, PatientProfile patient) {
+    private void extractPatientData(CompactSheet sheet, SheetLabelIndex labelIndex, PatientProfile patient) {
         try {
-            System.out.println("=== EXTRAYENDO DATOS DEL PACIENTE ===");
-            
-            // Primero, vamos a explorar el contenido de la hoja
-            System.out.println("Explorando contenido de la hoja...");
-            for (int rowIndex = 0; rowIndex <= Math.min(20, sheet.getLastRowNum()); rowIndex++) {
-                Row row = sheet.getRow(rowIndex);
-                if (row != null) {
-                    System.out.println("Fila " + rowIndex + ":");
-                    for (int colIndex = 0; colIndex < Math.min(10, row.getLastCellNum()); colIndex++) {
-                        Cell cell = row.getCell(colIndex);
-                        if (cell != null) {
-                            String cellValue = getCellValueAsString(cell);
-                            if (cellValue != null && !cellValue.trim().isEmpty()) {
-                                System.out.println("  Col " + colIndex + ": " + cellValue);
-                            }
+            log.debug("=== EXTRAYENDO DATOS DEL PACIENTE ===");
+            
+            // Volcado del contenido de la hoja solo en DEBUG: formatear celdas es costoso
+            if (log.isDebugEnabled()) {
+                for (int rowIndex = 0; rowIndex < sheet.rowCount() && sheet.rowNumber(rowIndex) <= 20; rowIndex++) {
+                    StringBuilder dump = new StringBuilder("Fila ").append(sheet.rowNumber(rowIndex)).append(':');
+                    for (int cell = sheet.rowStart(rowIndex); cell < sheet.rowEnd(rowIndex) && sheet.column(cell) < 10; cell++) {
+                        String cellValue = sheet.value(cell);
+                        if (cellValue != null && !cellValue.trim().isEmpty()) {
+                            dump.append(" [").append(sheet.column(cell)).append("] ").append(cellValue);
                         }
                     }
+                    log.debug(dump.toString());
                 }
             }
             
-            // Buscar datos del paciente en las celdas
-            // Basado en el formulario médico mostrado
-            
-            // Datos personales del paciente
-            String paternalSurname = getCellValueAsString(sheet, "Apellido Paterno");
-            System.out.println("Apellido Paterno encontrado: " + paternalSurname);
-            patient.setPaternalSurname(paternalSurname);
-            
-            String maternalSurname = getCellValueAsString(sheet, "Apellido Materno");
-            System.out.println("Apellido Materno encontrado: " + maternalSurname);
-            patient.setMaternalSurname(maternalSurname);
-            
-            String firstNames = getCellValueAsString(sheet, "Nombres Completos");
-            System.out.println("Nombres Completos encontrados: " + firstNames);
-            patient.setFirstNames(firstNames);
-            
-            String birthPlace = getCellValueAsString(sheet, "Lugar de Nacimiento");
-            System.out.println("Lugar de Nacimiento encontrado: " + birthPlace);
-            patient.setBirthPlace(birthPlace);
-            
-            // Fecha de nacimiento
-            String birthDateStr = getCellValueAsString(sheet, "Fecha de Nacimiento");
-            System.out.println("Fecha de Nacimiento encontrada: " + birthDateStr);
-            if (birthDateStr != null && !birthDateStr.isEmpty()) {
-                patient.setBirthDate(parseDate(birthDateStr));
+            // Las posiciones de las etiquetas vienen del índice de la hoja (o del plan cacheado)
+            FieldValues values = new FieldValues(PATIENT_LABELS.length);
+            for (int i = 0; i < PATIENT_LABELS.length; i++) {
+                int cell = findValueCell(sheet, labelIndex, PATIENT_LABELS[i]);
+                if (cell >= 0) {
+                    values.set(i, sheet.value(cell), sheet.type(cell), sheet.number(cell));
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug(PATIENT_LABELS[i] + " encontrado: " + values.string(i));
+                }
             }
-            
-            String gender = getCellValueAsString(sheet, "Sexo");
-            System.out.println("Sexo encontrado: " + gender);
-            patient.setGender(gender);
-            
-            String maritalStatus = getCellValueAsString(sheet, "Estado Civil");
-            System.out.println("Estado Civil encontrado: " + maritalStatus);
-            patient.setMaritalStatus(maritalStatus);
-            
-            String currentAddress = getCellValueAsString(sheet, "Domicilio Actual");
-            System.out.println("Domicilio Actual encontrado: " + currentAddress);
-            patient.setCurrentAddress(currentAddress);
-            
-            String district = getCellValueAsString(sheet, "Distrito/Provincia/Región o Estado/País");
-            System.out.println("Distrito encontrado: " + district);
-            patient.setDistrict(district);
-            
-            String identityDocument = getCellValueAsString(sheet, "Documento de Identidad");
-            System.out.println("Documento de Identidad encontrado: " + identityDocument);
-            patient.setIdentityDocumentNumber(identityDocument);
-            
-            String phone = getCellValueAsString(sheet, "Fijo Casa/Celular");
-            System.out.println("Teléfono encontrado: " + phone);
-            patient.setPhone(phone);
-            
-            String email = getCellValueAsString(sheet, "Correo electrónico");
-            System.out.println("Email encontrado: " + email);
-            patient.setEmail(email);
-            
-            String educationLevel = getCellValueAsString(sheet, "Grado de Instrucción");
-            System.out.println("Grado de Instrucción encontrado: " + educationLevel);
-            patient.setEducationLevel(educationLevel);
-            
-            String occupation = getCellValueAsString(sheet, "Ocupación");
-            System.out.println("Ocupación encontrada: " + occupation);
-            patient.setOccupation(occupation);
-            
-            String currentEducationalInstitution = getCellValueAsString(sheet, "Institución Educativa Actual");
-            System.out.println("Institución Educativa Actual encontrada: " + currentEducationalInstitution);
-            patient.setCurrentEducationalInstitution(currentEducationalInstitution);
-            
-            String religion = getCellValueAsString(sheet, "Religión");
-            System.out.println("Religión encontrada: " + religion);
-            patient.setReligion(religion);
+            FIELD_MAPPING.apply(values, patient);
             
             // Calcular edad (simplificado)
             if (patient.getBirthDate() != null) {
                 LocalDate now = LocalDate.now();
                 int age = now.getYear() - patient.getBirthDate().getYear();
                 patient.setAgeCurrent(age);
-                System.out.println("Edad calculada: " + age);
+                log.debug(() -> "Edad calculada: " + age);
             }
             
-            System.out.println("=== EXTRACCIÓN COMPLETADA ===");
+            log.debug("=== EXTRACCIÓN COMPLETADA ===");
             
         } catch (Exception e) {
-            System.err.println("Error extracting patient data: " + e.getMessage());
-            e.printStackTrace();
+            log.error(() -> "Error extracting patient data: " + e.getMessage(), e);
         }
     }
     
     /**
-     * Busca el valor de una celda basado en el texto de la etiqueta
+     * Busca la celda de valor de una etiqueta
+     * Usa el índice de etiquetas de la hoja: la celda de valor es la adyacente a la derecha
+     * @return Índice de la celda en la hoja compacta, o -1 si no existe
      */
-    private String getCellValueAsString(Sheet sheet, String labelText) {
-        try {
-            for (Row row : sheet) {
-                for (Cell cell : row) {
-                    if (cell.getCellType() == CellType.STRING) {
-                        String cellValue = cell.getStringCellValue().trim();
-                        if (cellValue.contains(labelText)) {
-                            // Buscar la celda adyacente con el valor
-                            int columnIndex = cell.getColumnIndex();
-                            int rowIndex = cell.getRowIndex();
-                            
-                            // Buscar en la misma fila, columna siguiente
-                            Cell valueCell = row.getCell(columnIndex + 1);
-                            if (valueCell != null) {
-                                return getCellValueAsString(valueCell);
-                            }
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error searching for label: " + labelText + " - " + e.getMessage());
+    private int findValueCell(CompactSheet sheet, SheetLabelIndex labelIndex, String labelText) {
+        CellAddress labelAddress = labelIndex.find(labelText);
+        if (labelAddress == null) {
+            return -1;
         }
-        return null;
+        return sheet.find(labelAddress.getRow(), labelAddress.getColumn() + 1);
     }
     
     /**
@@ -350,36 +662,6 @@ public class ExcelPatientParser implements IExcelParserService {
         }
     }
     
-    /**
-     * Parsea una fecha desde String
-     */
-    private LocalDate parseDate(String dateStr) {
-        if (dateStr == null || dateStr.isEmpty()) {
-            return null;
-        }
-        
-        try {
-            // Intentar diferentes formatos de fecha
-            String[] formats = {
-                "M/d/yyyy", "MM/dd/yyyy", "d/M/yyyy", "dd/MM/yyyy",
-                "yyyy-MM-dd", "dd-MM-yyyy", "MM-dd-yyyy"
-            };
-            
-            for (String format : formats) {
-                try {
-                    DateTimeFormatter formatter = DateTimeFormatter.ofPattern(format);
-                    return LocalDate.parse(dateStr, formatter);
-                } catch (DateTimeParseException e) {
-                    // Continuar con el siguiente formato
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error parsing date: " + dateStr + " - " + e.getMessage());
-        }
-        
-        return null;
-    }
-    
     /**
      * Crea un paciente por defecto en caso de error
      */
@@ -403,412 +685,85 @@ public class ExcelPatientParser implements IExcelParserService {
     }
     
     /**
-     * Intenta reparar un archivo ZIP corrupto
-     * @param corruptedBytes Bytes del archivo ZIP corrupto
-     * @return Bytes reparados o null si no se puede reparar
+     * Extrae los responsables legales (R.1 y R.2) y el médico tratante principal
+     * en un único recorrido de la hoja con FormSectionScanner. El recorrido termina
+     * en cuanto las secciones quedan resueltas (ambos responsables vistos y médico
+     * tratante decidido) o al llegar al presupuesto de filas (EXCEL_FORM_ROW_BUDGET).
      */
-    private byte[] repairZipFile(byte[] corruptedBytes) {
+    private void extractSectionsData(CompactSheet sheet, PatientProfile patient, ExtractionPlan.Builder planBuilder) {
         try {
-            System.out.println("=== INICIANDO REPARACIÓN DE ZIP ===");
-            System.out.println("Bytes originales: " + corruptedBytes.length);
-            
-            ByteArrayOutputStream repairedOutput = new ByteArrayOutputStream();
-            ZipOutputStream zipOut = new ZipOutputStream(repairedOutput);
-            
-            try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(corruptedBytes))) {
-                ZipEntry entry;
-                while ((entry = zipIn.getNextEntry()) != null) {
-                    try {
-                        // Crear nueva entrada
-                        ZipEntry newEntry = new ZipEntry(entry.getName());
-                        zipOut.putNextEntry(newEntry);
-                        
-                        // Copiar datos de la entrada
-                        byte[] buffer = new byte[1024];
-                        int length;
-                        while ((length = zipIn.read(buffer)) > 0) {
-                            zipOut.write(buffer, 0, length);
-                        }
-                        
-                        zipOut.closeEntry();
-                        zipIn.closeEntry();
-                        
-                        System.out.println("Entrada reparada: " + entry.getName());
-                        
-                    } catch (Exception e) {
-                        System.err.println("Error reparando entrada " + entry.getName() + ": " + e.getMessage());
-                        // Continuar con la siguiente entrada
-                    }
-                }
+            log.debug("=== EXTRAYENDO RESPONSABLES LEGALES Y MÉDICO TRATANTE ===");
+            log.debug(() -> "Total de filas en la hoja: " + (sheet.getLastRowNum() + 1));
+            
+            int lastRow = rowBudget > 0 ? Math.min(sheet.getLastRowNum(), rowBudget - 1) : sheet.getLastRowNum();
+            FormSectionScanner sections = new FormSectionScanner();
+            int stoppedAt = scanSections(sheet, 0, lastRow, sections);
+            if (stoppedAt >= 0 && stoppedAt < sheet.getLastRowNum()) {
+                ParserMetrics.recordSheetResolvedEarly();
+                log.debug(() -> "Secciones resueltas en la fila " + stoppedAt + ", se omite el resto de la hoja");
+            } else if (stoppedAt < 0 && lastRow < sheet.getLastRowNum()) {
+                ParserMetrics.recordRowBudgetReached();
+                log.debug(() -> "Presupuesto de " + rowBudget + " filas agotado buscando responsables y médico tratante");
             }
             
-            zipOut.close();
-            byte[] repairedBytes = repairedOutput.toByteArray();
-            
-            System.out.println("ZIP reparado exitosamente");
-            System.out.println("Bytes reparados: " + repairedBytes.length);
-            
-            return repairedBytes;
-            
-        } catch (Exception e) {
-            System.err.println("Error en reparación de ZIP: " + e.getMessage());
-            return null;
-        }
-    }
-    
-    /**
-     * Valida y limpia el base64 de forma más robusta
-     * @param base64Content Contenido base64 a validar
-     * @return Base64 limpio y validado
-     */
-    private String robustBase64Validation(String base64Content) {
-        if (base64Content == null || base64Content.trim().isEmpty()) {
-            throw new IllegalArgumentException("Base64 content is null or empty");
-        }
-        
-        System.out.println("=== VALIDACIÓN ROBUSTA DE BASE64 ===");
-        System.out.println("Longitud original: " + base64Content.length());
-        
-        // Limpiar caracteres no válidos
-        String cleaned = base64Content.replaceAll("\\s+", "")
-                                    .replaceAll("[^A-Za-z0-9+/=]", "");
-        
-        // Verificar longitud mínima
-        if (cleaned.length() < 100) {
-            throw new IllegalArgumentException("Base64 demasiado corto: " + cleaned.length() + " caracteres");
-        }
-        
-        // Verificar formato base64
-        if (!cleaned.matches("^[A-Za-z0-9+/]*={0,2}$")) {
-            throw new IllegalArgumentException("Base64 contiene caracteres inválidos");
-        }
-        
-        // Ajustar padding
-        int remainder = cleaned.length() % 4;
-        if (remainder != 0) {
-            int paddingNeeded = 4 - remainder;
-            cleaned += "====".substring(0, paddingNeeded);
-            System.out.println("Padding agregado: " + paddingNeeded + " caracteres");
-        }
-        
-        // Validar que se puede decodificar
-        try {
-            byte[] testDecode = Base64.getDecoder().decode(cleaned);
-            System.out.println("Base64 válido - Bytes decodificados: " + testDecode.length);
-        } catch (IllegalArgumentException e) {
-            throw new IllegalArgumentException("Base64 no se puede decodificar: " + e.getMessage());
-        }
-        
-        System.out.println("=== VALIDACIÓN ROBUSTA COMPLETADA ===");
-        return cleaned;
-    }
-    
-    /**
-     * Extrae datos de responsables legales desde la hoja de Excel
-     * Busca las secciones R.1 y R.2 con los datos de responsables
-     */
-    private void extractLegalGuardiansData(Sheet sheet, PatientProfile patient) {
-        try {
-            System.out.println("=== EXTRAYENDO DATOS DE RESPONSABLES LEGALES ===");
-            
-            List<LegalGuardian> legalGuardians = new ArrayList<>();
-            
-            // Buscar responsables legales R.1 y R.2
-            for (int rowIndex = 0; rowIndex <= sheet.getLastRowNum(); rowIndex++) {
-                Row row = sheet.getRow(rowIndex);
-                if (row == null) continue;
-                
-                // Buscar filas que contengan "R.1" o "R.2"
-                for (int cellIndex = 0; cellIndex < row.getLastCellNum(); cellIndex++) {
-                    Cell cell = row.getCell(cellIndex);
-                    if (cell == null) continue;
-                    
-                    String cellValue = getCellValueAsString(cell);
-                    if (cellValue == null) continue;
-                    
-                    // Detectar responsable R.1 - más flexible
-                    if (cellValue.contains("R.1") && 
-                        (cellValue.contains("Nombre") || cellValue.contains("Apellidos") || cellValue.contains("es."))) {
-                        System.out.println("DEBUG - R.1 encontrado: '" + cellValue + "'");
-                        LegalGuardian guardian1 = extractGuardianData(sheet, rowIndex, cellIndex, "R.1");
-                        if (guardian1 != null) {
-                            legalGuardians.add(guardian1);
-                            System.out.println("Responsable R.1 encontrado: " + guardian1.getFullName());
-                        }
-                    }
-                    
-                    // Detectar responsable R.2 - más flexible
-                    if (cellValue.contains("R.2") && 
-                        (cellValue.contains("Nombre") || cellValue.contains("Apellidos") || cellValue.contains("es."))) {
-                        System.out.println("DEBUG - R.2 encontrado: '" + cellValue + "'");
-                        LegalGuardian guardian2 = extractGuardianData(sheet, rowIndex, cellIndex, "R.2");
-                        if (guardian2 != null) {
-                            legalGuardians.add(guardian2);
-                            System.out.println("Responsable R.2 encontrado: " + guardian2.getFullName());
-                        }
-                    }
+            for (FormSectionScanner.Header header : sections.getHeaders()) {
+                if (FormSectionScanner.THERAPIST.equals(header.kind)) {
+                    planBuilder.therapistHeader(header.row, header.column, header.text);
+                } else {
+                    planBuilder.guardianHeader(header.row, header.column, header.text, header.kind);
                 }
             }
+            applySections(sections, patient);
             
-            // Agregar responsables al paciente
-            for (LegalGuardian guardian : legalGuardians) {
-                patient.addLegalGuardian(guardian);
+            if (log.isDebugEnabled()) {
+                log.debug("=== RESPONSABLES LEGALES EXTRAÍDOS: " + patient.getLegalGuardians().size()
+                    + ", MÉDICO TRATANTE: " + patient.getReferredTherapist() + " ===");
             }
             
-            System.out.println("=== RESPONSABLES LEGALES EXTRAÍDOS: " + legalGuardians.size() + " ===");
-            
         } catch (Exception e) {
-            System.err.println("Error extrayendo responsables legales: " + e.getMessage());
-            e.printStackTrace();
+            log.error(() -> "Error extrayendo responsables legales y médico tratante: " + e.getMessage(), e);
         }
     }
     
     /**
-     * Extrae datos de un responsable específico (R.1 o R.2)
+     * Entrega al scanner las celdas de las filas indicadas en orden de lectura,
+     * cada una con el valor de su celda adyacente
+     * @return Fila en la que las secciones quedaron resueltas, o -1 si se llegó a lastRow
      */
-    private LegalGuardian extractGuardianData(Sheet sheet, int startRow, int startCol, String guardianType) {
-        try {
-            LegalGuardian guardian = new LegalGuardian();
-            
-            // Buscar datos en las siguientes filas
-            for (int rowOffset = 0; rowOffset < 10; rowOffset++) { // Buscar en las siguientes 10 filas
-                Row row = sheet.getRow(startRow + rowOffset);
-                if (row == null) continue;
-                
-                for (int colOffset = 0; colOffset < 5; colOffset++) { // Buscar en las siguientes 5 columnas
-                    Cell cell = row.getCell(startCol + colOffset);
-                    if (cell == null) continue;
-                    
-                    String cellValue = getCellValueAsString(cell);
-                    if (cellValue == null || cellValue.trim().isEmpty()) continue;
-                    
-                    // Buscar datos específicos del responsable - más flexible
-                    if (cellValue.contains(guardianType) && 
-                        (cellValue.contains("Nombre") || cellValue.contains("Apellidos") || cellValue.contains("es."))) {
-                        
-                        System.out.println("DEBUG - Campo nombre encontrado: '" + cellValue + "'");
-                        
-                        // El siguiente valor debería ser el nombre
-                        Cell nameCell = row.getCell(startCol + colOffset + 1);
-                        if (nameCell != null) {
-                            String fullName = getCellValueAsString(nameCell);
-                            if (fullName != null && !fullName.trim().isEmpty()) {
-                                guardian.setFullName(fullName.trim());
-                                System.out.println(guardianType + " Nombre: " + fullName);
-                            }
-                        }
-                    }
-                    
-                    if (cellValue.contains(guardianType) && cellValue.contains("Documento")) {
-                        
-                        Cell docCell = row.getCell(startCol + colOffset + 1);
-                        if (docCell != null) {
-                            String docNumber = getCellValueAsString(docCell);
-                            if (docNumber != null && !docNumber.trim().isEmpty()) {
-                                guardian.setIdentityDocumentNumber(docNumber.trim());
-                                System.out.println(guardianType + " Documento: " + docNumber);
-                            }
-                        }
-                    }
-                    
-                    if (cellValue.contains(guardianType) && 
-                        (cellValue.contains("Parentesco") || cellValue.contains("Relación"))) {
-                        
-                        Cell relationshipCell = row.getCell(startCol + colOffset + 1);
-                        if (relationshipCell != null) {
-                            String relationship = getCellValueAsString(relationshipCell);
-                            if (relationship != null && !relationship.trim().isEmpty()) {
-                                guardian.setRelationship(relationship.trim());
-                                System.out.println(guardianType + " Parentesco: " + relationship);
-                            }
-                        }
-                    }
-                    
-                    if (cellValue.contains(guardianType) && 
-                        (cellValue.contains("Celular") || cellValue.contains("Teléfono") || cellValue.contains("Fono"))) {
-                        
-                        Cell phoneCell = row.getCell(startCol + colOffset + 1);
-                        if (phoneCell != null) {
-                            String phone = getCellValueAsString(phoneCell);
-                            if (phone != null && !phone.trim().isEmpty()) {
-                                guardian.setPhoneNumber(phone.trim());
-                                System.out.println(guardianType + " Teléfono: " + phone);
-                            }
-                        }
-                    }
-                    
-                    if (cellValue.contains(guardianType) && 
-                        (cellValue.contains("E-mail") || cellValue.contains("Email") || cellValue.contains("Correo"))) {
-                        
-                        Cell emailCell = row.getCell(startCol + colOffset + 1);
-                        if (emailCell != null) {
-                            String email = getCellValueAsString(emailCell);
-                            if (email != null && !email.trim().isEmpty()) {
-                                guardian.setEmail(email.trim());
-                                System.out.println(guardianType + " Email: " + email);
-                            }
-                        }
-                    }
+    private static int scanSections(CompactSheet sheet, int firstRow, int lastRow, FormSectionScanner sections) {
+        for (int rowIndex = sheet.rowIndexFrom(firstRow); rowIndex < sheet.rowCount(); rowIndex++) {
+            int rowNumber = sheet.rowNumber(rowIndex);
+            if (rowNumber > lastRow) {
+                break;
+            }
+            int end = sheet.rowEnd(rowIndex);
+            for (int cell = sheet.rowStart(rowIndex); cell < end; cell++) {
+                String value = sheet.value(cell);
+                if (value != null && !value.isEmpty()) {
+                    boolean adjacentExists = cell + 1 < end && sheet.column(cell + 1) == sheet.column(cell) + 1;
+                    sections.accept(rowNumber, sheet.column(cell), value, adjacentExists ? sheet.value(cell + 1) : null);
                 }
             }
-            
-            // Solo retornar si tiene al menos el nombre
-            if (guardian.getFullName() != null && !guardian.getFullName().trim().isEmpty()) {
-                return guardian;
+            sections.endRow(rowNumber);
+            if (sections.isResolved()) {
+                return rowNumber;
             }
-            
-            return null;
-            
-        } catch (Exception e) {
-            System.err.println("Error extrayendo datos del " + guardianType + ": " + e.getMessage());
-            return null;
         }
+        return -1;
     }
     
     /**
-     * Extrae datos del médico tratante principal desde la hoja de Excel
-     * Busca la sección "MÉDICO TRATANTE PRINCIPAL" y extrae el nombre
+     * Agrega al paciente los responsables y el médico tratante encontrados
      */
-    private void extractReferredTherapistData(Sheet sheet, PatientProfile patient) {
-        try {
-            System.out.println("=== EXTRAYENDO DATOS DEL MÉDICO TRATANTE PRINCIPAL ===");
-            System.out.println("Total de filas en la hoja: " + (sheet.getLastRowNum() + 1));
-            
-            // Buscar la sección del médico tratante principal
-            for (int rowIndex = 0; rowIndex <= sheet.getLastRowNum(); rowIndex++) {
-                Row row = sheet.getRow(rowIndex);
-                if (row == null) continue;
-                
-                // Buscar filas que contengan "MÉDICO TRATANTE PRINCIPAL"
-                for (int cellIndex = 0; cellIndex < row.getLastCellNum(); cellIndex++) {
-                    Cell cell = row.getCell(cellIndex);
-                    if (cell == null) continue;
-                    
-                    String cellValue = getCellValueAsString(cell);
-                    if (cellValue == null) continue;
-                    
-                    // Debug: mostrar contenido de celdas que contengan "MÉDICO" o "TRATANTE"
-                    if (cellValue.toUpperCase().contains("MÉDICO") || 
-                        cellValue.toUpperCase().contains("MEDICO") ||
-                        cellValue.toUpperCase().contains("TRATANTE")) {
-                        System.out.println("DEBUG - Celda encontrada en fila " + rowIndex + ", col " + cellIndex + ": '" + cellValue + "'");
-                    }
-                    
-                    // Detectar sección del médico tratante - más flexible
-                    if (cellValue.toUpperCase().contains("MÉDICO TRATANTE PRINCIPAL") || 
-                        cellValue.toUpperCase().contains("MEDICO TRATANTE PRINCIPAL") ||
-                        cellValue.toUpperCase().contains("Médico Tratante Principal") ||
-                        cellValue.toUpperCase().contains("MÈDICO TRATANTE PRINCIPAL") ||
-                        cellValue.toUpperCase().contains("III") && cellValue.toUpperCase().contains("MÉDICO")) {
-                        
-                        System.out.println("=== SECCIÓN MÉDICO TRATANTE ENCONTRADA ===");
-                        System.out.println("Fila: " + rowIndex + ", Columna: " + cellIndex);
-                        System.out.println("Contenido: " + cellValue);
-                        
-                        String therapistName = extractTherapistName(sheet, rowIndex, cellIndex);
-                        if (therapistName != null && !therapistName.trim().isEmpty()) {
-                            ReferredTherapist therapist = new ReferredTherapist(therapistName.trim());
-                            patient.setReferredTherapist(therapist);
-                            System.out.println("✅ Médico tratante encontrado: " + therapistName);
-                            return; // Salir después de encontrar el primer médico tratante
-                        } else {
-                            System.out.println("❌ No se pudo extraer el nombre del médico tratante");
-                        }
-                    }
-                }
-            }
-            
-            System.out.println("=== NO SE ENCONTRÓ MÉDICO TRATANTE PRINCIPAL ===");
-            
-        } catch (Exception e) {
-            System.err.println("Error extrayendo datos del médico tratante: " + e.getMessage());
-            e.printStackTrace();
+    private void applySections(FormSectionScanner sections, PatientProfile patient) {
+        for (LegalGuardian guardian : sections.getGuardians()) {
+            patient.addLegalGuardian(guardian);
+            log.debug(() -> "Responsable encontrado: " + guardian.getFullName());
         }
-    }
-    
-    /**
-     * Extrae el nombre del médico tratante desde la posición encontrada
-     */
-    private String extractTherapistName(Sheet sheet, int startRow, int startCol) {
-        try {
-            System.out.println("=== EXTRAYENDO NOMBRE DEL MÉDICO TRATANTE ===");
-            System.out.println("Posición inicial - Fila: " + startRow + ", Columna: " + startCol);
-            
-            // Buscar en las siguientes filas el campo "Nombre y Apellidos"
-            for (int rowOffset = 0; rowOffset < 15; rowOffset++) { // Aumentar rango de búsqueda
-                Row row = sheet.getRow(startRow + rowOffset);
-                if (row == null) continue;
-                
-                System.out.println("Revisando fila " + (startRow + rowOffset) + "...");
-                
-                for (int colOffset = 0; colOffset < 8; colOffset++) { // Aumentar rango de columnas
-                    Cell cell = row.getCell(startCol + colOffset);
-                    if (cell == null) continue;
-                    
-                    String cellValue = getCellValueAsString(cell);
-                    if (cellValue == null || cellValue.trim().isEmpty()) continue;
-                    
-                    System.out.println("  Celda [" + (startRow + rowOffset) + "," + (startCol + colOffset) + "]: '" + cellValue + "'");
-                    
-                    // Buscar el campo "Nombre y Apellidos" del médico - más flexible
-                    if (cellValue.toUpperCase().contains("NOMBRE Y APELLIDOS") || 
-                        cellValue.toUpperCase().contains("NOMBRE") ||
-                        cellValue.toUpperCase().contains("APELLIDOS") ||
-                        cellValue.toUpperCase().contains("MÉDICO") ||
-                        cellValue.toUpperCase().contains("MEDICO") ||
-                        cellValue.toUpperCase().contains("DOCTOR")) {
-                        
-                        System.out.println("  ✅ Campo de nombre encontrado: '" + cellValue + "'");
-                        
-                        // Buscar el nombre en la celda siguiente
-                        Cell nameCell = row.getCell(startCol + colOffset + 1);
-                        if (nameCell != null) {
-                            String therapistName = getCellValueAsString(nameCell);
-                            if (therapistName != null && !therapistName.trim().isEmpty()) {
-                                System.out.println("  ✅ Nombre del médico extraído: '" + therapistName + "'");
-                                return therapistName.trim();
-                            }
-                        }
-                        
-                        // También buscar en la misma fila, columna siguiente
-                        Cell nextCell = row.getCell(startCol + colOffset + 1);
-                        if (nextCell != null) {
-                            String nextValue = getCellValueAsString(nextCell);
-                            if (nextValue != null && !nextValue.trim().isEmpty() && 
-                                !nextValue.toUpperCase().contains("NOMBRE") && 
-                                !nextValue.toUpperCase().contains("APELLIDOS") &&
-                                !nextValue.toUpperCase().contains("ESPECIALIDAD") &&
-                                !nextValue.toUpperCase().contains("LUGAR") &&
-                                !nextValue.toUpperCase().contains("FONO")) {
-                                System.out.println("  ✅ Nombre del médico encontrado en celda adyacente: '" + nextValue + "'");
-                                return nextValue.trim();
-                            }
-                        }
-                    }
-                    
-                    // Buscar directamente nombres que parezcan de personas (Tadeo Jones)
-                    if (cellValue.trim().matches(".*[A-Za-z]+\\s+[A-Za-z]+.*") && 
-                        !cellValue.toUpperCase().contains("NOMBRE") &&
-                        !cellValue.toUpperCase().contains("APELLIDOS") &&
-                        !cellValue.toUpperCase().contains("ESPECIALIDAD") &&
-                        !cellValue.toUpperCase().contains("LUGAR") &&
-                        !cellValue.toUpperCase().contains("FONO") &&
-                        !cellValue.toUpperCase().contains("MÉDICO") &&
-                        !cellValue.toUpperCase().contains("TRATANTE")) {
-                        
-                        System.out.println("  🎯 Posible nombre de médico encontrado: '" + cellValue + "'");
-                        return cellValue.trim();
-                    }
-                }
-            }
-            
-            System.out.println("❌ No se encontró el nombre del médico tratante");
-            return null;
-            
-        } catch (Exception e) {
-            System.err.println("Error extrayendo nombre del médico tratante: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+        String therapistName = sections.getTherapistName();
+        if (therapistName != null && !therapistName.trim().isEmpty()) {
+            patient.setReferredTherapist(new ReferredTherapist(therapistName.trim()));
+            log.debug(() -> "Médico tratante encontrado: " + therapistName);
         }
     }
 }
@@ -0,0 +1,195 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import com.soulware.platform.docexcelparser.domain.model.ParseOutcome;
+import org.apache.poi.openxml4j.util.ZipSecureFile;
+
+/**
+ * Validación previa de un archivo antes de crear cualquier objeto de POI.
+ *
+ * Con una sola lectura del directorio central (sin descomprimir nada) comprueba
+ * los límites de tamaño, la coherencia de la tabla de entradas, que el paquete
+ * no use cifrado ni métodos de compresión que POI no lee, la relación de
+ * compresión de cada parte y que estén las partes obligatorias del OOXML. Cuesta
+ * microsegundos y proporcional al número de entradas, no al tamaño del archivo:
+ * lo que no pasa se rechaza con su código sin intentar abrir el workbook, probar
+ * otro lector ni reparar el ZIP. Los paquetes cuyo directorio central falta o no
+ * coincide con las cabeceras locales se aceptan como TRUNCATED_ZIP para leerlos
+ * por el camino de reparación.
+ */
+final class ExcelPreflight {
+
+    /** Tamaño mínimo razonable de un archivo Excel */
+    static final int MIN_EXCEL_BYTES = 1000;
+
+    private static final String CONTENT_TYPES_PART = "[Content_Types].xml";
+    private static final String ROOT_RELS_PART = "_rels/.rels";
+    private static final String WORKSHEETS_DIR = "/worksheets/";
+
+    // Cabecera OLE2 / CFB: marca de orden de bytes y tamaño de sector (512 o 4096 bytes)
+    private static final int OLE2_BYTE_ORDER_OFFSET = 28;
+    private static final int OLE2_BYTE_ORDER = 0xFFFE;
+    private static final int OLE2_SECTOR_SHIFT_OFFSET = 30;
+    private static final int OLE2_HEADER_SIZE = 512;
+
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    // Igual que ZipSecureFile: la relación de compresión solo se evalúa en partes más grandes
+    private static final long RATIO_GRACE_BYTES = 100 * 1024;
+
+    private ExcelPreflight() {
+    }
+
+    /**
+     * Valida el archivo y detecta su formato
+     * @param bytes Contenido del archivo
+     * @param limits Límites de recursos configurados
+     * @return Resultado con el formato detectado o el motivo del rechazo
+     */
+    static Result check(byte[] bytes, ParseBudget.Limits limits) {
+        if (bytes == null || bytes.length == 0) {
+            return Result.rejected(ParseOutcome.ErrorCode.EMPTY_INPUT, "Excel bytes are null or empty", null);
+        }
+        if (bytes.length < MIN_EXCEL_BYTES) {
+            return Result.rejected(ParseOutcome.ErrorCode.INPUT_TOO_SMALL, "Decoded bytes too small (" + bytes.length
+                + " bytes), likely not a valid Excel file", null);
+        }
+        ParseBudget.Exceeded tooLarge = ParseBudget.checkDecodedBytes(bytes.length, limits);
+        if (tooLarge != null) {
+            return Result.rejected(tooLarge.getErrorCode(), tooLarge.getMessage(), null);
+        }
+
+        if (ExcelFormat.hasOle2Signature(bytes)) {
+            return checkOle2(bytes);
+        }
+        if (!ExcelFormat.hasZipSignature(bytes)) {
+            return Result.rejected(ParseOutcome.ErrorCode.NOT_SPREADSHEET,
+                "Decoded bytes do not appear to be a valid Excel file", ExcelFormat.NOT_SPREADSHEET);
+        }
+
+        ZipCentralDirectory directory = ZipCentralDirectory.read(bytes);
+        if (directory == null) {
+            // Sin directorio central legible: se intenta reparar al abrirlo
+            return Result.accepted(ExcelFormat.TRUNCATED_ZIP, null, 0);
+        }
+        if (!ExcelFormat.hasWorkbookPart(directory)) {
+            return Result.rejected(ParseOutcome.ErrorCode.NOT_SPREADSHEET,
+                "ZIP archive does not contain a workbook part", ExcelFormat.NOT_SPREADSHEET);
+        }
+        return checkPackage(bytes, directory, limits);
+    }
+
+    private static Result checkOle2(byte[] bytes) {
+        int sectorShift = ZipCentralDirectory.readShort(bytes, OLE2_SECTOR_SHIFT_OFFSET);
+        if (bytes.length < OLE2_HEADER_SIZE
+                || ZipCentralDirectory.readShort(bytes, OLE2_BYTE_ORDER_OFFSET) != OLE2_BYTE_ORDER
+                || (sectorShift != 9 && sectorShift != 12)) {
+            return Result.rejected(ParseOutcome.ErrorCode.CORRUPT_CONTAINER, "Invalid OLE2 header", ExcelFormat.OLE2);
+        }
+        return Result.accepted(ExcelFormat.OLE2, null, 0);
+    }
+
+    private static Result checkPackage(byte[] bytes, ZipCentralDirectory directory, ParseBudget.Limits limits) {
+        if (directory.size() != directory.declaredEntries()) {
+            return corrupt("ZIP archive has duplicate entry names");
+        }
+
+        double minInflateRatio = ZipSecureFile.getMinInflateRatio();
+        long maxEntrySize = ZipSecureFile.getMaxEntrySize();
+        long declaredInflated = 0;
+        boolean hasWorksheet = false;
+        for (ZipCentralDirectory.Entry entry : directory.entries()) {
+            if (entry.isEncrypted()) {
+                return Result.rejected(ParseOutcome.ErrorCode.UNSUPPORTED_ZIP_FEATURE,
+                    "ZIP entry is encrypted: " + entry.name, ExcelFormat.OOXML);
+            }
+            if (entry.method != METHOD_STORED && entry.method != METHOD_DEFLATED) {
+                return Result.rejected(ParseOutcome.ErrorCode.UNSUPPORTED_ZIP_FEATURE,
+                    "Unsupported compression method " + entry.method + " for " + entry.name, ExcelFormat.OOXML);
+            }
+            if (!directory.hasValidLocalHeader(bytes, entry)) {
+                // El directorio no coincide con las cabeceras locales: se lee por el camino de reparación
+                return Result.accepted(ExcelFormat.TRUNCATED_ZIP, null, 0);
+            }
+            if (entry.uncompressedSize > maxEntrySize) {
+                return suspicious("ZIP entry " + entry.name + " declares " + entry.uncompressedSize
+                    + " bytes, above the maximum entry size of " + maxEntrySize);
+            }
+            if (entry.uncompressedSize > RATIO_GRACE_BYTES
+                    && (double) entry.compressedSize / entry.uncompressedSize < minInflateRatio) {
+                return suspicious("ZIP entry " + entry.name + " expands from " + entry.compressedSize
+                    + " to " + entry.uncompressedSize + " bytes");
+            }
+            declaredInflated += entry.uncompressedSize;
+            hasWorksheet |= entry.name.startsWith("xl/") && entry.name.contains(WORKSHEETS_DIR);
+        }
+        if (limits.maxInflatedBytes > 0 && declaredInflated > limits.maxInflatedBytes) {
+            return Result.rejected(ParseOutcome.ErrorCode.INFLATED_BYTES_LIMIT, "Declared inflated size "
+                + declaredInflated + " bytes exceeds limit of " + limits.maxInflatedBytes, ExcelFormat.OOXML);
+        }
+
+        if (directory.find(CONTENT_TYPES_PART) == null) {
+            return missing(CONTENT_TYPES_PART);
+        }
+        if (directory.find(ROOT_RELS_PART) == null) {
+            return missing(ROOT_RELS_PART);
+        }
+        if (!hasWorksheet) {
+            return Result.rejected(ParseOutcome.ErrorCode.NO_SHEETS, "Excel package has no worksheet parts",
+                ExcelFormat.OOXML);
+        }
+        return Result.accepted(ExcelFormat.ooxmlVariant(bytes, directory), directory, declaredInflated);
+    }
+
+    private static Result corrupt(String message) {
+        return Result.rejected(ParseOutcome.ErrorCode.CORRUPT_CONTAINER, message, ExcelFormat.OOXML);
+    }
+
+    private static Result suspicious(String message) {
+        return Result.rejected(ParseOutcome.ErrorCode.SUSPICIOUS_COMPRESSION, message, ExcelFormat.OOXML);
+    }
+
+    private static Result missing(String part) {
+        return Result.rejected(ParseOutcome.ErrorCode.MISSING_PART, "Required part not found: " + part, ExcelFormat.OOXML);
+    }
+
+    /**
+     * Resultado de la validación previa
+     */
+    static final class Result {
+        final ExcelFormat format;
+        final ParseOutcome.ErrorCode errorCode;
+        final String message;
+        // Directorio central ya leído (null para OLE2 y ZIP truncados) y la suma de tamaños que declara
+        final ZipCentralDirectory directory;
+        final long declaredInflatedBytes;
+
+        private Result(ExcelFormat format, ParseOutcome.ErrorCode errorCode, String message,
+                       ZipCentralDirectory directory, long declaredInflatedBytes) {
+            this.format = format;
+            this.errorCode = errorCode;
+            this.message = message;
+            this.directory = directory;
+            this.declaredInflatedBytes = declaredInflatedBytes;
+        }
+
+        static Result accepted(ExcelFormat format, ZipCentralDirectory directory, long declaredInflatedBytes) {
+            return new Result(format, null, null, directory, declaredInflatedBytes);
+        }
+
+        static Result rejected(ParseOutcome.ErrorCode errorCode, String message, ExcelFormat format) {
+            return new Result(format, errorCode, message, null, 0);
+        }
+
+        boolean isAccepted() {
+            return errorCode == null;
+        }
+
+        /**
+         * Indica si el rechazo se debe a un límite de recursos y no a la forma del archivo
+         */
+        boolean isLimitExceeded() {
+            return errorCode == ParseOutcome.ErrorCode.DECODED_BYTES_LIMIT
+                || errorCode == ParseOutcome.ErrorCode.INFLATED_BYTES_LIMIT;
+        }
+    }
+}
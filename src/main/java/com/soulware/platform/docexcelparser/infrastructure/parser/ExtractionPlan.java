@@ -0,0 +1,131 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import org.apache.poi.ss.util.CellAddress;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plan de extracción compilado para un layout de formulario.
+ * Guarda las coordenadas exactas de las etiquetas del paciente y de los encabezados
+ * de responsables legales y médico tratante encontrados durante el descubrimiento,
+ * junto con su texto, para poder leer los valores directamente en archivos con el
+ * mismo layout y validar que el plan sigue siendo aplicable.
+ */
+final class ExtractionPlan {
+
+    private final Map<String, PlannedCell> labels;
+    private final List<PlannedCell> guardianHeaders;
+    private final List<PlannedCell> therapistHeaders;
+
+    private ExtractionPlan(Builder builder) {
+        this.labels = Collections.unmodifiableMap(new HashMap<>(builder.labels));
+        this.guardianHeaders = List.copyOf(builder.guardianHeaders);
+        this.therapistHeaders = List.copyOf(builder.therapistHeaders);
+    }
+
+    /**
+     * Índice de etiquetas equivalente al descubierto al aprender el plan
+     */
+    SheetLabelIndex labelIndex() {
+        Map<String, CellAddress> addresses = new HashMap<>();
+        for (Map.Entry<String, PlannedCell> entry : labels.entrySet()) {
+            addresses.put(entry.getKey(), entry.getValue().address);
+        }
+        return SheetLabelIndex.of(addresses);
+    }
+
+    List<PlannedCell> guardianHeaders() {
+        return guardianHeaders;
+    }
+
+    List<PlannedCell> therapistHeaders() {
+        return therapistHeaders;
+    }
+
+    /**
+     * Verifica que la hoja conserve las etiquetas y encabezados del plan en las
+     * mismas posiciones; si algo cambió el plan no se puede aplicar
+     * @param sheet Hoja a validar
+     * @return true si el plan es aplicable a la hoja
+     */
+    boolean matches(CompactSheet sheet) {
+        for (PlannedCell label : labels.values()) {
+            if (!label.matches(sheet)) {
+                return false;
+            }
+            // La búsqueda por etiqueta depende de que exista la celda de valor
+            if ((sheet.find(label.address.getRow(), label.address.getColumn() + 1) >= 0) != label.valuePresent) {
+                return false;
+            }
+        }
+        for (PlannedCell header : guardianHeaders) {
+            if (!header.matches(sheet)) {
+                return false;
+            }
+        }
+        for (PlannedCell header : therapistHeaders) {
+            if (!header.matches(sheet)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Celda de etiqueta o encabezado con su texto esperado
+     */
+    static final class PlannedCell {
+        final CellAddress address;
+        final String text;
+        final String kind;
+        final boolean valuePresent;
+
+        PlannedCell(CellAddress address, String text, String kind, boolean valuePresent) {
+            this.address = address;
+            this.text = text;
+            this.kind = kind;
+            this.valuePresent = valuePresent;
+        }
+
+        boolean matches(CompactSheet sheet) {
+            int cell = sheet.find(address.getRow(), address.getColumn());
+            return cell >= 0
+                && sheet.type(cell) == CompactSheet.STRING
+                && text.equals(sheet.value(cell));
+        }
+    }
+
+    /**
+     * Registra las posiciones encontradas durante el descubrimiento
+     */
+    static final class Builder {
+        private final Map<String, PlannedCell> labels = new HashMap<>();
+        private final List<PlannedCell> guardianHeaders = new ArrayList<>();
+        private final List<PlannedCell> therapistHeaders = new ArrayList<>();
+
+        void label(String label, CompactSheet sheet, CellAddress address) {
+            if (address == null) {
+                return;
+            }
+            String text = sheet.valueAt(address.getRow(), address.getColumn());
+            boolean valuePresent = sheet.find(address.getRow(), address.getColumn() + 1) >= 0;
+            labels.put(label, new PlannedCell(address, text, label, valuePresent));
+        }
+
+        void guardianHeader(int row, int col, String text, String guardianType) {
+            guardianHeaders.add(new PlannedCell(new CellAddress(row, col), text.trim(), guardianType, true));
+        }
+
+        void therapistHeader(int row, int col, String text) {
+            therapistHeaders.add(new PlannedCell(new CellAddress(row, col), text.trim(), "therapist", true));
+        }
+
+        ExtractionPlan build() {
+            return new ExtractionPlan(this);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soulware.platform.docexcelparser.domain.model.PatientProfile;
+import com.soulware.platform.docexcelparser.infrastructure.logging.AppLog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiConsumer;
+
+/**
+ * Mapeo declarativo de las etiquetas del formulario a los campos de PatientProfile.
+ *
+ * La definición es un JSON ({"fields": [{"label", "field", "type", "formats"}]})
+ * que se lee al iniciar: el incluido en la aplicación (patient-field-mapping.json)
+ * o el indicado en EXCEL_FIELD_MAPPING_FILE. Cada campo se compila una sola vez a
+ * un setter directo generado con LambdaMetafactory, con sus formatos de fecha ya
+ * construidos; aplicar el mapeo es un bucle sobre un arreglo que lee cada valor
+ * con el accesor tipado de FieldValues, sin reflexión por celda.
+ */
+final class FieldMapping {
+
+    private static final AppLog log = AppLog.forClass(FieldMapping.class);
+
+    static final String DEFAULT_RESOURCE = "/patient-field-mapping.json";
+
+    private final String[] labels;
+    private final CompiledField[] fields;
+
+    private FieldMapping(List<CompiledField> fields) {
+        this.fields = fields.toArray(new CompiledField[0]);
+        this.labels = new String[this.fields.length];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = this.fields[i].label;
+        }
+    }
+
+    /**
+     * Carga y compila el mapeo. Si el archivo externo no se puede usar se registra
+     * una advertencia y se usa el mapeo incluido en la aplicación.
+     * @param externalPath Ruta del JSON externo, o null para usar el incluido
+     * @return Mapeo compilado
+     */
+    static FieldMapping load(String externalPath) {
+        if (externalPath != null) {
+            try (InputStream in = Files.newInputStream(Path.of(externalPath))) {
+                FieldMapping mapping = parse(in);
+                log.info(() -> "Mapeo de campos cargado desde " + externalPath + ": " + mapping.size() + " campos");
+                return mapping;
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn(() -> "Invalid field mapping file " + externalPath + ": " + e.getMessage() + ", using default mapping");
+            }
+        }
+        try (InputStream in = FieldMapping.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Default field mapping not found: " + DEFAULT_RESOURCE);
+            }
+            return parse(in);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid default field mapping: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lee y compila una definición JSON
+     * @throws IllegalArgumentException Si la definición es inválida (campo desconocido, tipo no soportado,
+     *         más etiquetas de las que admite LabelMatcher...)
+     */
+    static FieldMapping parse(InputStream in) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(in);
+        JsonNode fieldNodes = root != null ? root.get("fields") : null;
+        if (fieldNodes == null || !fieldNodes.isArray() || fieldNodes.isEmpty()) {
+            throw new IllegalArgumentException("Mapping must define a non-empty 'fields' array");
+        }
+        if (fieldNodes.size() > LabelMatcher.MAX_PATTERNS) {
+            // Las etiquetas se compilan en un único LabelMatcher
+            throw new IllegalArgumentException("Mapping defines " + fieldNodes.size() + " fields; at most "
+                + LabelMatcher.MAX_PATTERNS + " are supported");
+        }
+        List<CompiledField> fields = new ArrayList<>();
+        for (JsonNode node : fieldNodes) {
+            String label = text(node, "label");
+            String field = text(node, "field");
+            if (label == null || label.isBlank() || field == null || field.isBlank()) {
+                throw new IllegalArgumentException("Each field needs 'label' and 'field': " + node);
+            }
+            FieldType type = FieldType.of(text(node, "type"));
+            List<DateTimeFormatter> formats = new ArrayList<>();
+            JsonNode formatNodes = node.get("formats");
+            if (formatNodes != null) {
+                for (JsonNode format : formatNodes) {
+                    formats.add(DateTimeFormatter.ofPattern(format.asText()));
+                }
+            }
+            if (type == FieldType.DATE && formats.isEmpty()) {
+                formats.add(DateTimeFormatter.ISO_LOCAL_DATE);
+            }
+            fields.add(new CompiledField(label, field, type, compileSetter(field, type.javaType),
+                formats.toArray(new DateTimeFormatter[0])));
+        }
+        return new FieldMapping(fields);
+    }
+
+    /**
+     * Etiquetas en el orden del mapeo; los valores se pasan a apply en este mismo orden
+     */
+    String[] labels() {
+        return labels.clone();
+    }
+
+    int size() {
+        return fields.length;
+    }
+
+    /**
+     * Asigna al paciente los valores encontrados para cada etiqueta, leyendo cada
+     * uno con el accesor tipado de su campo
+     * @param values Valor por etiqueta (orden de labels())
+     * @param patient Paciente a completar
+     */
+    void apply(FieldValues values, PatientProfile patient) {
+        for (int i = 0; i < fields.length; i++) {
+            CompiledField field = fields[i];
+            switch (field.type) {
+                case DATE: {
+                    LocalDate date = values.date(i, field.formats);
+                    if (date != null) {
+                        field.setter.accept(patient, date);
+                    } else if (values.string(i) != null && log.isDebugEnabled()) {
+                        log.debug("Valor no reconocido como fecha para " + field.field + ": " + values.string(i));
+                    }
+                    break;
+                }
+                case INTEGER: {
+                    long number = values.longValue(i, Long.MIN_VALUE);
+                    if (number != Long.MIN_VALUE && number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {
+                        field.setter.accept(patient, (int) number);
+                    } else if (values.string(i) != null && log.isDebugEnabled()) {
+                        log.debug("Valor no numérico para " + field.field + ": " + values.string(i));
+                    }
+                    break;
+                }
+                default:
+                    field.setter.accept(patient, values.string(i));
+            }
+        }
+    }
+
+    private static String text(JsonNode node, String name) {
+        JsonNode value = node.get(name);
+        return value != null && !value.isNull() ? value.asText() : null;
+    }
+
+    /**
+     * Genera un BiConsumer que invoca directamente el setter público de PatientProfile
+     */
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<PatientProfile, Object> compileSetter(String field, Class<?> javaType) {
+        String setterName = "set" + Character.toUpperCase(field.charAt(0)) + field.substring(1);
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle setter = lookup.findVirtual(PatientProfile.class, setterName,
+                MethodType.methodType(void.class, javaType));
+            CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+                MethodType.methodType(BiConsumer.class),
+                MethodType.methodType(void.class, Object.class, Object.class),
+                setter,
+                MethodType.methodType(void.class, PatientProfile.class, javaType));
+            return (BiConsumer<PatientProfile, Object>) site.getTarget().invoke();
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Unknown patient field '" + field + "' of type "
+                + javaType.getSimpleName(), e);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot compile setter for field '" + field + "'", e);
+        }
+    }
+
+    /**
+     * Tipos de campo soportados y su tipo Java en PatientProfile
+     */
+    enum FieldType {
+        STRING(String.class),
+        DATE(LocalDate.class),
+        INTEGER(Integer.class);
+
+        final Class<?> javaType;
+
+        FieldType(Class<?> javaType) {
+            this.javaType = javaType;
+        }
+
+        static FieldType of(String name) {
+            if (name == null) {
+                return STRING;
+            }
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported field type: " + name);
+            }
+        }
+    }
+
+    /**
+     * Campo compilado: etiqueta, setter directo y formatos de fecha ya construidos
+     */
+    private static final class CompiledField {
+        final String label;
+        final String field;
+        final FieldType type;
+        final BiConsumer<PatientProfile, Object> setter;
+        final DateTimeFormatter[] formats;
+
+        CompiledField(String label, String field, FieldType type,
+                      BiConsumer<PatientProfile, Object> setter, DateTimeFormatter[] formats) {
+            this.label = label;
+            this.field = field;
+            this.type = type;
+            this.setter = setter;
+            this.formats = formats;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Valores encontrados para cada etiqueta del mapeo, con el tipo y el valor
+ * nativo de la celda (ver CompactSheet para los tipos).
+ *
+ * Ambos motores lo llenan en el orden de FieldMapping.labels() y FieldMapping
+ * lo lee con el accesor del tipo de cada campo: las fechas y números se toman
+ * del valor nativo de la celda y el texto solo se parsea si la celda era texto.
+ */
+final class FieldValues {
+
+    private final String[] strings;
+    private final byte[] types;
+    // Celdas NUMERIC: valor truncado a long; celdas DATE: días desde 1970-01-01
+    private final long[] numbers;
+
+    FieldValues(int size) {
+        this.strings = new String[size];
+        this.types = new byte[size];
+        this.numbers = new long[size];
+    }
+
+    /**
+     * @param value Valor formateado de la celda
+     * @param type Tipo de la celda (CompactSheet.STRING, NUMERIC, DATE...)
+     * @param number Valor nativo para NUMERIC y DATE
+     */
+    void set(int index, String value, byte type, long number) {
+        strings[index] = value;
+        types[index] = type;
+        numbers[index] = number;
+    }
+
+    int size() {
+        return strings.length;
+    }
+
+    /**
+     * Valor como texto, tal como se muestra en la celda (null si no se encontró)
+     */
+    String string(int index) {
+        return strings[index];
+    }
+
+    /**
+     * Valor como fecha: directo para celdas de fecha, parseado con los formatos para texto
+     * @return Fecha o null si la celda no tiene una fecha reconocible
+     */
+    LocalDate date(int index, DateTimeFormatter[] formats) {
+        if (types[index] == CompactSheet.DATE) {
+            return LocalDate.ofEpochDay(numbers[index]);
+        }
+        return types[index] == CompactSheet.STRING ? CellValues.parseDate(strings[index], formats) : null;
+    }
+
+    /**
+     * Valor como entero: directo para celdas numéricas, parseado para texto
+     * @return Valor o missing si la celda no tiene un entero
+     */
+    long longValue(int index, long missing) {
+        if (types[index] == CompactSheet.NUMERIC) {
+            return numbers[index];
+        }
+        return types[index] == CompactSheet.STRING ? CellValues.parseLong(strings[index], missing) : missing;
+    }
+}
@@ -0,0 +1,338 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import com.soulware.platform.docexcelparser.domain.model.LegalGuardian;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Máquina de estados de una sola pasada para las secciones de responsables
+ * legales (R.1 y R.2) y médico tratante principal de un formulario.
+ *
+ * Recibe las celdas en orden de lectura (fila por fila, de izquierda a derecha)
+ * junto con el valor de la celda adyacente. Al reconocer un encabezado abre la
+ * sección correspondiente (ventana de 10x5 para un responsable, 15x8 para el
+ * médico) y cada celda posterior que cae dentro de una sección abierta completa
+ * su LegalGuardian o el nombre del médico. Ninguna celda se vuelve a leer.
+ *
+ * La usan el motor streaming (StreamingPatientExtractor) y el descubrimiento
+ * del DOM, por lo que ambos aplican exactamente las mismas reglas.
+ */
+final class FormSectionScanner {
+
+    static final String GUARDIAN_1 = "R.1";
+    static final String GUARDIAN_2 = "R.2";
+    static final String THERAPIST = "therapist";
+
+    private static final int GUARDIAN_WINDOW_ROWS = 10;
+    private static final int GUARDIAN_WINDOW_COLS = 5;
+    private static final int THERAPIST_WINDOW_ROWS = 15;
+    private static final int THERAPIST_WINDOW_COLS = 8;
+    /** Filas que puede abarcar una sección a partir de su encabezado */
+    static final int MAX_SECTION_ROWS = Math.max(GUARDIAN_WINDOW_ROWS, THERAPIST_WINDOW_ROWS);
+
+    // Palabras clave de encabezados y etiquetas; cada celda se clasifica en una sola pasada.
+    // Las máscaras se arman por nombre, así el orden de la lista no importa
+    private static final LabelMatcher KEYWORDS = LabelMatcher.of(
+        "Nombre", "Apellidos", "es.", "Documento", "Parentesco", "Relación", "Celular", "Teléfono",
+        "Fono", "E-mail", "Email", "Correo", "Médico tratante principal", "III", "Médico", "Doctor",
+        "Especialidad", "Lugar", "Tratante");
+    private static final long NOMBRE = KEYWORDS.maskOf("Nombre");
+    private static final long APELLIDOS = KEYWORDS.maskOf("Apellidos");
+    private static final long NAME_LABEL = KEYWORDS.maskOf("Nombre", "Apellidos", "es.");
+    private static final long DOCUMENT_LABEL = KEYWORDS.maskOf("Documento");
+    private static final long RELATIONSHIP_LABEL = KEYWORDS.maskOf("Parentesco", "Relación");
+    private static final long FONO = KEYWORDS.maskOf("Fono");
+    private static final long PHONE_LABEL = KEYWORDS.maskOf("Celular", "Teléfono", "Fono");
+    private static final long EMAIL_LABEL = KEYWORDS.maskOf("E-mail", "Email", "Correo");
+    private static final long THERAPIST_HEADER = KEYWORDS.maskOf("Médico tratante principal");
+    private static final long ROMAN_III = KEYWORDS.maskOf("III");
+    private static final long MEDICO = KEYWORDS.maskOf("Médico");
+    private static final long DOCTOR = KEYWORDS.maskOf("Doctor");
+    private static final long THERAPIST_NAME_LABEL = NOMBRE | APELLIDOS | MEDICO | DOCTOR;
+    private static final long NOT_A_NAME = KEYWORDS.maskOf("Nombre", "Apellidos", "Especialidad", "Lugar", "Fono",
+        "Médico", "Tratante");
+
+    private final List<GuardianSection> guardianSections = new ArrayList<>();
+    private final List<TherapistSection> therapistSections = new ArrayList<>();
+    private final List<Header> headers = new ArrayList<>();
+    // Responsables R.1 y R.2 cuya ventana ya se recorrió completa
+    private final boolean[] guardianSlotClosed = new boolean[2];
+    private boolean therapistFound = false;
+    private int currentRow = -1;
+
+    /**
+     * Procesa una celda no vacía
+     * @param row Fila de la celda (base 0)
+     * @param column Columna de la celda (base 0)
+     * @param value Valor recortado de la celda
+     * @param adjacent Valor de la celda inmediatamente a la derecha, o null si no existe
+     */
+    void accept(int row, int column, String value, String adjacent) {
+        currentRow = row;
+
+        if (isGuardianNameLabel(value, GUARDIAN_1)) {
+            guardianSections.add(new GuardianSection(row, column, GUARDIAN_1, 0));
+            headers.add(new Header(row, column, value, GUARDIAN_1));
+        }
+        if (isGuardianNameLabel(value, GUARDIAN_2)) {
+            guardianSections.add(new GuardianSection(row, column, GUARDIAN_2, 1));
+            headers.add(new Header(row, column, value, GUARDIAN_2));
+        }
+        for (GuardianSection section : guardianSections) {
+            if (section.contains(row, column)) {
+                section.accept(value, adjacent);
+            }
+        }
+
+        if (!therapistFound) {
+            if (isTherapistHeader(value)) {
+                therapistSections.add(new TherapistSection(row, column));
+                headers.add(new Header(row, column, value, THERAPIST));
+            }
+            for (TherapistSection section : therapistSections) {
+                if (section.name == null && section.contains(row, column)) {
+                    section.accept(value, adjacent);
+                }
+            }
+            therapistFound = resolveTherapist(false) != null;
+        }
+    }
+
+    /**
+     * Cierra las secciones de responsables cuya ventana termina en esta fila
+     */
+    void endRow(int row) {
+        currentRow = row;
+        for (GuardianSection section : guardianSections) {
+            if (row >= section.lastRow) {
+                guardianSlotClosed[section.slot] = true;
+            }
+        }
+        if (!therapistFound && !therapistSections.isEmpty()) {
+            therapistFound = resolveTherapist(false) != null;
+        }
+    }
+
+    /**
+     * Indica si las secciones ya no pueden cambiar: ambos responsables vistos y
+     * con su ventana cerrada, y el médico tratante decidido
+     */
+    boolean isResolved() {
+        return therapistFound && guardianSlotClosed[0] && guardianSlotClosed[1];
+    }
+
+    /**
+     * Indica si la hoja tiene alguna sección reconocida
+     */
+    boolean hasSections() {
+        return !guardianSections.isEmpty() || !therapistSections.isEmpty();
+    }
+
+    /**
+     * Responsables con nombre, en el orden en que aparecieron sus encabezados
+     */
+    List<LegalGuardian> getGuardians() {
+        List<LegalGuardian> guardians = new ArrayList<>();
+        for (GuardianSection section : guardianSections) {
+            LegalGuardian guardian = section.guardian;
+            if (guardian.getFullName() != null && !guardian.getFullName().trim().isEmpty()) {
+                guardians.add(guardian);
+            }
+        }
+        return guardians;
+    }
+
+    /**
+     * Nombre del médico tratante al terminar la hoja (o null si no se encontró)
+     */
+    String getTherapistName() {
+        return resolveTherapist(true);
+    }
+
+    /**
+     * Encabezados reconocidos con su posición, para el plan de layout
+     */
+    List<Header> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * El médico tratante es el de la primera sección (en orden de lectura) que
+     * produjo un nombre; mientras una sección anterior siga abierta no se decide.
+     */
+    private String resolveTherapist(boolean sheetEnded) {
+        for (TherapistSection section : therapistSections) {
+            if (section.name != null) {
+                return section.name;
+            }
+            if (!sheetEnded && currentRow <= section.lastRow) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    static boolean isGuardianNameLabel(String value, String guardianType) {
+        return value.contains(guardianType) && KEYWORDS.matchesAny(value, NAME_LABEL);
+    }
+
+    static boolean isTherapistHeader(String value) {
+        long found = KEYWORDS.match(value);
+        return (found & THERAPIST_HEADER) != 0 || (found & (ROMAN_III | MEDICO)) == (ROMAN_III | MEDICO);
+    }
+
+    /**
+     * Asigna al responsable el valor según las palabras clave de la etiqueta
+     */
+    static void applyGuardianField(LegalGuardian guardian, String label, String value) {
+        long found = KEYWORDS.match(label);
+        if ((found & NAME_LABEL) != 0) {
+            guardian.setFullName(value);
+        }
+        if ((found & DOCUMENT_LABEL) != 0) {
+            guardian.setIdentityDocumentNumber(value);
+        }
+        if ((found & RELATIONSHIP_LABEL) != 0) {
+            guardian.setRelationship(value);
+        }
+        if ((found & PHONE_LABEL) != 0) {
+            guardian.setPhoneNumber(value);
+        }
+        if ((found & EMAIL_LABEL) != 0) {
+            guardian.setEmail(value);
+        }
+    }
+
+    /**
+     * Equivale a value.matches(".*[A-Za-z]+\\s+[A-Za-z]+.*") sin compilar ni
+     * ejecutar una expresión regular: dos palabras ASCII separadas por espacios,
+     * sin saltos de línea antes de la primera ni después de la segunda.
+     */
+    static boolean looksLikePersonName(String value) {
+        int length = value.length();
+        int firstBreak = length;
+        int lastBreak = -1;
+        for (int i = 0; i < length; i++) {
+            if (isLineTerminator(value.charAt(i))) {
+                if (firstBreak == length) {
+                    firstBreak = i;
+                }
+                lastBreak = i;
+            }
+        }
+        for (int i = 0; i < firstBreak; i++) {
+            if (!isAsciiLetter(value.charAt(i))) {
+                continue;
+            }
+            int next = i + 1;
+            while (next < length && isRegexSpace(value.charAt(next))) {
+                next++;
+            }
+            if (next == i + 1 || next == length || !isAsciiLetter(value.charAt(next))) {
+                continue;
+            }
+            int wordEnd = next;
+            while (wordEnd + 1 < length && isAsciiLetter(value.charAt(wordEnd + 1))) {
+                wordEnd++;
+            }
+            if (wordEnd > lastBreak) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static boolean isRegexSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Encabezado de sección reconocido
+     */
+    static final class Header {
+        final int row;
+        final int column;
+        final String text;
+        final String kind;
+
+        Header(int row, int column, String text, String kind) {
+            this.row = row;
+            this.column = column;
+            this.text = text;
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * Ventana de 10x5 celdas que sigue a la etiqueta de nombre de un responsable
+     */
+    private static final class GuardianSection {
+        private final int firstRow;
+        private final int firstCol;
+        private final int lastRow;
+        private final String guardianType;
+        private final int slot;
+        private final LegalGuardian guardian = new LegalGuardian();
+
+        GuardianSection(int firstRow, int firstCol, String guardianType, int slot) {
+            this.firstRow = firstRow;
+            this.firstCol = firstCol;
+            this.lastRow = firstRow + GUARDIAN_WINDOW_ROWS - 1;
+            this.guardianType = guardianType;
+            this.slot = slot;
+        }
+
+        boolean contains(int row, int col) {
+            return row >= firstRow && row <= lastRow
+                && col >= firstCol && col < firstCol + GUARDIAN_WINDOW_COLS;
+        }
+
+        void accept(String value, String adjacent) {
+            if (adjacent == null || adjacent.isEmpty() || !value.contains(guardianType)) {
+                return;
+            }
+            applyGuardianField(guardian, value, adjacent);
+        }
+    }
+
+    /**
+     * Ventana de 15x8 celdas que sigue al encabezado "MÉDICO TRATANTE PRINCIPAL"
+     */
+    private static final class TherapistSection {
+        private final int firstRow;
+        private final int firstCol;
+        private final int lastRow;
+        private String name;
+
+        TherapistSection(int firstRow, int firstCol) {
+            this.firstRow = firstRow;
+            this.firstCol = firstCol;
+            this.lastRow = firstRow + THERAPIST_WINDOW_ROWS - 1;
+        }
+
+        boolean contains(int row, int col) {
+            return row >= firstRow && row <= lastRow
+                && col >= firstCol && col < firstCol + THERAPIST_WINDOW_COLS;
+        }
+
+        void accept(String value, String adjacent) {
+            long found = KEYWORDS.match(value);
+            if (adjacent != null && !adjacent.isEmpty() && (found & THERAPIST_NAME_LABEL) != 0) {
+                name = adjacent;
+                return;
+            }
+            if ((found & NOT_A_NAME) == 0 && looksLikePersonName(value)) {
+                name = value;
+            }
+        }
+    }
+}
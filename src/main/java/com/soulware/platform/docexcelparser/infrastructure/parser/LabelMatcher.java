@@ -0,0 +1,228 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Buscador de varias etiquetas a la vez (Aho–Corasick) sobre texto normalizado:
+ * sin acentos, en minúsculas y con los espacios en blanco colapsados.
+ *
+ * Las etiquetas se compilan una sola vez en un autómata determinista; cada celda
+ * se clasifica en una única pasada lineal sobre su texto, sin importar cuántas
+ * etiquetas haya, y sin crear objetos. Así "Religion", "Religión" y "RELIGIÓN"
+ * o "CORREO  ELECTRÓNICO" reconocen la misma etiqueta.
+ */
+final class LabelMatcher {
+
+    static final int MAX_PATTERNS = Long.SIZE;
+    // Plegado precalculado para Latin-1 y Latin Extended-A/B
+    private static final char[] FOLD = buildFoldTable(0x250);
+
+    private final String[] patterns;
+    // Carácter plegado → clase del alfabeto (0 = carácter que no aparece en ninguna etiqueta)
+    private final int[] charClasses;
+    private final int alphabetSize;
+    // Autómata completo: estado * alphabetSize + clase → siguiente estado
+    private final int[] transitions;
+    // Etiquetas reconocidas al llegar a cada estado (bit i = patterns[i])
+    private final long[] outputs;
+
+    private LabelMatcher(String[] patterns, int[] charClasses, int alphabetSize, int[] transitions, long[] outputs) {
+        this.patterns = patterns;
+        this.charClasses = charClasses;
+        this.alphabetSize = alphabetSize;
+        this.transitions = transitions;
+        this.outputs = outputs;
+    }
+
+    /**
+     * Compila las etiquetas
+     * @param patterns Etiquetas a reconocer (hasta 64, no vacías)
+     * @return Buscador listo para usarse desde varios hilos
+     */
+    static LabelMatcher of(String... patterns) {
+        if (patterns.length > MAX_PATTERNS) {
+            throw new IllegalArgumentException("At most " + MAX_PATTERNS + " patterns are supported");
+        }
+        String[] folded = new String[patterns.length];
+        int maxChar = ' ';
+        int totalLength = 0;
+        for (int i = 0; i < patterns.length; i++) {
+            folded[i] = fold(patterns[i]);
+            if (folded[i].isEmpty()) {
+                throw new IllegalArgumentException("Empty pattern: '" + patterns[i] + "'");
+            }
+            for (int j = 0; j < folded[i].length(); j++) {
+                maxChar = Math.max(maxChar, folded[i].charAt(j));
+            }
+            totalLength += folded[i].length();
+        }
+
+        int[] charClasses = new int[maxChar + 1];
+        int alphabetSize = 1;
+        for (String pattern : folded) {
+            for (int j = 0; j < pattern.length(); j++) {
+                char c = pattern.charAt(j);
+                if (charClasses[c] == 0) {
+                    charClasses[c] = alphabetSize++;
+                }
+            }
+        }
+
+        // Trie de las etiquetas; -1 indica transición aún no definida
+        int[] transitions = new int[(totalLength + 1) * alphabetSize];
+        Arrays.fill(transitions, -1);
+        long[] outputs = new long[totalLength + 1];
+        int states = 1;
+        for (int i = 0; i < folded.length; i++) {
+            int state = 0;
+            for (int j = 0; j < folded[i].length(); j++) {
+                int slot = state * alphabetSize + charClasses[folded[i].charAt(j)];
+                if (transitions[slot] < 0) {
+                    transitions[slot] = states++;
+                }
+                state = transitions[slot];
+            }
+            outputs[state] |= 1L << i;
+        }
+
+        // Enlaces de fallo en anchura, completando el autómata determinista
+        int[] failure = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < alphabetSize; c++) {
+            int next = transitions[c];
+            if (next < 0) {
+                transitions[c] = 0;
+            } else {
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] |= outputs[failure[state]];
+            for (int c = 0; c < alphabetSize; c++) {
+                int slot = state * alphabetSize + c;
+                int fallback = transitions[failure[state] * alphabetSize + c];
+                if (transitions[slot] < 0) {
+                    transitions[slot] = fallback;
+                } else {
+                    failure[transitions[slot]] = fallback;
+                    queue.add(transitions[slot]);
+                }
+            }
+        }
+
+        return new LabelMatcher(patterns.clone(), charClasses, alphabetSize,
+            Arrays.copyOf(transitions, states * alphabetSize), Arrays.copyOf(outputs, states));
+    }
+
+    /**
+     * Etiquetas contenidas en el texto, comparando sobre el texto normalizado
+     * @return Máscara de bits: el bit i indica que contiene pattern(i)
+     */
+    long match(String text) {
+        long found = 0;
+        int state = 0;
+        boolean afterSpace = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = fold(text.charAt(i));
+            if (c == ' ') {
+                if (afterSpace) {
+                    continue;
+                }
+                afterSpace = true;
+            } else {
+                afterSpace = false;
+            }
+            int charClass = c < charClasses.length ? charClasses[c] : 0;
+            state = transitions[state * alphabetSize + charClass];
+            found |= outputs[state];
+        }
+        return found;
+    }
+
+    /**
+     * @return true si el texto contiene alguna de las etiquetas indicadas en la máscara
+     */
+    boolean matchesAny(String text, long mask) {
+        return (match(text) & mask) != 0;
+    }
+
+    int size() {
+        return patterns.length;
+    }
+
+    /**
+     * Máscara de las etiquetas indicadas, para usar con match y matchesAny
+     * @param labels Etiquetas tal como se pasaron a of
+     * @throws IllegalArgumentException Si alguna no es una de las etiquetas compiladas
+     */
+    long maskOf(String... labels) {
+        long mask = 0;
+        for (String label : labels) {
+            int index = Arrays.asList(patterns).indexOf(label);
+            if (index < 0) {
+                throw new IllegalArgumentException("Unknown pattern: '" + label + "'");
+            }
+            mask |= 1L << index;
+        }
+        return mask;
+    }
+
+    /**
+     * Etiqueta original (sin normalizar) en la posición indicada
+     */
+    String pattern(int index) {
+        return patterns[index];
+    }
+
+    /**
+     * Normaliza un texto igual que el buscador: sin acentos, en minúsculas,
+     * recortado y con los espacios en blanco colapsados en uno solo
+     */
+    static String fold(String text) {
+        StringBuilder folded = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = fold(text.charAt(i));
+            if (c == ' ') {
+                pendingSpace = folded.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    folded.append(' ');
+                    pendingSpace = false;
+                }
+                folded.append(c);
+            }
+        }
+        return folded.toString();
+    }
+
+    /**
+     * Pliega un carácter: los espacios en blanco pasan a ' ', se quitan los acentos
+     * de las letras latinas y el resto se pasa a minúsculas
+     */
+    static char fold(char c) {
+        if (c < FOLD.length) {
+            return FOLD[c];
+        }
+        return Character.isWhitespace(c) ? ' ' : Character.toLowerCase(c);
+    }
+
+    private static char[] buildFoldTable(int size) {
+        char[] table = new char[size];
+        for (int c = 0; c < size; c++) {
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                table[c] = ' ';
+                continue;
+            }
+            // La descomposición canónica separa la letra base de sus marcas diacríticas
+            String decomposed = Normalizer.normalize(String.valueOf((char) c), Normalizer.Form.NFD);
+            table[c] = Character.toLowerCase(decomposed.charAt(0));
+        }
+        return table;
+    }
+}
@@ -0,0 +1,101 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché LRU acotada de planes de extracción por huella de layout.
+ * Casi todos los archivos recibidos usan uno de pocos formularios, así que el
+ * plan aprendido en el primer archivo permite leer los siguientes directamente.
+ */
+final class LayoutPlanCache {
+
+    /** Filas físicas que se consideran al calcular la huella */
+    static final int FINGERPRINT_ROWS = 200;
+
+    private final Map<Long, ExtractionPlan> plans;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    LayoutPlanCache(int maxEntries) {
+        this.plans = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ExtractionPlan> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Calcula la huella del layout de una hoja: posición y texto de la primera
+     * celda de texto de cada fila (las etiquetas van a la izquierda de los valores)
+     * @param sheet Hoja a analizar
+     * @return Huella de 64 bits del layout
+     */
+    static long fingerprint(CompactSheet sheet) {
+        long hash = 0xcbf29ce484222325L;
+        int rows = Math.min(sheet.rowCount(), FINGERPRINT_ROWS);
+        for (int rowIndex = 0; rowIndex < rows; rowIndex++) {
+            int end = sheet.rowEnd(rowIndex);
+            for (int cell = sheet.rowStart(rowIndex); cell < end; cell++) {
+                if (sheet.type(cell) != CompactSheet.STRING) {
+                    continue;
+                }
+                String text = sheet.value(cell);
+                if (text.isEmpty()) {
+                    continue;
+                }
+                hash = mix(hash, sheet.row(cell));
+                hash = mix(hash, sheet.column(cell));
+                hash = mix(hash, text.hashCode());
+                break;
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, int value) {
+        hash ^= value;
+        return hash * 0x100000001b3L;
+    }
+
+    synchronized ExtractionPlan get(long fingerprint) {
+        ExtractionPlan plan = plans.get(fingerprint);
+        if (plan != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return plan;
+    }
+
+    synchronized void put(long fingerprint, ExtractionPlan plan) {
+        plans.put(fingerprint, plan);
+    }
+
+    /**
+     * Descarta un plan que falló la validación para que se vuelva a aprender
+     */
+    synchronized void invalidate(long fingerprint) {
+        plans.remove(fingerprint);
+        invalidations.incrementAndGet();
+    }
+
+    synchronized int size() {
+        return plans.size();
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    long getInvalidations() {
+        return invalidations.get();
+    }
+}
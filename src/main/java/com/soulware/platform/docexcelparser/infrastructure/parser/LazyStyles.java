@@ -0,0 +1,141 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import org.apache.poi.xssf.model.Styles;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.extensions.XSSFCellBorder;
+import org.apache.poi.xssf.usermodel.extensions.XSSFCellFill;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Tabla de estilos de solo lectura que se carga la primera vez que se consulta.
+ * XSSFSheetXMLHandler solo pide estilos para las celdas numéricas (para saber si
+ * son fechas), así que en los formularios con solo texto styles.xml nunca se
+ * descomprime. Es segura para las hojas que se extraen en paralelo.
+ */
+final class LazyStyles implements Styles {
+
+    /**
+     * Carga de la tabla de estilos real
+     */
+    interface Loader {
+        StylesTable load() throws IOException;
+    }
+
+    private final Loader loader;
+    private volatile StylesTable table;
+
+    LazyStyles(Loader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * @return true si styles.xml ya fue leído
+     */
+    boolean isLoaded() {
+        return table != null;
+    }
+
+    private StylesTable table() {
+        StylesTable loaded = table;
+        if (loaded == null) {
+            synchronized (this) {
+                loaded = table;
+                if (loaded == null) {
+                    try {
+                        loaded = loader.load();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Cannot read styles part: " + e.getMessage(), e);
+                    }
+                    table = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public String getNumberFormatAt(short fmtId) {
+        return table().getNumberFormatAt(fmtId);
+    }
+
+    @Override
+    public XSSFFont getFontAt(int idx) {
+        return table().getFontAt(idx);
+    }
+
+    @Override
+    public XSSFCellStyle getStyleAt(int idx) {
+        return table().getStyleAt(idx);
+    }
+
+    @Override
+    public XSSFCellBorder getBorderAt(int idx) {
+        return table().getBorderAt(idx);
+    }
+
+    @Override
+    public XSSFCellFill getFillAt(int idx) {
+        return table().getFillAt(idx);
+    }
+
+    @Override
+    public int getNumCellStyles() {
+        return table().getNumCellStyles();
+    }
+
+    @Override
+    public int getNumDataFormats() {
+        return table().getNumDataFormats();
+    }
+
+    // ========== Escritura no soportada (solo lectura) ==========
+
+    @Override
+    public int putNumberFormat(String fmt) {
+        throw new UnsupportedOperationException("Read-only styles");
+    }
+
+    @Override
+    public void putNumberFormat(short index, String fmt) {
+        throw new UnsupportedOperationException("Read-only styles");
+    }
+
+    @Override
+    public boolean removeNumberFormat(short index) {
+        throw new UnsupportedOperationException("Read-only styles");
+    }
+
+    @Override
+    public boolean removeNumberFormat(String fmt) {
+        throw new UnsupportedOperationException("Read-only styles");
+    }
+
+    @Override
+    public int putFont(XSSFFont font, boolean forceRegistration) {
+        throw new UnsupportedOperationException("Read-only styles");
+    }
+
+    @Override
+    public int putFont(XSSFFont font) {
+        throw new UnsupportedOperationException("Read-only styles");
+    }
+
+    @Override
+    public int putStyle(XSSFCellStyle style) {
+        throw new UnsupportedOperationException("Read-only styles");
+    }
+
+    @Override
+    public int putBorder(XSSFCellBorder border) {
+        throw new UnsupportedOperationException("Read-only styles");
+    }
+
+    @Override
+    public int putFill(XSSFCellFill fill) {
+        throw new UnsupportedOperationException("Read-only styles");
+    }
+}
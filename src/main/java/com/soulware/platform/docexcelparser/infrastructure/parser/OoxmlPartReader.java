@@ -0,0 +1,316 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.model.StylesTable;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+
+/**
+ * Lector liviano de las partes de un .xlsx en memoria, construido sobre el
+ * directorio central del ZIP.
+ *
+ * A diferencia de OPCPackage/XSSFReader no registra ni descomprime todas las
+ * partes del paquete (temas, docProps, estilos, dibujos...): solo resuelve las
+ * relaciones hasta workbook.xml y descomprime las hojas y sharedStrings.xml
+ * cuando se piden. styles.xml solo se lee si alguna celda numérica necesita su
+ * formato (ver LazyStyles).
+ */
+final class OoxmlPartReader {
+
+    private static final String REL_OFFICE_DOCUMENT = "/officeDocument";
+    private static final String REL_WORKSHEET = "/worksheet";
+    private static final String REL_SHARED_STRINGS = "/sharedStrings";
+    private static final String REL_STYLES = "/styles";
+    private static final String DEFAULT_WORKSHEETS_DIR = "xl/worksheets/";
+    private static final String DEFAULT_SHARED_STRINGS = "xl/sharedStrings.xml";
+    private static final String DEFAULT_STYLES = "xl/styles.xml";
+    private static final byte[] EMPTY_SST =
+        "<sst xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"/>".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] bytes;
+    private final List<ZipCentralDirectory.Entry> sheets;
+    private final ZipCentralDirectory.Entry sharedStrings;
+    private final ZipCentralDirectory.Entry styles;
+    private final boolean date1904;
+    private final ParseBudget budget;
+
+    private OoxmlPartReader(byte[] bytes, List<ZipCentralDirectory.Entry> sheets, ZipCentralDirectory.Entry sharedStrings,
+                            ZipCentralDirectory.Entry styles, boolean date1904, ParseBudget budget) {
+        this.bytes = bytes;
+        this.sheets = sheets;
+        this.sharedStrings = sharedStrings;
+        this.styles = styles;
+        this.date1904 = date1904;
+        this.budget = budget;
+    }
+
+    /**
+     * Resuelve las partes del workbook leyendo solo _rels/.rels, workbook.xml y sus relaciones
+     * @param bytes Contenido completo del archivo .xlsx
+     * @param budget Presupuesto del parsing; cuenta los bytes descomprimidos de cada parte
+     * @return Lector de partes
+     * @throws IOException Si el ZIP no tiene directorio central o falta alguna parte obligatoria
+     */
+    static OoxmlPartReader open(byte[] bytes, ParseBudget budget) throws IOException {
+        ZipCentralDirectory directory = ZipCentralDirectory.read(bytes);
+        if (directory == null) {
+            throw new IOException("ZIP central directory not found");
+        }
+        return open(bytes, directory, budget);
+    }
+
+    /**
+     * Igual que open para un paquete dañado: las partes se ubican recorriendo las
+     * cabeceras locales del ZIP (ZipCentralDirectory.scanLocalHeaders). Si se
+     * perdieron las relaciones o workbook.xml, se usan las rutas convencionales
+     * de Excel (xl/worksheets/sheetN.xml, xl/sharedStrings.xml, xl/styles.xml).
+     * @throws IOException Si no se recuperó ninguna hoja
+     */
+    static OoxmlPartReader salvage(byte[] bytes, ParseBudget budget) throws IOException {
+        ZipCentralDirectory directory = ZipCentralDirectory.scanLocalHeaders(bytes, budget);
+        try {
+            OoxmlPartReader parts = open(bytes, directory, budget);
+            if (parts.getSheetCount() > 0) {
+                return parts;
+            }
+        } catch (IOException e) {
+            // Relaciones o workbook.xml perdidos: se prueba el layout convencional
+        }
+        List<ZipCentralDirectory.Entry> sheets = new ArrayList<>();
+        for (ZipCentralDirectory.Entry entry : directory.entries()) {
+            if (entry.name.startsWith(DEFAULT_WORKSHEETS_DIR) && entry.name.endsWith(".xml")) {
+                sheets.add(entry);
+            }
+        }
+        if (sheets.isEmpty()) {
+            throw new IOException("No worksheet could be recovered from the damaged package");
+        }
+        sheets.sort(Comparator.comparingInt(OoxmlPartReader::sheetNumber).thenComparing(entry -> entry.name));
+        return new OoxmlPartReader(bytes, sheets, directory.find(DEFAULT_SHARED_STRINGS),
+            directory.find(DEFAULT_STYLES), false, budget);
+    }
+
+    private static OoxmlPartReader open(byte[] bytes, ZipCentralDirectory directory, ParseBudget budget) throws IOException {
+        String workbookPath = null;
+        for (Relationship rel : readRelationships(bytes, directory, "_rels/.rels", "", budget)) {
+            if (rel.type.endsWith(REL_OFFICE_DOCUMENT)) {
+                workbookPath = rel.target;
+                break;
+            }
+        }
+        if (workbookPath == null || directory.find(workbookPath) == null) {
+            throw new IOException("Workbook part not found");
+        }
+
+        String workbookDir = workbookPath.substring(0, workbookPath.lastIndexOf('/') + 1);
+        String workbookRels = workbookDir + "_rels/" + workbookPath.substring(workbookDir.length()) + ".rels";
+        Map<String, String> worksheetTargets = new HashMap<>();
+        ZipCentralDirectory.Entry sharedStrings = null;
+        ZipCentralDirectory.Entry styles = null;
+        for (Relationship rel : readRelationships(bytes, directory, workbookRels, workbookDir, budget)) {
+            if (rel.type.endsWith(REL_WORKSHEET)) {
+                worksheetTargets.put(rel.id, rel.target);
+            } else if (rel.type.endsWith(REL_SHARED_STRINGS)) {
+                sharedStrings = directory.find(rel.target);
+            } else if (rel.type.endsWith(REL_STYLES)) {
+                styles = directory.find(rel.target);
+            }
+        }
+
+        // Las hojas se devuelven en el orden de workbook.xml, igual que XSSFReader.getSheetsData
+        WorkbookInfo workbook = readWorkbook(bytes, directory.find(workbookPath), budget);
+        List<ZipCentralDirectory.Entry> sheets = new ArrayList<>();
+        for (String relationId : workbook.sheetRelationIds) {
+            String target = worksheetTargets.get(relationId);
+            ZipCentralDirectory.Entry sheet = target != null ? directory.find(target) : null;
+            if (sheet != null) {
+                sheets.add(sheet);
+            }
+        }
+        return new OoxmlPartReader(bytes, sheets, sharedStrings, styles, workbook.date1904, budget);
+    }
+
+    /**
+     * Número de "xl/worksheets/sheetN.xml", para ordenar las hojas recuperadas sin workbook.xml
+     */
+    private static int sheetNumber(ZipCentralDirectory.Entry entry) {
+        int number = 0;
+        for (int i = DEFAULT_WORKSHEETS_DIR.length(); i < entry.name.length(); i++) {
+            char c = entry.name.charAt(i);
+            if (c >= '0' && c <= '9') {
+                number = Math.min(number * 10 + (c - '0'), Integer.MAX_VALUE / 10);
+            }
+        }
+        return number;
+    }
+
+    int getSheetCount() {
+        return sheets.size();
+    }
+
+    /**
+     * @return true si el workbook usa el sistema de fechas de 1904 (workbookPr date1904)
+     */
+    boolean isDate1904() {
+        return date1904;
+    }
+
+    /**
+     * Stream de la hoja indicada, descomprimido a medida que se lee
+     */
+    InputStream openSheet(int index) throws IOException {
+        return open(sheets.get(index));
+    }
+
+    /**
+     * Tabla de shared strings de solo lectura (vacía si el workbook no la tiene)
+     */
+    ReadOnlySharedStringsTable readSharedStrings() throws IOException {
+        try (InputStream in = sharedStrings != null ? open(sharedStrings) : new ByteArrayInputStream(EMPTY_SST)) {
+            return new ReadOnlySharedStringsTable(in, false);
+        } catch (org.xml.sax.SAXException e) {
+            throw new IOException("Invalid sharedStrings part: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Estilos que solo se descomprimen y parsean la primera vez que se consultan
+     */
+    LazyStyles lazyStyles() {
+        return new LazyStyles(() -> {
+            if (styles == null) {
+                return new StylesTable();
+            }
+            try (InputStream in = open(styles)) {
+                return new StylesTable(in);
+            }
+        });
+    }
+
+    private InputStream open(ZipCentralDirectory.Entry entry) throws IOException {
+        try {
+            return budget.track(ZipCentralDirectory.openEntry(bytes, entry));
+        } catch (DataFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lee un archivo de relaciones (.rels); los destinos se devuelven como nombres de entrada del ZIP
+     */
+    private static List<Relationship> readRelationships(byte[] bytes, ZipCentralDirectory directory,
+                                                        String relsPath, String baseDir,
+                                                        ParseBudget budget) throws IOException {
+        ZipCentralDirectory.Entry entry = directory.find(relsPath);
+        if (entry == null) {
+            throw new IOException("Relationships part not found: " + relsPath);
+        }
+        List<Relationship> relationships = new ArrayList<>();
+        parse(bytes, entry, budget, new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                if ("Relationship".equals(localName) && !"External".equals(attributes.getValue("TargetMode"))) {
+                    relationships.add(new Relationship(attributes.getValue("Id"), attributes.getValue("Type"),
+                        resolve(baseDir, attributes.getValue("Target"))));
+                }
+            }
+        });
+        return relationships;
+    }
+
+    /**
+     * Ids de relación (r:id) de las hojas, en el orden de workbook.xml, y sistema de fechas
+     */
+    private static WorkbookInfo readWorkbook(byte[] bytes, ZipCentralDirectory.Entry workbook,
+                                             ParseBudget budget) throws IOException {
+        WorkbookInfo info = new WorkbookInfo();
+        List<String> relationIds = info.sheetRelationIds;
+        parse(bytes, workbook, budget, new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                if ("workbookPr".equals(localName)) {
+                    String date1904 = attributes.getValue("date1904");
+                    info.date1904 = "1".equals(date1904) || "true".equalsIgnoreCase(date1904);
+                } else if ("sheet".equals(localName)) {
+                    for (int i = 0; i < attributes.getLength(); i++) {
+                        if ("id".equals(attributes.getLocalName(i))) {
+                            relationIds.add(attributes.getValue(i));
+                            break;
+                        }
+                    }
+                }
+            }
+        });
+        return info;
+    }
+
+    /**
+     * Parsea una parte XML del paquete; lo descomprimido se descuenta del presupuesto igual que en open(Entry)
+     */
+    private static void parse(byte[] bytes, ZipCentralDirectory.Entry entry, ParseBudget budget,
+                              DefaultHandler handler) throws IOException {
+        try (InputStream in = budget.track(ZipCentralDirectory.openEntry(bytes, entry))) {
+            XMLReader xmlReader = XMLHelper.newXMLReader();
+            xmlReader.setContentHandler(handler);
+            xmlReader.parse(new InputSource(in));
+        } catch (DataFormatException | org.xml.sax.SAXException | javax.xml.parsers.ParserConfigurationException e) {
+            throw new IOException("Cannot read " + entry.name + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Convierte el destino de una relación en el nombre de la entrada del ZIP
+     * ("worksheets/sheet1.xml" relativo a "xl/", "/xl/styles.xml" absoluto, "../" normalizado)
+     */
+    static String resolve(String baseDir, String target) {
+        if (target == null) {
+            return null;
+        }
+        String path = target.startsWith("/") ? target.substring(1) : baseDir + target;
+        if (!path.contains("./")) {
+            return path;
+        }
+        List<String> parts = new ArrayList<>();
+        for (String part : path.split("/")) {
+            if ("..".equals(part)) {
+                if (!parts.isEmpty()) {
+                    parts.remove(parts.size() - 1);
+                }
+            } else if (!part.isEmpty() && !".".equals(part)) {
+                parts.add(part);
+            }
+        }
+        return String.join("/", parts);
+    }
+
+    private static final class WorkbookInfo {
+        final List<String> sheetRelationIds = new ArrayList<>();
+        boolean date1904;
+    }
+
+    private static final class Relationship {
+        final String id;
+        final String type;
+        final String target;
+
+        Relationship(String id, String type, String target) {
+            this.id = id;
+            this.type = type != null ? type : "";
+            this.target = target;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import com.soulware.platform.docexcelparser.domain.model.ParseOutcome;
+import com.soulware.platform.docexcelparser.infrastructure.config.ApplicationConfig;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Presupuesto de recursos de un parsing: bytes decodificados, bytes
+ * descomprimidos, filas, celdas y tiempo de reloj.
+ *
+ * Se crea uno por archivo y los bucles de lectura lo consultan con chequeos
+ * baratos (sumas atómicas por fila y por bloque leído; el reloj cada
+ * CLOCK_CHECK_INTERVAL filas). Al exceder un límite, o al cancelarse, lanza
+ * Exceeded, que corta la lectura y termina en un ParseOutcome ABORTED. Las hojas
+ * que se leen en paralelo comparten el presupuesto: la primera que lo agota
+ * cancela a las demás.
+ */
+final class ParseBudget {
+
+    private static final int CLOCK_CHECK_INTERVAL = 64;
+
+    private final Limits limits;
+    private final long deadline;
+    private final AtomicLong inflatedBytes = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong cells = new AtomicLong();
+    private volatile Exceeded exceeded;
+
+    private ParseBudget(Limits limits) {
+        this.limits = limits;
+        this.deadline = limits.maxMillis > 0 ? System.nanoTime() + limits.maxMillis * 1_000_000 : 0;
+    }
+
+    /**
+     * Inicia el presupuesto de un archivo; el tiempo se mide desde aquí
+     */
+    static ParseBudget start(Limits limits) {
+        return new ParseBudget(limits);
+    }
+
+    /**
+     * Presupuesto sin límites (solo cancelación)
+     */
+    static ParseBudget unlimited() {
+        return new ParseBudget(Limits.UNLIMITED);
+    }
+
+    Limits limits() {
+        return limits;
+    }
+
+    /**
+     * Rechaza de entrada un archivo cuyo tamaño decodificado supera el límite
+     * @return Motivo o null si el tamaño está permitido
+     */
+    static Exceeded checkDecodedBytes(long decodedBytes, Limits limits) {
+        if (limits.maxDecodedBytes > 0 && decodedBytes > limits.maxDecodedBytes) {
+            return new Exceeded(ParseOutcome.ErrorCode.DECODED_BYTES_LIMIT,
+                "Decoded size " + decodedBytes + " bytes exceeds limit of " + limits.maxDecodedBytes);
+        }
+        return null;
+    }
+
+    /**
+     * Cuenta bytes descomprimidos de las partes del paquete
+     */
+    void addInflatedBytes(long count) {
+        long total = inflatedBytes.addAndGet(count);
+        if (limits.maxInflatedBytes > 0 && total > limits.maxInflatedBytes) {
+            fail(ParseOutcome.ErrorCode.INFLATED_BYTES_LIMIT,
+                "Inflated size exceeds limit of " + limits.maxInflatedBytes + " bytes");
+        }
+        checkCancelled();
+    }
+
+    /**
+     * Descarta lo contado por un intento fallido antes del respaldo DOM, que vuelve
+     * a descomprimir y recorrer el archivo; el tiempo y la cancelación se mantienen
+     */
+    void resetCounts() {
+        inflatedBytes.set(0);
+        rows.set(0);
+        cells.set(0);
+    }
+
+    /**
+     * Cuenta una fila leída con sus celdas; cada CLOCK_CHECK_INTERVAL filas se consulta el reloj
+     */
+    void addRow(int cellCount) {
+        long totalRows = rows.incrementAndGet();
+        long totalCells = cells.addAndGet(cellCount);
+        if (limits.maxRows > 0 && totalRows > limits.maxRows) {
+            fail(ParseOutcome.ErrorCode.ROW_LIMIT, "Row count exceeds limit of " + limits.maxRows);
+        }
+        if (limits.maxCells > 0 && totalCells > limits.maxCells) {
+            fail(ParseOutcome.ErrorCode.CELL_LIMIT, "Cell count exceeds limit of " + limits.maxCells);
+        }
+        if (totalRows % CLOCK_CHECK_INTERVAL == 0) {
+            checkTime();
+        }
+        checkCancelled();
+    }
+
+    /**
+     * Consulta el reloj y la cancelación; para los puntos del parsing que no recorren filas
+     */
+    void checkTime() {
+        if (deadline != 0 && System.nanoTime() - deadline > 0) {
+            fail(ParseOutcome.ErrorCode.TIME_LIMIT, "Parsing time exceeds limit of " + limits.maxMillis + " ms");
+        }
+        checkCancelled();
+    }
+
+    /**
+     * Cancela el parsing: la próxima consulta de cualquier hilo lanza Exceeded
+     */
+    void cancel() {
+        if (exceeded == null) {
+            exceeded = new Exceeded(ParseOutcome.ErrorCode.CANCELLED, "Parsing cancelled");
+        }
+    }
+
+    boolean isCancelled() {
+        return exceeded != null;
+    }
+
+    long getRows() {
+        return rows.get();
+    }
+
+    long getCells() {
+        return cells.get();
+    }
+
+    long getInflatedBytes() {
+        return inflatedBytes.get();
+    }
+
+    private void checkCancelled() {
+        Exceeded reason = exceeded;
+        if (reason != null) {
+            throw reason;
+        }
+    }
+
+    private void fail(ParseOutcome.ErrorCode errorCode, String message) {
+        Exceeded reason = new Exceeded(errorCode, message);
+        if (exceeded == null) {
+            exceeded = reason;
+        }
+        throw reason;
+    }
+
+    /**
+     * Envuelve el stream de una parte del paquete para contar los bytes descomprimidos
+     */
+    InputStream track(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    addInflatedBytes(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int count = super.read(buffer, offset, length);
+                if (count > 0) {
+                    addInflatedBytes(count);
+                }
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Límites configurados (0 = sin límite)
+     */
+    static final class Limits {
+        static final Limits UNLIMITED = new Limits(0, 0, 0, 0, 0);
+
+        final long maxDecodedBytes;
+        final long maxInflatedBytes;
+        final long maxRows;
+        final long maxCells;
+        final long maxMillis;
+
+        Limits(long maxDecodedBytes, long maxInflatedBytes, long maxRows, long maxCells, long maxMillis) {
+            this.maxDecodedBytes = maxDecodedBytes;
+            this.maxInflatedBytes = maxInflatedBytes;
+            this.maxRows = maxRows;
+            this.maxCells = maxCells;
+            this.maxMillis = maxMillis;
+        }
+
+        static Limits from(ApplicationConfig config) {
+            return new Limits(config.getExcelMaxDecodedBytes(), config.getExcelMaxInflatedBytes(),
+                config.getExcelMaxRows(), config.getExcelMaxCells(), config.getExcelParseTimeoutMillis());
+        }
+    }
+
+    /**
+     * Límite excedido o parsing cancelado; sin stack trace porque es un corte esperado
+     */
+    static final class Exceeded extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final ParseOutcome.ErrorCode errorCode;
+
+        Exceeded(ParseOutcome.ErrorCode errorCode, String message) {
+            super(message, null, false, false);
+            this.errorCode = errorCode;
+        }
+
+        ParseOutcome.ErrorCode getErrorCode() {
+            return errorCode;
+        }
+    }
+}
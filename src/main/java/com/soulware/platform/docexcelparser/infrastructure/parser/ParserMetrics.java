@@ -0,0 +1,181 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import com.soulware.platform.docexcelparser.domain.model.ParseOutcome;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contadores del parser de Excel compartidos por todas las instancias.
+ * Se consultan desde los logs y endpoints de estado para conocer qué formatos
+ * llegan y cómo se procesan.
+ */
+public final class ParserMetrics {
+
+    private static final Map<ExcelFormat, AtomicLong> FORMAT_COUNTS = new EnumMap<>(ExcelFormat.class);
+    private static final Map<ParseOutcome.ErrorCode, AtomicLong> REJECTION_COUNTS = new EnumMap<>(ParseOutcome.ErrorCode.class);
+    private static final AtomicLong SHEETS_RESOLVED_EARLY = new AtomicLong();
+    private static final AtomicLong SHEETS_ROW_BUDGET_REACHED = new AtomicLong();
+    private static final AtomicLong PARSES_ABORTED = new AtomicLong();
+    private static final AtomicLong REPAIRS_ATTEMPTED = new AtomicLong();
+    private static final AtomicLong REPAIRS_SUCCEEDED = new AtomicLong();
+    private static final AtomicLong REPAIR_NANOS = new AtomicLong();
+    private static final AtomicLong RANGED_READS = new AtomicLong();
+    private static final AtomicLong RANGED_BYTES_FETCHED = new AtomicLong();
+    private static final AtomicLong RANGED_BYTES_SKIPPED = new AtomicLong();
+
+    static {
+        for (ExcelFormat format : ExcelFormat.values()) {
+            FORMAT_COUNTS.put(format, new AtomicLong());
+        }
+        for (ParseOutcome.ErrorCode errorCode : ParseOutcome.ErrorCode.values()) {
+            REJECTION_COUNTS.put(errorCode, new AtomicLong());
+        }
+    }
+
+    private ParserMetrics() {
+    }
+
+    /**
+     * Registra un archivo recibido con el formato detectado
+     */
+    public static void recordFormat(ExcelFormat format) {
+        FORMAT_COUNTS.get(format).incrementAndGet();
+    }
+
+    public static long getFormatCount(ExcelFormat format) {
+        return FORMAT_COUNTS.get(format).get();
+    }
+
+    /**
+     * Resumen de los formatos detectados, p.ej. "OLE2=1, OOXML=12, ..."
+     */
+    public static String formatSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (Map.Entry<ExcelFormat, AtomicLong> entry : FORMAT_COUNTS.entrySet()) {
+            if (summary.length() > 0) {
+                summary.append(", ");
+            }
+            summary.append(entry.getKey()).append('=').append(entry.getValue().get());
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Registra una entrada rechazada con su código de error
+     */
+    public static void recordRejection(ParseOutcome.ErrorCode errorCode) {
+        REJECTION_COUNTS.get(errorCode).incrementAndGet();
+    }
+
+    public static long getRejectionCount(ParseOutcome.ErrorCode errorCode) {
+        return REJECTION_COUNTS.get(errorCode).get();
+    }
+
+    /**
+     * Registra un parsing cortado por un límite de recursos o cancelado; se cuenta
+     * también por código junto a los rechazos
+     */
+    public static void recordAborted(ParseOutcome.ErrorCode errorCode) {
+        PARSES_ABORTED.incrementAndGet();
+        REJECTION_COUNTS.get(errorCode).incrementAndGet();
+    }
+
+    public static long getParsesAborted() {
+        return PARSES_ABORTED.get();
+    }
+
+    /**
+     * Resumen de los rechazos y cortes por código, solo los que ocurrieron al menos una vez
+     */
+    public static String rejectionSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (Map.Entry<ParseOutcome.ErrorCode, AtomicLong> entry : REJECTION_COUNTS.entrySet()) {
+            long count = entry.getValue().get();
+            if (count == 0) {
+                continue;
+            }
+            if (summary.length() > 0) {
+                summary.append(", ");
+            }
+            summary.append(entry.getKey()).append('=').append(count);
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Registra una hoja cuya lectura terminó antes del final porque todos los campos ya estaban resueltos
+     */
+    public static void recordSheetResolvedEarly() {
+        SHEETS_RESOLVED_EARLY.incrementAndGet();
+    }
+
+    public static long getSheetsResolvedEarly() {
+        return SHEETS_RESOLVED_EARLY.get();
+    }
+
+    /**
+     * Registra una hoja cuya lectura se cortó al agotar EXCEL_FORM_ROW_BUDGET
+     */
+    public static void recordRowBudgetReached() {
+        SHEETS_ROW_BUDGET_REACHED.incrementAndGet();
+    }
+
+    public static long getRowBudgetReached() {
+        return SHEETS_ROW_BUDGET_REACHED.get();
+    }
+
+    /**
+     * Registra un paquete dañado leído por el camino de reparación y su duración
+     * @param succeeded true si se extrajeron pacientes de las partes recuperadas
+     */
+    public static void recordRepair(boolean succeeded, long nanos) {
+        REPAIRS_ATTEMPTED.incrementAndGet();
+        if (succeeded) {
+            REPAIRS_SUCCEEDED.incrementAndGet();
+        }
+        REPAIR_NANOS.addAndGet(nanos);
+    }
+
+    public static long getRepairsAttempted() {
+        return REPAIRS_ATTEMPTED.get();
+    }
+
+    public static long getRepairsSucceeded() {
+        return REPAIRS_SUCCEEDED.get();
+    }
+
+    /**
+     * Tiempo total usado en reparaciones, en milisegundos
+     */
+    public static long getRepairMillis() {
+        return REPAIR_NANOS.get() / 1_000_000;
+    }
+
+    /**
+     * Registra un archivo leído por rangos
+     * @param fetchedBytes Bytes descargados
+     * @param totalBytes Tamaño del archivo en el almacenamiento
+     */
+    public static void recordRangedRead(long fetchedBytes, long totalBytes) {
+        RANGED_READS.incrementAndGet();
+        RANGED_BYTES_FETCHED.addAndGet(fetchedBytes);
+        RANGED_BYTES_SKIPPED.addAndGet(Math.max(0, totalBytes - fetchedBytes));
+    }
+
+    public static long getRangedReads() {
+        return RANGED_READS.get();
+    }
+
+    public static long getRangedBytesFetched() {
+        return RANGED_BYTES_FETCHED.get();
+    }
+
+    /**
+     * Bytes de los archivos leídos por rangos que no se descargaron
+     */
+    public static long getRangedBytesSkipped() {
+        return RANGED_BYTES_SKIPPED.get();
+    }
+}
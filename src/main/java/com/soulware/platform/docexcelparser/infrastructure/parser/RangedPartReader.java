@@ -0,0 +1,307 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import com.soulware.platform.docexcelparser.domain.service.IFileStorageService;
+import com.soulware.platform.docexcelparser.infrastructure.logging.AppLog;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lectura por rangos de un .xlsx en el almacenamiento: solo se descargan las
+ * partes que usa el parser.
+ *
+ * Primero pide los últimos tailBytes del archivo (EOCD y casi siempre todo el
+ * directorio central; los archivos más chicos llegan completos aquí). Con el
+ * directorio elige las partes que lee el parser (paquete, workbook y sus
+ * relaciones, estilos, sharedStrings y las hojas), pide sus rangos uniendo los
+ * que están a menos de COALESCE_GAP bytes y arma con ellos un ZIP compacto con
+ * su propio directorio central, que sigue el camino normal (preflight, motor
+ * streaming o DOM). Imágenes, dibujos, objetos incrustados y demás partes no se
+ * descargan. Si el final no tiene un EOCD utilizable (no es ZIP, ZIP64, archivo
+ * dañado) se descarga el resto del archivo para leerlo completo. Todas las
+ * peticiones exigen el ETag de la primera para no mezclar versiones.
+ */
+final class RangedPartReader {
+
+    private static final AppLog log = AppLog.forClass(RangedPartReader.class);
+
+    /** Rangos separados por menos de esta distancia se piden juntos */
+    static final int COALESCE_GAP = 32 * 1024;
+
+    private static final int EOCD_SIZE = 22;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int CENTRAL_OFFSET_FIELD = 42;
+    private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+
+    private RangedPartReader() {
+    }
+
+    /**
+     * Lee el archivo descargando solo las partes que usa el parser
+     * @param storage Almacenamiento
+     * @param fileKey Clave del archivo
+     * @param tailBytes Bytes de la primera petición al final del archivo
+     * @param limits Límites del parsing; maxDecodedBytes se aplica a lo descargado
+     * @return Contenido a parsear (ZIP compacto o archivo completo), o null si el archivo no existe
+     * @throws ParseBudget.Exceeded Si lo que hay que descargar supera maxDecodedBytes
+     * @throws IOException Si falla una lectura o el archivo cambia entre peticiones
+     */
+    static byte[] read(IFileStorageService storage, String fileKey, int tailBytes, ParseBudget.Limits limits)
+            throws IOException {
+        IFileStorageService.ByteRange tail = storage.readRange(fileKey, -1, tailBytes, null);
+        if (tail == null) {
+            return null;
+        }
+        if (tail.getOffset() == 0) {
+            // El archivo entero cabía en la primera petición
+            check(tail.getBytes().length, limits);
+            return tail.getBytes();
+        }
+
+        List<Part> parts = selectParts(storage, fileKey, tail);
+        if (parts == null) {
+            log.debug(() -> "Sin directorio central utilizable al final de " + fileKey + ", se descarga completo");
+            return readRemainder(storage, fileKey, tail, limits);
+        }
+
+        long partBytes = 0;
+        long recordBytes = 0;
+        for (Part part : parts) {
+            partBytes += part.end - part.start;
+            recordBytes += part.record.length;
+        }
+        check(partBytes + recordBytes + EOCD_SIZE, limits);
+
+        byte[] compact = new byte[(int) (partBytes + recordBytes + EOCD_SIZE)];
+        long fetched = fetchParts(storage, fileKey, tail, parts, compact);
+        if (fetched < 0) {
+            log.debug(() -> "Cabeceras locales no coinciden con el directorio en " + fileKey + ", se descarga completo");
+            return readRemainder(storage, fileKey, tail, limits);
+        }
+        writeDirectory(compact, parts, (int) partBytes);
+        fetched += tail.getBytes().length;
+
+        ParserMetrics.recordRangedRead(fetched, tail.getTotalSize());
+        if (log.isDebugEnabled()) {
+            log.debug("Lectura por rangos de " + fileKey + ": " + parts.size() + " partes, " + fetched + " de "
+                + tail.getTotalSize() + " bytes descargados");
+        }
+        return compact;
+    }
+
+    /**
+     * Lee el directorio central (del final ya descargado o con una petición más) y
+     * elige las partes a descargar
+     * @return Partes ordenadas por posición, o null si el directorio no es utilizable
+     */
+    private static List<Part> selectParts(IFileStorageService storage, String fileKey,
+                                          IFileStorageService.ByteRange tail) throws IOException {
+        byte[] tailBytes = tail.getBytes();
+        int eocd = ZipCentralDirectory.findEocd(tailBytes);
+        if (eocd < 0) {
+            return null;
+        }
+        int totalEntries = ZipCentralDirectory.readShort(tailBytes, eocd + 10);
+        long directorySize = ZipCentralDirectory.readInt(tailBytes, eocd + 12) & 0xFFFFFFFFL;
+        long directoryOffset = ZipCentralDirectory.readInt(tailBytes, eocd + 16) & 0xFFFFFFFFL;
+        long eocdPosition = tail.getOffset() + eocd;
+        if (totalEntries == 0xFFFF || directoryOffset == ZIP64_MARKER || directoryOffset + directorySize > eocdPosition) {
+            return null;
+        }
+
+        byte[] directory;
+        if (directoryOffset >= tail.getOffset()) {
+            int from = (int) (directoryOffset - tail.getOffset());
+            directory = Arrays.copyOfRange(tailBytes, from, from + (int) directorySize);
+        } else {
+            IFileStorageService.ByteRange range = storage.readRange(fileKey, directoryOffset, (int) directorySize,
+                tail.getEtag());
+            if (range == null || range.getOffset() != directoryOffset || range.getBytes().length != directorySize) {
+                throw new IOException("Unexpected central directory range for " + fileKey);
+            }
+            directory = range.getBytes();
+        }
+        return parseDirectory(directory, totalEntries, directoryOffset);
+    }
+
+    /**
+     * Recorre el directorio central; cada parte elegida abarca desde su cabecera
+     * local hasta la siguiente entrada (incluye un data descriptor si lo hay)
+     */
+    private static List<Part> parseDirectory(byte[] directory, int totalEntries, long directoryOffset) {
+        List<Part> selected = new ArrayList<>();
+        long[] offsets = new long[totalEntries + 1];
+        int pos = 0;
+        for (int i = 0; i < totalEntries; i++) {
+            if (pos + CENTRAL_HEADER_SIZE > directory.length
+                    || ZipCentralDirectory.readInt(directory, pos) != ZipCentralDirectory.CENTRAL_HEADER_SIGNATURE) {
+                return null;
+            }
+            int nameLength = ZipCentralDirectory.readShort(directory, pos + 28);
+            int recordLength = CENTRAL_HEADER_SIZE + nameLength + ZipCentralDirectory.readShort(directory, pos + 30)
+                + ZipCentralDirectory.readShort(directory, pos + 32);
+            long localOffset = ZipCentralDirectory.readInt(directory, pos + CENTRAL_OFFSET_FIELD) & 0xFFFFFFFFL;
+            if (pos + recordLength > directory.length || localOffset >= directoryOffset) {
+                return null;
+            }
+            offsets[i] = localOffset;
+            String name = new String(directory, pos + CENTRAL_HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+            if (isUsedPart(name)) {
+                selected.add(new Part(localOffset, Arrays.copyOfRange(directory, pos, pos + recordLength)));
+            }
+            pos += recordLength;
+        }
+        offsets[totalEntries] = directoryOffset;
+        Arrays.sort(offsets);
+        for (Part part : selected) {
+            int next = Arrays.binarySearch(offsets, part.start) + 1;
+            while (next < offsets.length && offsets[next] == part.start) {
+                next++;
+            }
+            part.end = next < offsets.length ? offsets[next] : directoryOffset;
+        }
+        selected.sort((a, b) -> Long.compare(a.start, b.start));
+        return selected;
+    }
+
+    /**
+     * Partes que lee el parser: las del paquete, las de primer nivel de xl/
+     * (workbook, estilos, sharedStrings), las relaciones del workbook y las hojas
+     */
+    static boolean isUsedPart(String name) {
+        if (name.equals("[Content_Types].xml") || name.equals("_rels/.rels")) {
+            return true;
+        }
+        if (!name.startsWith("xl/") || name.endsWith("/")) {
+            return false;
+        }
+        String inXl = name.substring(3);
+        if (inXl.indexOf('/') < 0) {
+            return true;
+        }
+        if (inXl.startsWith("_rels/")) {
+            return inXl.indexOf('/', 6) < 0;
+        }
+        return inXl.startsWith("worksheets/") && inXl.indexOf('/', 11) < 0 && inXl.endsWith(".xml");
+    }
+
+    /**
+     * Descarga los rangos de las partes (unidos si están cerca) y los copia al
+     * inicio del ZIP compacto, actualizando la posición de cada cabecera local.
+     * Lo que ya llegó con el final del archivo se copia de ahí sin volver a pedirlo
+     * @return Bytes descargados, o -1 si una cabecera local no está donde indica el directorio
+     */
+    private static long fetchParts(IFileStorageService storage, String fileKey, IFileStorageService.ByteRange tail,
+                                   List<Part> parts, byte[] compact) throws IOException {
+        long fetched = 0;
+        int written = 0;
+        int first = 0;
+        while (first < parts.size()) {
+            int last = first;
+            while (last + 1 < parts.size() && parts.get(last + 1).start - parts.get(last).end <= COALESCE_GAP) {
+                last++;
+            }
+            long rangeStart = parts.get(first).start;
+            long rangeEnd = parts.get(last).end;
+            byte[] data = new byte[(int) (rangeEnd - rangeStart)];
+            long requestEnd = Math.min(rangeEnd, tail.getOffset());
+            if (rangeStart < requestEnd) {
+                int length = (int) (requestEnd - rangeStart);
+                IFileStorageService.ByteRange range = storage.readRange(fileKey, rangeStart, length, tail.getEtag());
+                if (range == null || range.getOffset() != rangeStart || range.getBytes().length != length) {
+                    throw new IOException("Unexpected range " + rangeStart + "-" + requestEnd + " for " + fileKey);
+                }
+                System.arraycopy(range.getBytes(), 0, data, 0, length);
+                fetched += length;
+            }
+            if (rangeEnd > requestEnd) {
+                long copyStart = Math.max(rangeStart, tail.getOffset());
+                System.arraycopy(tail.getBytes(), (int) (copyStart - tail.getOffset()), data,
+                    (int) (copyStart - rangeStart), (int) (rangeEnd - copyStart));
+            }
+            for (int i = first; i <= last; i++) {
+                Part part = parts.get(i);
+                int from = (int) (part.start - rangeStart);
+                if (ZipCentralDirectory.readInt(data, from) != ZipCentralDirectory.LOCAL_HEADER_SIGNATURE) {
+                    return -1;
+                }
+                int length = (int) (part.end - part.start);
+                System.arraycopy(data, from, compact, written, length);
+                part.compactOffset = written;
+                written += length;
+            }
+            first = last + 1;
+        }
+        return fetched;
+    }
+
+    /**
+     * Escribe el directorio central y el EOCD del ZIP compacto a continuación de las partes
+     */
+    private static void writeDirectory(byte[] compact, List<Part> parts, int directoryOffset) {
+        int pos = directoryOffset;
+        for (Part part : parts) {
+            System.arraycopy(part.record, 0, compact, pos, part.record.length);
+            writeInt(compact, pos + CENTRAL_OFFSET_FIELD, part.compactOffset);
+            pos += part.record.length;
+        }
+        writeInt(compact, pos, ZipCentralDirectory.EOCD_SIGNATURE);
+        writeShort(compact, pos + 8, parts.size());
+        writeShort(compact, pos + 10, parts.size());
+        writeInt(compact, pos + 12, pos - directoryOffset);
+        writeInt(compact, pos + 16, directoryOffset);
+    }
+
+    /**
+     * Descarga lo que falta antes del final ya leído y devuelve el archivo completo
+     */
+    private static byte[] readRemainder(IFileStorageService storage, String fileKey,
+                                        IFileStorageService.ByteRange tail, ParseBudget.Limits limits) throws IOException {
+        check(tail.getTotalSize(), limits);
+        int prefixLength = (int) tail.getOffset();
+        IFileStorageService.ByteRange prefix = storage.readRange(fileKey, 0, prefixLength, tail.getEtag());
+        if (prefix == null || prefix.getOffset() != 0 || prefix.getBytes().length != prefixLength) {
+            throw new IOException("Unexpected range 0-" + prefixLength + " for " + fileKey);
+        }
+        byte[] whole = Arrays.copyOf(prefix.getBytes(), prefixLength + tail.getBytes().length);
+        System.arraycopy(tail.getBytes(), 0, whole, prefixLength, tail.getBytes().length);
+        return whole;
+    }
+
+    private static void check(long size, ParseBudget.Limits limits) {
+        ParseBudget.Exceeded tooLarge = ParseBudget.checkDecodedBytes(size, limits);
+        if (tooLarge != null) {
+            throw tooLarge;
+        }
+    }
+
+    private static void writeInt(byte[] bytes, int pos, int value) {
+        bytes[pos] = (byte) value;
+        bytes[pos + 1] = (byte) (value >>> 8);
+        bytes[pos + 2] = (byte) (value >>> 16);
+        bytes[pos + 3] = (byte) (value >>> 24);
+    }
+
+    private static void writeShort(byte[] bytes, int pos, int value) {
+        bytes[pos] = (byte) value;
+        bytes[pos + 1] = (byte) (value >>> 8);
+    }
+
+    /**
+     * Parte a descargar: rango en el archivo original y registro del directorio central
+     */
+    private static final class Part {
+        final long start;
+        final byte[] record;
+        long end;
+        int compactOffset;
+
+        Part(long start, byte[] record) {
+            this.start = start;
+            this.record = record;
+        }
+    }
+}
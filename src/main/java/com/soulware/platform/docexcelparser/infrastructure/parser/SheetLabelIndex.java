@@ -0,0 +1,98 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import org.apache.poi.ss.util.CellAddress;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Índice de etiquetas de una hoja, construido en una sola pasada.
+ * Asocia el texto normalizado de cada celda de etiqueta con su posición, de modo
+ * que las búsquedas de campos son O(1) en lugar de recorrer la hoja por campo.
+ * Solo se indexan celdas de texto que tienen una celda de valor a la derecha,
+ * igual que la búsqueda original por etiqueta. Las etiquetas conocidas se
+ * reconocen sin distinguir acentos, mayúsculas ni espacios (ver LabelMatcher).
+ */
+final class SheetLabelIndex {
+
+    // Texto normalizado de la celda → posición de la primera etiqueta con ese texto
+    private final Map<String, CellAddress> byText = new HashMap<>();
+    // Etiqueta conocida → posición de la primera celda que la contiene
+    private final Map<String, CellAddress> byKnownLabel = new HashMap<>();
+
+    private SheetLabelIndex() {
+    }
+
+    /**
+     * Recorre la hoja una vez e indexa las celdas de etiqueta. El recorrido termina
+     * al final de la fila en la que se resolvió la última etiqueta conocida (el índice
+     * por texto solo se consulta para etiquetas no resueltas) o al llegar a rowBudget.
+     * @param sheet Hoja compacta a indexar
+     * @param knownLabels Etiquetas del formulario compiladas; se resuelven por contención
+     * @param rowBudget Filas a recorrer como máximo (0 = sin límite)
+     * @return Índice listo para consultas
+     */
+    static SheetLabelIndex build(CompactSheet sheet, LabelMatcher knownLabels, int rowBudget) {
+        SheetLabelIndex index = new SheetLabelIndex();
+        long pending = knownLabels.size() == Long.SIZE ? -1L : (1L << knownLabels.size()) - 1;
+
+        for (int rowIndex = 0; rowIndex < sheet.rowCount(); rowIndex++) {
+            if (pending == 0 || (rowBudget > 0 && sheet.rowNumber(rowIndex) >= rowBudget)) {
+                break;
+            }
+            int end = sheet.rowEnd(rowIndex);
+            for (int cell = sheet.rowStart(rowIndex); cell < end; cell++) {
+                if (sheet.type(cell) != CompactSheet.STRING) {
+                    continue;
+                }
+                // Solo cuenta como etiqueta si existe la celda de valor adyacente
+                if (cell + 1 >= end || sheet.column(cell + 1) != sheet.column(cell) + 1) {
+                    continue;
+                }
+                String text = sheet.value(cell);
+                if (text.isEmpty()) {
+                    continue;
+                }
+                CellAddress address = new CellAddress(sheet.row(cell), sheet.column(cell));
+                index.byText.putIfAbsent(LabelMatcher.fold(text), address);
+
+                if (pending != 0) {
+                    long found = knownLabels.match(text) & pending;
+                    pending &= ~found;
+                    for (; found != 0; found &= found - 1) {
+                        index.byKnownLabel.put(knownLabels.pattern(Long.numberOfTrailingZeros(found)), address);
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Crea un índice a partir de posiciones ya conocidas (plan de layout cacheado)
+     * @param knownLabels Etiqueta conocida → posición de su celda
+     * @return Índice con las posiciones dadas
+     */
+    static SheetLabelIndex of(Map<String, CellAddress> knownLabels) {
+        SheetLabelIndex index = new SheetLabelIndex();
+        index.byKnownLabel.putAll(knownLabels);
+        return index;
+    }
+
+    /**
+     * Busca la posición de una etiqueta
+     * @param labelText Texto de la etiqueta
+     * @return Posición de la celda de etiqueta o null si no existe
+     */
+    CellAddress find(String labelText) {
+        CellAddress address = byKnownLabel.get(labelText);
+        if (address != null) {
+            return address;
+        }
+        return byText.get(LabelMatcher.fold(labelText));
+    }
+
+    int size() {
+        return byText.size();
+    }
+}
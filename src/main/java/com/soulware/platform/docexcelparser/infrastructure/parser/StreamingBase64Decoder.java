@@ -0,0 +1,183 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Decodificador Base64 tolerante que limpia y decodifica en una sola pasada.
+ * Ignora espacios, saltos de línea y cualquier carácter fuera del alfabeto Base64,
+ * y completa el padding faltante, igual que la limpieza previa con replaceAll,
+ * pero sin crear Strings intermedios: cada carácter válido se acumula en bits y
+ * se escribe directamente en el buffer de salida.
+ *
+ * Puede alimentarse por partes (update) para decodificar contenido que llega en
+ * fragmentos, por ejemplo desde un parser JSON en streaming.
+ */
+public final class StreamingBase64Decoder {
+
+    private static final byte[] DECODE_TABLE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE_TABLE, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE_TABLE[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private byte[] buffer;
+    private int size;
+    private int accumulator;
+    private int pendingBits;
+    private long validChars;
+    private long skippedChars;
+    private boolean finished;
+
+    /**
+     * @param expectedChars Cantidad aproximada de caracteres a decodificar (dimensiona el buffer)
+     */
+    public StreamingBase64Decoder(int expectedChars) {
+        this(new byte[Math.max(16, expectedChars / 4 * 3)]);
+    }
+
+    private StreamingBase64Decoder(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Limpia y decodifica un contenido Base64 completo
+     * @param base64 Texto Base64, posiblemente con espacios o caracteres inválidos
+     * @return Bytes decodificados
+     * @throws IllegalArgumentException Si no hay datos o el último bloque está incompleto
+     */
+    public static byte[] decode(CharSequence base64) {
+        if (base64 == null) {
+            throw new IllegalArgumentException("Base64 content is null");
+        }
+        StreamingBase64Decoder decoder = new StreamingBase64Decoder(new byte[exactCapacity(base64)]);
+        decoder.update(base64, 0, base64.length());
+        return decoder.toByteArray();
+    }
+
+    /**
+     * Igual que decode pero sin excepciones, para descartar entradas inválidas a bajo costo
+     * @return Bytes decodificados o null si el contenido no es Base64 válido
+     */
+    public static byte[] tryDecode(CharSequence base64) {
+        if (base64 == null) {
+            return null;
+        }
+        StreamingBase64Decoder decoder = new StreamingBase64Decoder(new byte[exactCapacity(base64)]);
+        decoder.update(base64, 0, base64.length());
+        return decoder.isComplete() ? decoder.toByteArray() : null;
+    }
+
+    /**
+     * Agrega un fragmento de texto Base64
+     */
+    public void update(CharSequence chars, int start, int end) {
+        for (int i = start; i < end; i++) {
+            accept(chars.charAt(i));
+        }
+    }
+
+    /**
+     * Agrega un fragmento de texto Base64 desde un arreglo de caracteres
+     */
+    public void update(char[] chars, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            accept(chars[i]);
+        }
+    }
+
+    private void accept(char c) {
+        if (finished) {
+            throw new IllegalStateException("Decoder already finished");
+        }
+        int value = c < 128 ? DECODE_TABLE[c] : -1;
+        if (value < 0) {
+            // Espacios, saltos de línea, padding y caracteres inválidos se descartan
+            skippedChars++;
+            return;
+        }
+        validChars++;
+        accumulator = (accumulator << 6) | value;
+        pendingBits += 6;
+        if (pendingBits >= 8) {
+            pendingBits -= 8;
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length + (buffer.length >> 1) + 16);
+            }
+            buffer[size++] = (byte) (accumulator >> pendingBits);
+        }
+    }
+
+    /**
+     * Termina la decodificación; los bits sobrantes equivalen al padding omitido
+     * @return Cantidad de bytes decodificados
+     * @throws IllegalArgumentException Si no hubo caracteres válidos o el último bloque tiene un solo carácter
+     */
+    public int finish() {
+        if (!finished) {
+            finished = true;
+            if (validChars == 0) {
+                throw new IllegalArgumentException("Base64 content has no valid characters");
+            }
+            if (validChars % 4 == 1) {
+                throw new IllegalArgumentException("Invalid Base64: truncated final block");
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Indica si lo leído hasta ahora forma un Base64 válido (hay datos y el último bloque no está truncado)
+     */
+    public boolean isComplete() {
+        return validChars > 0 && validChars % 4 != 1;
+    }
+
+    /**
+     * Bytes decodificados; no copia si el buffer quedó con el tamaño exacto
+     */
+    public byte[] toByteArray() {
+        finish();
+        return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Stream sobre los bytes decodificados, sin copiar el buffer
+     */
+    public InputStream toInputStream() {
+        finish();
+        return new ByteArrayInputStream(buffer, 0, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getValidChars() {
+        return validChars;
+    }
+
+    public long getSkippedChars() {
+        return skippedChars;
+    }
+
+    /**
+     * Tamaño de salida exacto para un Base64 limpio (sin espacios ni caracteres extra),
+     * que es el caso habitual; si el texto trae basura, el resultado se recorta al final
+     */
+    static int exactCapacity(CharSequence base64) {
+        int length = base64.length();
+        int padding = 0;
+        while (length > 0 && padding < 2 && base64.charAt(length - 1) == '=') {
+            length--;
+            padding++;
+        }
+        return length / 4 * 3 + (length % 4 == 0 ? 0 : length % 4 - 1);
+    }
+}
@@ -0,0 +1,274 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import com.soulware.platform.docexcelparser.domain.model.PatientProfile;
+import com.soulware.platform.docexcelparser.domain.service.IExcelParserService;
+import com.soulware.platform.docexcelparser.infrastructure.config.ApplicationConfig;
+import com.soulware.platform.docexcelparser.infrastructure.logging.AppLog;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Alternative;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.Styles;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Implementación de parsing de Excel basada en el modelo de eventos (SAX) de POI.
+ * Lee el XML de la primera hoja con OoxmlPartReader, que solo descomprime las
+ * partes necesarias (workbook.xml, la hoja y sharedStrings.xml), y una tabla de
+ * shared strings de solo lectura, entregando las celdas al extractor a medida
+ * que se leen.
+ * No construye el XSSFWorkbook, por lo que el consumo de memoria es proporcional
+ * a la fila actual y no al tamaño del archivo.
+ *
+ * En modo de múltiples pacientes cada hoja se extrae en paralelo en un pool
+ * fork-join acotado (EXCEL_BATCH_PARALLELISM); todas las hojas comparten la misma
+ * tabla de shared strings de solo lectura y la misma tabla de estilos.
+ *
+ * Es una alternativa CDI: por defecto se usa a través de ExcelPatientParser,
+ * que conserva el camino DOM como respaldo (ver EXCEL_PARSER_ENGINE).
+ */
+@ApplicationScoped
+@Alternative
+public class StreamingExcelPatientParser implements IExcelParserService {
+
+    private static final AppLog log = AppLog.forClass(StreamingExcelPatientParser.class);
+
+    // Pool compartido por todas las instancias para acotar los hilos usados en lotes
+    private static final ForkJoinPool SHEET_POOL =
+        new ForkJoinPool(new ApplicationConfig().getExcelBatchParallelism());
+
+    private final int rowBudget = new ApplicationConfig().getExcelFormRowBudget();
+    private final ParseBudget.Limits limits = ParseBudget.Limits.from(new ApplicationConfig());
+
+    /**
+     * Parsea un archivo Excel desde base64 y extrae los datos del paciente
+     * @param base64Content Contenido base64 del archivo Excel
+     * @return PatientProfile con los datos extraídos
+     */
+    @Override
+    public PatientProfile parsePatientFromExcel(String base64Content) {
+        if (base64Content == null || base64Content.trim().isEmpty()) {
+            throw new IllegalArgumentException("Base64 content is null or empty");
+        }
+        return parsePatientFromExcel(StreamingBase64Decoder.decode(base64Content));
+    }
+
+    /**
+     * Parsea un archivo Excel desde sus bytes y extrae los datos del paciente
+     * @param excelBytes Bytes del archivo Excel (OOXML)
+     * @return PatientProfile con los datos extraídos
+     */
+    @Override
+    public PatientProfile parsePatientFromExcel(byte[] excelBytes) {
+        try {
+            return parsePatientFromBytes(excelBytes);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Cannot stream Excel workbook: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parsea un archivo .xlsx leyendo la primera hoja en modo streaming
+     * @param excelBytes Bytes del archivo Excel (OOXML)
+     * @return PatientProfile con los datos extraídos
+     * @throws Exception Si el ZIP o sus partes OOXML no se pueden leer o la hoja no es XML válido
+     */
+    public PatientProfile parsePatientFromBytes(byte[] excelBytes) throws Exception {
+        return parsePatientFromBytes(excelBytes, ParseBudget.start(limits));
+    }
+
+    /**
+     * Igual que parsePatientFromBytes(byte[]) descontando filas, celdas, bytes
+     * descomprimidos y tiempo del presupuesto dado
+     * @throws ParseBudget.Exceeded Si se excede algún límite o el presupuesto se cancela
+     */
+    PatientProfile parsePatientFromBytes(byte[] excelBytes, ParseBudget budget) throws Exception {
+        return parsePatient(OoxmlPartReader.open(excelBytes, budget), budget);
+    }
+
+    /**
+     * Parsea la primera hoja de un paquete dañado (ZIP truncado o con datos
+     * corruptos), leyendo las partes recuperadas desde las cabeceras locales sin
+     * reconstruir el ZIP (ver OoxmlPartReader.salvage)
+     * @throws Exception Si no se recupera ninguna hoja o las partes leídas están dañadas
+     */
+    PatientProfile parseSalvagedPatient(byte[] excelBytes, ParseBudget budget) throws Exception {
+        return parsePatient(OoxmlPartReader.salvage(excelBytes, budget), budget);
+    }
+
+    private PatientProfile parsePatient(OoxmlPartReader parts, ParseBudget budget) throws Exception {
+        long start = System.nanoTime();
+        if (parts.getSheetCount() == 0) {
+            throw new IllegalArgumentException("Excel file has no sheets");
+        }
+        ReadOnlySharedStringsTable sharedStrings = parts.readSharedStrings();
+        LazyStyles styles = parts.lazyStyles();
+
+        StreamingPatientExtractor extractor = extractSheet(parts.openSheet(0), styles, sharedStrings,
+            parts.isDate1904(), rowBudget, budget);
+        // En una hoja de listado el paciente único es el de la primera fila
+        List<PatientProfile> found = extractor.toPatientProfiles();
+        PatientProfile patient = found.isEmpty() ? extractor.toPatientProfile() : found.get(0);
+        if (log.isDebugEnabled()) {
+            log.debug("Streaming parse: " + extractor.getRowsRead() + " filas, "
+                + extractor.getCellsRead() + " celdas en " + (System.nanoTime() - start) / 1_000_000 + " ms"
+                + (styles.isLoaded() ? "" : " (sin leer styles.xml)"));
+        }
+        return patient;
+    }
+
+    /**
+     * Parsea un workbook con varios pacientes: cada hoja se extrae en paralelo y se
+     * devuelven los pacientes en el orden de las hojas (y de las filas en los listados)
+     * @param excelBytes Bytes del archivo Excel (OOXML)
+     * @return Pacientes de todas las hojas con datos; si ninguna tiene datos, el de la primera hoja
+     */
+    @Override
+    public List<PatientProfile> parsePatientsFromExcel(byte[] excelBytes) {
+        try {
+            return parsePatientsFromBytes(excelBytes);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Cannot stream Excel workbook: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lee todas las hojas del paquete en modo streaming, una tarea por hoja
+     * @param excelBytes Bytes del archivo Excel (OOXML)
+     * @return Pacientes extraídos en el orden de las hojas
+     * @throws Exception Si el paquete no se puede abrir o alguna hoja no es XML válido
+     */
+    public List<PatientProfile> parsePatientsFromBytes(byte[] excelBytes) throws Exception {
+        return parsePatientsFromBytes(excelBytes, ParseBudget.start(limits));
+    }
+
+    /**
+     * Igual que parsePatientsFromBytes(byte[]) con un presupuesto compartido por
+     * todas las hojas: si una hoja falla o lo agota, las demás se cancelan
+     * @throws ParseBudget.Exceeded Si se excede algún límite o el presupuesto se cancela
+     */
+    List<PatientProfile> parsePatientsFromBytes(byte[] excelBytes, ParseBudget budget) throws Exception {
+        return parsePatients(OoxmlPartReader.open(excelBytes, budget), budget);
+    }
+
+    /**
+     * Igual que parseSalvagedPatient para todas las hojas recuperadas
+     */
+    List<PatientProfile> parseSalvagedPatients(byte[] excelBytes, ParseBudget budget) throws Exception {
+        return parsePatients(OoxmlPartReader.salvage(excelBytes, budget), budget);
+    }
+
+    private List<PatientProfile> parsePatients(OoxmlPartReader parts, ParseBudget budget) throws Exception {
+        long start = System.nanoTime();
+        if (parts.getSheetCount() == 0) {
+            throw new IllegalArgumentException("Excel file has no sheets");
+        }
+        ReadOnlySharedStringsTable sharedStrings = parts.readSharedStrings();
+        LazyStyles styles = parts.lazyStyles();
+
+        // Cada tarea descomprime su propia hoja; el buffer del archivo es de solo lectura
+        List<ForkJoinTask<StreamingPatientExtractor>> tasks = new ArrayList<>();
+        for (int i = 0; i < parts.getSheetCount(); i++) {
+            int index = i;
+            tasks.add(SHEET_POOL.submit(() -> extractSheet(parts.openSheet(index), styles, sharedStrings,
+                parts.isDate1904(), rowBudget, budget)));
+        }
+
+        // Esperar todas las tareas, aunque alguna falle, para no dejar hojas a medio leer
+        List<StreamingPatientExtractor> extractors = new ArrayList<>();
+        Exception failure = null;
+        for (ForkJoinTask<StreamingPatientExtractor> task : tasks) {
+            try {
+                extractors.add(task.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    // Las hojas que siguen leyendo se detienen en su próxima fila
+                    budget.cancel();
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+
+        List<PatientProfile> patients = new ArrayList<>();
+        int rows = 0;
+        for (StreamingPatientExtractor extractor : extractors) {
+            rows += extractor.getRowsRead();
+            if (extractor.hasPatientData()) {
+                patients.addAll(extractor.toPatientProfiles());
+            }
+        }
+        if (patients.isEmpty()) {
+            patients.add(extractors.get(0).toPatientProfile());
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Streaming batch parse: " + extractors.size() + " hojas, " + rows + " filas, "
+                + patients.size() + " pacientes en " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+        return patients;
+    }
+
+    /**
+     * Lee el XML de una hoja y entrega sus celdas a un extractor nuevo (cierra el stream).
+     * Si el extractor ya no necesita más filas el XML restante no se descomprime.
+     */
+    private static StreamingPatientExtractor extractSheet(InputStream sheet, Styles styles,
+                                                          SharedStrings sharedStrings, boolean date1904,
+                                                          int rowBudget, ParseBudget budget) throws Exception {
+        StreamingPatientExtractor extractor = new StreamingPatientExtractor(rowBudget, budget);
+        try (InputStream in = sheet) {
+            XMLReader xmlReader = XMLHelper.newXMLReader();
+            // DataFormatter no es thread-safe: uno por hoja
+            xmlReader.setContentHandler(new XSSFSheetXMLHandler(
+                styles, sharedStrings, extractor, new DomCompatibleDataFormatter(extractor, date1904), true));
+            xmlReader.parse(new InputSource(in));
+        } catch (StreamingPatientExtractor.StopReading stop) {
+            // Formulario resuelto o presupuesto de filas agotado
+        }
+        return extractor;
+    }
+
+    /**
+     * Formatea los valores numéricos igual que ExcelPatientParser.getCellValueAsString(Cell),
+     * para que ambos motores produzcan el mismo PatientProfile, y entrega al extractor
+     * el valor nativo (fecha o número) de la celda que se está formateando
+     */
+    private static final class DomCompatibleDataFormatter extends DataFormatter {
+        private final StreamingPatientExtractor extractor;
+        private final boolean date1904;
+
+        DomCompatibleDataFormatter(StreamingPatientExtractor extractor, boolean date1904) {
+            this.extractor = extractor;
+            this.date1904 = date1904;
+        }
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                extractor.nativeValue(CompactSheet.DATE, CellValues.excelDateToEpochDay(value, date1904));
+                return DateUtil.getJavaDate(value, date1904).toString();
+            }
+            extractor.nativeValue(CompactSheet.NUMERIC, (long) value);
+            return String.valueOf((long) value);
+        }
+    }
+}
@@ -0,0 +1,552 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import com.soulware.platform.docexcelparser.domain.model.LegalGuardian;
+import com.soulware.platform.docexcelparser.domain.model.PatientProfile;
+import com.soulware.platform.docexcelparser.domain.model.ReferredTherapist;
+import com.soulware.platform.docexcelparser.infrastructure.logging.AppLog;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Extractor incremental de datos del paciente para el modelo de eventos de POI.
+ * Recibe las celdas a medida que se lee el XML de la hoja y resuelve etiquetas,
+ * responsables legales y médico tratante sin construir el DOM del workbook.
+ * Solo mantiene en memoria la fila actual y las ventanas de búsqueda abiertas.
+ *
+ * Si antes de resolver cualquier etiqueta aparece una fila con varias etiquetas
+ * del formulario en columnas distintas, sin su valor al lado, es candidata a
+ * encabezado de listado (roster). Se confirma con la siguiente fila con datos:
+ * si bajo las columnas del encabezado trae valores y no etiquetas, la hoja se
+ * trata como listado y cada fila es un paciente; si no, el encabezado se procesa
+ * como una fila más del formulario (por ejemplo, un formulario en horizontal
+ * con pares etiqueta | valor).
+ *
+ * En un formulario la lectura se detiene (lanzando StopReading desde endRow) en
+ * cuanto todos los campos están resueltos: las etiquetas del paciente, las
+ * ventanas de R.1 y R.2 ya cerradas y el médico tratante; o al llegar al
+ * presupuesto de filas. Así no se recorren las filas vacías con formato que
+ * suelen quedar al final de la hoja.
+ */
+class StreamingPatientExtractor implements SheetContentsHandler {
+
+    private static final AppLog log = AppLog.forClass(StreamingPatientExtractor.class);
+
+    /** Etiquetas del formulario médico, en el mismo orden que extractPatientData */
+    private static final String[] PATIENT_LABELS = ExcelPatientParser.PATIENT_LABELS;
+    private static final LabelMatcher PATIENT_LABEL_MATCHER = ExcelPatientParser.PATIENT_LABEL_MATCHER;
+    private static final LabelMatcher THERAPIST_COLUMN = LabelMatcher.of("Médico tratante");
+
+    /** Etiquetas distintas en una misma fila para considerarla encabezado de listado */
+    private static final int ROSTER_MIN_LABELS = 3;
+
+    private final FieldValues labelValues = new FieldValues(PATIENT_LABELS.length);
+    private final boolean[] labelResolved = new boolean[PATIENT_LABELS.length];
+    private int unresolvedLabels = PATIENT_LABELS.length;
+
+    // Secciones de responsables legales y médico tratante
+    private final FormSectionScanner sections = new FormSectionScanner();
+
+    /** Fila (base 0) a partir de la cual no se lee más un formulario; 0 = sin límite */
+    private final int rowBudget;
+    private final ParseBudget budget;
+    private StopReason stopReason;
+
+    // Fila actual: columnas y valores en orden de lectura
+    private int currentRow = -1;
+    private int[] rowColumns = new int[16];
+    private String[] rowValues = new String[16];
+    private byte[] rowTypes = new byte[16];
+    private long[] rowNumbers = new long[16];
+    // Valor nativo de la celda que el formateador acaba de formatear (ver nativeValue)
+    private byte pendingType = CompactSheet.STRING;
+    private long pendingNumber;
+    private int rowSize = 0;
+    private int rowsRead = 0;
+    private int cellsRead = 0;
+
+    // Modo listado: columna → campo según el encabezado
+    private Map<Integer, RosterColumn> rosterColumns;
+    // Encabezado de listado a la espera de la primera fila con datos
+    private PendingHeader pendingHeader;
+    private final List<PatientProfile> rosterPatients = new ArrayList<>();
+
+    StreamingPatientExtractor() {
+        this(0, ParseBudget.unlimited());
+    }
+
+    /**
+     * @param rowBudget Filas del formulario a leer como máximo (0 = sin límite)
+     * @param budget Presupuesto del archivo; cada fila leída se descuenta de él
+     */
+    StreamingPatientExtractor(int rowBudget, ParseBudget budget) {
+        this.rowBudget = rowBudget;
+        this.budget = budget;
+    }
+
+    @Override
+    public void startRow(int rowNum) {
+        currentRow = rowNum;
+        rowSize = 0;
+    }
+
+    @Override
+    public void endRow(int rowNum) {
+        rowsRead++;
+        budget.addRow(rowSize);
+        if (rosterColumns != null) {
+            addRosterPatient();
+        } else if (pendingHeader != null) {
+            if (rowSize > 0) {
+                confirmRosterHeader();
+            }
+        } else if (unresolvedLabels == PATIENT_LABELS.length && detectRosterHeader()) {
+            log.debug(() -> "Posible encabezado de listado en fila " + currentRow);
+        } else {
+            processFormRow();
+        }
+        rowSize = 0;
+        if (stopReason != null) {
+            throw StopReading.INSTANCE;
+        }
+    }
+
+    /**
+     * Un encabezado sin filas de datos es un listado vacío
+     */
+    @Override
+    public void endSheet() {
+        if (pendingHeader != null) {
+            rosterColumns = pendingHeader.columns;
+            pendingHeader = null;
+        }
+    }
+
+    private void processFormRow() {
+        for (int i = 0; i < rowSize; i++) {
+            processCell(i);
+        }
+        checkFormFinished();
+    }
+
+    /**
+     * Decide si el formulario ya no necesita más filas
+     */
+    private void checkFormFinished() {
+        sections.endRow(currentRow);
+        if (unresolvedLabels == 0 && sections.isResolved()) {
+            stopReason = StopReason.RESOLVED;
+            ParserMetrics.recordSheetResolvedEarly();
+            log.debug(() -> "Formulario resuelto en la fila " + currentRow + ", se omite el resto de la hoja");
+        } else if (rowBudget > 0 && currentRow + 1 >= rowBudget) {
+            stopReason = StopReason.ROW_BUDGET;
+            ParserMetrics.recordRowBudgetReached();
+            log.debug(() -> "Presupuesto de " + rowBudget + " filas agotado con " + unresolvedLabels
+                + " etiquetas sin resolver");
+        }
+    }
+
+    @Override
+    public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+        byte type = pendingType;
+        long number = pendingNumber;
+        pendingType = CompactSheet.STRING;
+        if (formattedValue == null) {
+            return;
+        }
+        cell(columnIndexOf(cellReference, rowSize), formattedValue, type, number);
+    }
+
+    /**
+     * Registra el valor nativo de la próxima celda; el formateador lo llama
+     * justo antes de que XSSFSheetXMLHandler entregue la celda formateada
+     * @param type CompactSheet.NUMERIC o CompactSheet.DATE
+     * @param number Valor truncado a long o días desde 1970-01-01
+     */
+    void nativeValue(byte type, long number) {
+        pendingType = type;
+        pendingNumber = number;
+    }
+
+    /**
+     * Agrega una celda a la fila actual; usado también para alimentar el extractor desde el DOM
+     * @param type Tipo de la celda (constantes de CompactSheet)
+     * @param number Valor nativo para NUMERIC y DATE
+     */
+    void cell(int column, String value, byte type, long number) {
+        if (rowSize == rowColumns.length) {
+            rowColumns = Arrays.copyOf(rowColumns, rowSize * 2);
+            rowValues = Arrays.copyOf(rowValues, rowSize * 2);
+            rowTypes = Arrays.copyOf(rowTypes, rowSize * 2);
+            rowNumbers = Arrays.copyOf(rowNumbers, rowSize * 2);
+        }
+        rowColumns[rowSize] = column;
+        rowValues[rowSize] = value.trim();
+        rowTypes[rowSize] = type;
+        rowNumbers[rowSize] = number;
+        rowSize++;
+        cellsRead++;
+    }
+
+    /**
+     * Reconoce la fila actual como posible encabezado de listado si contiene al
+     * menos ROSTER_MIN_LABELS etiquetas distintas del paciente en columnas
+     * diferentes y la mayoría no tiene una celda de valor a su derecha
+     */
+    private boolean detectRosterHeader() {
+        if (rowSize < ROSTER_MIN_LABELS) {
+            return false;
+        }
+        Map<Integer, RosterColumn> columns = new HashMap<>();
+        boolean[] seen = new boolean[PATIENT_LABELS.length];
+        int distinctLabels = 0;
+        int labelCells = 0;
+        int labelsWithValue = 0;
+        for (int i = 0; i < rowSize; i++) {
+            String header = rowValues[i];
+            if (header.isEmpty()) {
+                continue;
+            }
+            if (header.contains("R.1") || header.contains("R.2")) {
+                columns.put(rowColumns[i], RosterColumn.guardian(header, header.contains("R.1") ? 0 : 1));
+                continue;
+            }
+            if (isTherapistColumn(header)) {
+                columns.put(rowColumns[i], RosterColumn.therapist());
+                continue;
+            }
+            long found = PATIENT_LABEL_MATCHER.match(header);
+            if (found != 0) {
+                // Primera etiqueta (en el orden de PATIENT_LABELS) que contiene el encabezado
+                int label = Long.numberOfTrailingZeros(found);
+                columns.put(rowColumns[i], RosterColumn.patientField(label));
+                if (!seen[label]) {
+                    seen[label] = true;
+                    distinctLabels++;
+                }
+                labelCells++;
+                String adjacent = adjacentValue(i);
+                if (adjacent != null && !adjacent.isEmpty() && !isHeaderText(adjacent)) {
+                    labelsWithValue++;
+                }
+            }
+        }
+        // En un formulario horizontal cada etiqueta va seguida de su valor
+        if (distinctLabels < ROSTER_MIN_LABELS || labelsWithValue * 2 > labelCells) {
+            return false;
+        }
+        pendingHeader = new PendingHeader(currentRow, columns, Arrays.copyOf(rowColumns, rowSize),
+            Arrays.copyOf(rowValues, rowSize), Arrays.copyOf(rowTypes, rowSize), Arrays.copyOf(rowNumbers, rowSize));
+        return true;
+    }
+
+    /**
+     * Confirma el encabezado pendiente con la fila actual: bajo sus columnas de
+     * campos debe haber al menos ROSTER_MIN_LABELS valores y ninguna etiqueta.
+     * Si no se confirma, el encabezado y la fila actual se leen como formulario
+     */
+    private void confirmRosterHeader() {
+        PendingHeader header = pendingHeader;
+        pendingHeader = null;
+        int values = 0;
+        int labels = 0;
+        for (int i = 0; i < rowSize; i++) {
+            RosterColumn column = header.columns.get(rowColumns[i]);
+            String value = rowValues[i];
+            if (column == null || column.patientField < 0 || value.isEmpty()) {
+                continue;
+            }
+            if (PATIENT_LABEL_MATCHER.match(value) != 0) {
+                labels++;
+            } else {
+                values++;
+            }
+        }
+        if (labels == 0 && values >= ROSTER_MIN_LABELS) {
+            rosterColumns = header.columns;
+            log.debug(() -> "Hoja en formato listado: encabezado en fila " + header.row
+                + " con " + header.columns.size() + " columnas reconocidas");
+            addRosterPatient();
+            return;
+        }
+        replayFormRow(header);
+        if (stopReason == null) {
+            processFormRow();
+        }
+    }
+
+    /**
+     * Procesa como formulario la fila guardada del encabezado descartado
+     */
+    private void replayFormRow(PendingHeader header) {
+        int row = currentRow;
+        int[] columns = rowColumns;
+        String[] values = rowValues;
+        byte[] types = rowTypes;
+        long[] numbers = rowNumbers;
+        int size = rowSize;
+
+        currentRow = header.row;
+        rowColumns = header.rowColumns;
+        rowValues = header.rowValues;
+        rowTypes = header.rowTypes;
+        rowNumbers = header.rowNumbers;
+        rowSize = header.rowColumns.length;
+        processFormRow();
+
+        currentRow = row;
+        rowColumns = columns;
+        rowValues = values;
+        rowTypes = types;
+        rowNumbers = numbers;
+        rowSize = size;
+    }
+
+    /**
+     * Texto de encabezado: etiqueta del paciente, responsable legal o médico tratante
+     */
+    private static boolean isHeaderText(String text) {
+        return text.contains("R.1") || text.contains("R.2") || isTherapistColumn(text)
+            || PATIENT_LABEL_MATCHER.match(text) != 0;
+    }
+
+    /**
+     * Convierte la fila actual de un listado en un paciente
+     */
+    private void addRosterPatient() {
+        FieldValues values = new FieldValues(PATIENT_LABELS.length);
+        LegalGuardian[] guardians = new LegalGuardian[2];
+        String therapistName = null;
+        boolean hasData = false;
+
+        for (int i = 0; i < rowSize; i++) {
+            RosterColumn column = rosterColumns.get(rowColumns[i]);
+            String value = rowValues[i];
+            if (column == null || value.isEmpty()) {
+                continue;
+            }
+            hasData = true;
+            if (column.patientField >= 0) {
+                values.set(column.patientField, value, rowTypes[i], rowNumbers[i]);
+            } else if (column.guardianSlot >= 0) {
+                if (guardians[column.guardianSlot] == null) {
+                    guardians[column.guardianSlot] = new LegalGuardian();
+                }
+                FormSectionScanner.applyGuardianField(guardians[column.guardianSlot], column.header, value);
+            } else if (column.therapist) {
+                therapistName = value;
+            }
+        }
+        if (!hasData) {
+            return;
+        }
+
+        PatientProfile patient = newPatientProfile(values);
+        for (LegalGuardian guardian : guardians) {
+            if (guardian != null && guardian.getFullName() != null && !guardian.getFullName().trim().isEmpty()) {
+                patient.addLegalGuardian(guardian);
+            }
+        }
+        if (therapistName != null) {
+            patient.setReferredTherapist(new ReferredTherapist(therapistName));
+        }
+        rosterPatients.add(patient);
+    }
+
+    /**
+     * Procesa una celda de la fila actual; la fila completa está disponible,
+     * por lo que el valor de la celda adyacente ya se conoce.
+     */
+    private void processCell(int index) {
+        int column = rowColumns[index];
+        String value = rowValues[index];
+        if (value.isEmpty()) {
+            return;
+        }
+        String adjacent = adjacentValue(index);
+
+        // Etiquetas del paciente: primera etiqueta con celda de valor a la derecha
+        if (unresolvedLabels > 0 && adjacent != null) {
+            for (long found = PATIENT_LABEL_MATCHER.match(value); found != 0; found &= found - 1) {
+                int i = Long.numberOfTrailingZeros(found);
+                if (!labelResolved[i]) {
+                    labelValues.set(i, adjacent, rowTypes[index + 1], rowNumbers[index + 1]);
+                    labelResolved[i] = true;
+                    unresolvedLabels--;
+                }
+            }
+        }
+
+        // Responsables legales R.1 y R.2 y médico tratante principal
+        sections.accept(currentRow, column, value, adjacent);
+    }
+
+    /**
+     * Devuelve el valor de la celda inmediatamente a la derecha, si existe (puede ser vacío)
+     */
+    private String adjacentValue(int index) {
+        int next = index + 1;
+        if (next < rowSize && rowColumns[next] == rowColumns[index] + 1) {
+            return rowValues[next];
+        }
+        return null;
+    }
+
+    /**
+     * Pacientes de la hoja: uno por fila en un listado, o el del formulario
+     */
+    List<PatientProfile> toPatientProfiles() {
+        if (rosterColumns != null) {
+            return new ArrayList<>(rosterPatients);
+        }
+        return List.of(toPatientProfile());
+    }
+
+    /**
+     * Indica si la hoja aportó algún dato de paciente (las hojas vacías o de
+     * instrucciones se omiten en el modo de múltiples pacientes)
+     */
+    boolean hasPatientData() {
+        if (rosterColumns != null) {
+            return !rosterPatients.isEmpty();
+        }
+        return unresolvedLabels < PATIENT_LABELS.length || sections.hasSections();
+    }
+
+    /**
+     * Construye el PatientProfile con los valores recolectados durante la lectura
+     */
+    PatientProfile toPatientProfile() {
+        PatientProfile patient = newPatientProfile(labelValues);
+
+        for (LegalGuardian guardian : sections.getGuardians()) {
+            patient.addLegalGuardian(guardian);
+        }
+
+        String therapistName = sections.getTherapistName();
+        if (therapistName != null) {
+            patient.setReferredTherapist(new ReferredTherapist(therapistName));
+        }
+        return patient;
+    }
+
+    /**
+     * Crea el PatientProfile a partir de los valores por etiqueta (orden de PATIENT_LABELS)
+     */
+    private static PatientProfile newPatientProfile(FieldValues labelValues) {
+        PatientProfile patient = new PatientProfile();
+        ExcelPatientParser.FIELD_MAPPING.apply(labelValues, patient);
+
+        if (patient.getBirthDate() != null) {
+            patient.setAgeCurrent(LocalDate.now().getYear() - patient.getBirthDate().getYear());
+        }
+        return patient;
+    }
+
+    int getRowsRead() {
+        return rowsRead;
+    }
+
+    int getCellsRead() {
+        return cellsRead;
+    }
+
+    private static boolean isTherapistColumn(String header) {
+        return THERAPIST_COLUMN.match(header) != 0;
+    }
+
+    /**
+     * Convierte la referencia A1 en índice de columna (base 0)
+     */
+    private static int columnIndexOf(String cellReference, int fallback) {
+        if (cellReference == null) {
+            return fallback;
+        }
+        int column = 0;
+        for (int i = 0; i < cellReference.length(); i++) {
+            char c = cellReference.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    private enum StopReason {
+        RESOLVED,
+        ROW_BUDGET
+    }
+
+    /**
+     * Señal para cortar el parser SAX (o el recorrido del DOM) cuando el extractor
+     * ya no necesita más filas; no lleva stack trace porque no es un error
+     */
+    static final class StopReading extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        static final StopReading INSTANCE = new StopReading();
+
+        private StopReading() {
+            super("Sheet extraction finished", null, false, false);
+        }
+    }
+
+    /**
+     * Encabezado de listado aún sin confirmar, con su fila para procesarla como
+     * formulario si resulta no serlo
+     */
+    private static final class PendingHeader {
+        final int row;
+        final Map<Integer, RosterColumn> columns;
+        final int[] rowColumns;
+        final String[] rowValues;
+        final byte[] rowTypes;
+        final long[] rowNumbers;
+
+        PendingHeader(int row, Map<Integer, RosterColumn> columns, int[] rowColumns, String[] rowValues,
+                      byte[] rowTypes, long[] rowNumbers) {
+            this.row = row;
+            this.columns = columns;
+            this.rowColumns = rowColumns;
+            this.rowValues = rowValues;
+            this.rowTypes = rowTypes;
+            this.rowNumbers = rowNumbers;
+        }
+    }
+
+    /**
+     * Campo asociado a una columna del encabezado de un listado
+     */
+    private static final class RosterColumn {
+        private int patientField = -1;
+        private int guardianSlot = -1;
+        private String header;
+        private boolean therapist;
+
+        static RosterColumn patientField(int labelIndex) {
+            RosterColumn column = new RosterColumn();
+            column.patientField = labelIndex;
+            return column;
+        }
+
+        static RosterColumn guardian(String header, int slot) {
+            RosterColumn column = new RosterColumn();
+            column.guardianSlot = slot;
+            column.header = header;
+            return column;
+        }
+
+        static RosterColumn therapist() {
+            RosterColumn column = new RosterColumn();
+            column.therapist = true;
+            return column;
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.soulware.platform.docexcelparser.infrastructure.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Lectura del directorio central de un archivo ZIP en memoria.
+ * Localiza el registro End Of Central Directory (EOCD) desde el final del archivo
+ * y lee la tabla de entradas sin descomprimir nada, de modo que se puede
+ * inspeccionar el contenido de un .xlsx (nombres de partes, tamaños) a costo
+ * proporcional al número de entradas y no al tamaño del archivo.
+ */
+final class ZipCentralDirectory {
+
+    static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    static final int EOCD_SIGNATURE = 0x06054b50;
+    static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+
+    private static final int EOCD_MIN_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private final Map<String, Entry> entries;
+    private final int eocdOffset;
+    private final int declaredEntries;
+
+    private ZipCentralDirectory(Map<String, Entry> entries, int eocdOffset, int declaredEntries) {
+        this.entries = entries;
+        this.eocdOffset = eocdOffset;
+        this.declaredEntries = declaredEntries;
+    }
+
+    /**
+     * Lee el directorio central del archivo
+     * @param bytes Contenido completo del archivo ZIP
+     * @return Directorio leído o null si no hay EOCD o la tabla de entradas está incompleta
+     */
+    static ZipCentralDirectory read(byte[] bytes) {
+        int eocd = findEocd(bytes);
+        if (eocd < 0) {
+            return null;
+        }
+        int totalEntries = readShort(bytes, eocd + 10);
+        long directorySize = readInt(bytes, eocd + 12) & 0xFFFFFFFFL;
+        long directoryOffset = readInt(bytes, eocd + 16) & 0xFFFFFFFFL;
+        if (directoryOffset + directorySize > eocd) {
+            return null;
+        }
+
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        int pos = (int) directoryOffset;
+        for (int i = 0; i < totalEntries; i++) {
+            if (pos + CENTRAL_HEADER_SIZE > eocd || readInt(bytes, pos) != CENTRAL_HEADER_SIGNATURE) {
+                return null;
+            }
+            int flags = readShort(bytes, pos + 8);
+            int method = readShort(bytes, pos + 10);
+            long compressedSize = readInt(bytes, pos + 20) & 0xFFFFFFFFL;
+            long uncompressedSize = readInt(bytes, pos + 24) & 0xFFFFFFFFL;
+            int nameLength = readShort(bytes, pos + 28);
+            int extraLength = readShort(bytes, pos + 30);
+            int commentLength = readShort(bytes, pos + 32);
+            long localHeaderOffset = readInt(bytes, pos + 42) & 0xFFFFFFFFL;
+            if (pos + CENTRAL_HEADER_SIZE + nameLength > eocd) {
+                return null;
+            }
+            String name = new String(bytes, pos + CENTRAL_HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+            entries.put(name, new Entry(name, flags, method, compressedSize, uncompressedSize, localHeaderOffset));
+            pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return new ZipCentralDirectory(Collections.unmodifiableMap(entries), eocd, totalEntries);
+    }
+
+    /**
+     * Reconstruye el directorio de un ZIP dañado (truncado o con el directorio
+     * central ilegible) recorriendo sus cabeceras locales desde el inicio.
+     *
+     * Las entradas con tamaños en la cabecera solo se validan contra los límites
+     * del archivo, sin descomprimirlas: las partes que no se usan no cuestan nada
+     * y una parte corrupta falla recién al leerla. Las que usan data descriptor
+     * (tamaños al final de los datos) se descomprimen una vez para ubicar su fin,
+     * descontando esos bytes del presupuesto. Las entradas incompletas, cifradas o
+     * con otro método de compresión se omiten y la búsqueda continúa en la
+     * siguiente firma de cabecera local.
+     * @param bytes Contenido del archivo
+     * @param budget Presupuesto del parsing
+     * @return Directorio con las entradas recuperables (puede estar vacío)
+     */
+    static ZipCentralDirectory scanLocalHeaders(byte[] bytes, ParseBudget budget) {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        int pos = 0;
+        while (pos >= 0 && pos + LOCAL_HEADER_SIZE <= bytes.length) {
+            int signature = readInt(bytes, pos);
+            if (signature == CENTRAL_HEADER_SIGNATURE || signature == EOCD_SIGNATURE) {
+                break;
+            }
+            if (signature != LOCAL_HEADER_SIGNATURE) {
+                pos = indexOfLocalHeader(bytes, pos + 1);
+                continue;
+            }
+            int flags = readShort(bytes, pos + 6);
+            int method = readShort(bytes, pos + 8);
+            long compressedSize = readInt(bytes, pos + 18) & 0xFFFFFFFFL;
+            long uncompressedSize = readInt(bytes, pos + 22) & 0xFFFFFFFFL;
+            int nameLength = readShort(bytes, pos + 26);
+            long dataStart = (long) pos + LOCAL_HEADER_SIZE + nameLength + readShort(bytes, pos + 28);
+            if (dataStart > bytes.length) {
+                break;
+            }
+            String name = new String(bytes, pos + LOCAL_HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+
+            long dataEnd = -1;
+            boolean readable = (flags & 1) == 0 && (method == METHOD_STORED || method == METHOD_DEFLATED);
+            if ((flags & FLAG_DATA_DESCRIPTOR) == 0) {
+                dataEnd = dataStart + compressedSize;
+            } else if (readable && method == METHOD_DEFLATED) {
+                long[] sizes = inflatedLength(bytes, (int) dataStart, budget);
+                if (sizes != null) {
+                    compressedSize = sizes[0];
+                    uncompressedSize = sizes[1];
+                    dataEnd = dataStart + compressedSize;
+                }
+            }
+            if (dataEnd < 0 || dataEnd > bytes.length) {
+                // Datos incompletos o de largo desconocido: se busca la siguiente cabecera
+                pos = indexOfLocalHeader(bytes, pos + 1);
+                continue;
+            }
+            if (readable && !name.endsWith("/")) {
+                entries.put(name, new Entry(name, flags, method, compressedSize, uncompressedSize, pos));
+            }
+            pos = (int) dataEnd;
+            if ((flags & FLAG_DATA_DESCRIPTOR) != 0) {
+                pos += readInt(bytes, pos) == DATA_DESCRIPTOR_SIGNATURE ? 16 : 12;
+            }
+        }
+        return new ZipCentralDirectory(Collections.unmodifiableMap(entries), bytes.length, entries.size());
+    }
+
+    /**
+     * Descomprime datos deflate sin guardar el resultado para conocer su largo
+     * @return {bytes comprimidos, bytes descomprimidos} o null si los datos están truncados o corruptos
+     */
+    private static long[] inflatedLength(byte[] bytes, int dataStart, ParseBudget budget) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(bytes, dataStart, bytes.length - dataStart);
+            byte[] scratch = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(scratch);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return null;
+                }
+                budget.addInflatedBytes(n);
+            }
+            return new long[] {inflater.getBytesRead(), inflater.getBytesWritten()};
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int indexOfLocalHeader(byte[] bytes, int from) {
+        for (int pos = from; pos + 4 <= bytes.length; pos++) {
+            if (bytes[pos] == 0x50 && readInt(bytes, pos) == LOCAL_HEADER_SIGNATURE) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Busca la firma EOCD recorriendo hacia atrás el área donde puede estar
+     * (22 bytes más un comentario de hasta 64 KB)
+     * @return Posición del EOCD o -1 si el archivo está truncado
+     */
+    static int findEocd(byte[] bytes) {
+        int start = bytes.length - EOCD_MIN_SIZE;
+        int limit = Math.max(0, start - MAX_COMMENT_SIZE);
+        for (int pos = start; pos >= limit; pos--) {
+            if (readInt(bytes, pos) == EOCD_SIGNATURE) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    Entry find(String name) {
+        return entries.get(name);
+    }
+
+    List<Entry> entries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    int eocdOffset() {
+        return eocdOffset;
+    }
+
+    /**
+     * Número de entradas que declara el EOCD; difiere de size() si hay nombres repetidos
+     */
+    int declaredEntries() {
+        return declaredEntries;
+    }
+
+    /**
+     * Comprueba que la cabecera local de una entrada esté dentro del archivo, antes
+     * del directorio central, y que sus datos comprimidos quepan hasta él
+     */
+    boolean hasValidLocalHeader(byte[] bytes, Entry entry) {
+        long local = entry.localHeaderOffset;
+        if (local + LOCAL_HEADER_SIZE > eocdOffset || readInt(bytes, (int) local) != LOCAL_HEADER_SIGNATURE) {
+            return false;
+        }
+        long dataStart = local + LOCAL_HEADER_SIZE + readShort(bytes, (int) local + 26) + readShort(bytes, (int) local + 28);
+        return dataStart + entry.compressedSize <= eocdOffset;
+    }
+
+    /**
+     * Descomprime una sola entrada leyendo su cabecera local
+     * @param bytes Contenido completo del archivo ZIP
+     * @param entry Entrada del directorio central
+     * @return Contenido descomprimido de la entrada
+     * @throws DataFormatException Si los datos deflate están corruptos
+     */
+    static byte[] readEntry(byte[] bytes, Entry entry) throws DataFormatException {
+        int dataStart = dataStart(bytes, entry);
+
+        if (entry.method == 0) {
+            byte[] stored = new byte[(int) entry.compressedSize];
+            System.arraycopy(bytes, dataStart, stored, 0, stored.length);
+            return stored;
+        }
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(bytes, dataStart, (int) entry.compressedSize);
+            byte[] inflated = new byte[(int) entry.uncompressedSize];
+            int total = 0;
+            while (total < inflated.length && !inflater.finished()) {
+                int n = inflater.inflate(inflated, total, inflated.length - total);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                total += n;
+            }
+            if (total != inflated.length) {
+                throw new DataFormatException("Inflated size mismatch for " + entry.name);
+            }
+            return inflated;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Abre una entrada como stream que descomprime a medida que se lee, sin
+     * materializar el contenido completo (para partes grandes como las hojas)
+     * @param bytes Contenido completo del archivo ZIP
+     * @param entry Entrada del directorio central
+     * @return Stream con el contenido descomprimido de la entrada
+     * @throws DataFormatException Si la cabecera local es inválida o los datos están truncados
+     */
+    static InputStream openEntry(byte[] bytes, Entry entry) throws DataFormatException {
+        int dataStart = dataStart(bytes, entry);
+        InputStream raw = new ByteArrayInputStream(bytes, dataStart, (int) entry.compressedSize);
+        if (entry.method == 0) {
+            return raw;
+        }
+        Inflater inflater = new Inflater(true);
+        return new InflaterInputStream(raw, inflater, 8192) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    inflater.end();
+                }
+                super.close();
+            }
+        };
+    }
+
+    private static int dataStart(byte[] bytes, Entry entry) throws DataFormatException {
+        int local = (int) entry.localHeaderOffset;
+        if (local + LOCAL_HEADER_SIZE > bytes.length || readInt(bytes, local) != LOCAL_HEADER_SIGNATURE) {
+            throw new DataFormatException("Invalid local header for " + entry.name);
+        }
+        int dataStart = local + LOCAL_HEADER_SIZE + readShort(bytes, local + 26) + readShort(bytes, local + 28);
+        if (dataStart + entry.compressedSize > bytes.length) {
+            throw new DataFormatException("Truncated data for " + entry.name);
+        }
+        return dataStart;
+    }
+
+    static int readInt(byte[] bytes, int pos) {
+        if (pos < 0 || pos + 4 > bytes.length) {
+            return 0;
+        }
+        return (bytes[pos] & 0xFF)
+            | (bytes[pos + 1] & 0xFF) << 8
+            | (bytes[pos + 2] & 0xFF) << 16
+            | (bytes[pos + 3] & 0xFF) << 24;
+    }
+
+    static int readShort(byte[] bytes, int pos) {
+        if (pos < 0 || pos + 2 > bytes.length) {
+            return 0;
+        }
+        return (bytes[pos] & 0xFF) | (bytes[pos + 1] & 0xFF) << 8;
+    }
+
+    /**
+     * Entrada del directorio central
+     */
+    static final class Entry {
+        final String name;
+        final int flags;
+        final int method;
+        final long compressedSize;
+        final long uncompressedSize;
+        final long localHeaderOffset;
+
+        Entry(String name, int flags, int method, long compressedSize, long uncompressedSize, long localHeaderOffset) {
+            this.name = name;
+            this.flags = flags;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.uncompressedSize = uncompressedSize;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        /**
+         * Bit 0 de los flags de propósito general: datos cifrados
+         */
+        boolean isEncrypted() {
+            return (flags & 1) != 0;
+        }
+    }
+}
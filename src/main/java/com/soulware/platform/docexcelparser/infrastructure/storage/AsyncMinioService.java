@@ -0,0 +1,395 @@
+package com.soulware.platform.docexcelparser.infrastructure.storage;
+
+import com.soulware.platform.docexcelparser.domain.service.IFileStorageService;
+import com.soulware.platform.docexcelparser.infrastructure.config.ApplicationConfig;
+import jakarta.enterprise.inject.Alternative;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Descargas con S3AsyncClient y descarga anticipada de los archivos en cola.
+ *
+ * Las descargas no ocupan un hilo durante la transferencia: corren en el cliente
+ * asíncrono y, como mucho, S3_ASYNC_DOWNLOADS a la vez. prefetch() empieza la
+ * descarga de un archivo apenas llega su mensaje, mientras se parsean los
+ * anteriores; el fetch posterior toma esa descarga en curso o ya terminada en
+ * lugar de pedir el archivo de nuevo. Si no hay cupo la descarga anticipada se
+ * omite y el archivo se descarga al pedirlo. Las descargas anticipadas que nadie
+ * pide se descartan tras PREFETCH_TTL_MILLIS. El cuerpo se recibe con
+ * BoundedBytesTransformer: un archivo que anuncia más de EXCEL_MAX_DECODED_BYTES
+ * no se descarga en memoria y se entrega con el GET síncrono de MinioService,
+ * cuyo tamaño basta al parser para rechazarlo. HEAD, DELETE y los GET
+ * condicionales siguen en MinioService.
+ */
+@Alternative
+public class AsyncMinioService implements IFileStorageService {
+
+    private static final Logger logger = Logger.getLogger(AsyncMinioService.class.getName());
+
+    /** Tiempo que se conserva una descarga anticipada que nadie pidió */
+    static final long PREFETCH_TTL_MILLIS = 5 * 60 * 1000;
+
+    private final MinioService delegate;
+    private final S3AsyncClient s3AsyncClient;
+    private final String bucketName;
+    private final int maxDownloads;
+    private final long maxBodyBytes;
+    private final Semaphore downloadPermits;
+    private final Map<String, Prefetch> prefetched = new ConcurrentHashMap<>();
+
+    private final AtomicLong prefetchesStarted = new AtomicLong();
+    private final AtomicLong prefetchesUsed = new AtomicLong();
+    private final AtomicLong prefetchesSkipped = new AtomicLong();
+    private final AtomicLong prefetchesExpired = new AtomicLong();
+
+    public AsyncMinioService() {
+        this(new MinioService(), new ApplicationConfig());
+    }
+
+    public AsyncMinioService(MinioService delegate, ApplicationConfig config) {
+        this.delegate = delegate;
+        this.bucketName = config.getS3Bucket();
+        this.maxDownloads = Math.max(1, config.getS3AsyncDownloads());
+        this.downloadPermits = new Semaphore(maxDownloads);
+        this.maxBodyBytes = config.getExcelMaxDecodedBytes();
+        this.s3AsyncClient = S3AsyncClient.builder()
+            .endpointOverride(URI.create(config.getS3Endpoint()))
+            .region(Region.of(config.getS3Region()))
+            .credentialsProvider(StaticCredentialsProvider.create(
+                AwsBasicCredentials.create(config.getS3AccessKey(), config.getS3SecretKey())))
+            .serviceConfiguration(S3Configuration.builder()
+                .pathStyleAccessEnabled(true)
+                .build())
+            .build();
+        logger.info("🗂️  Async S3 downloads enabled: " + maxDownloads + " in flight");
+    }
+
+    /**
+     * Usa el cliente asíncrono si S3_ASYNC_DOWNLOADS es mayor que 0
+     * @param delegate Servicio síncrono para las demás operaciones
+     * @param config Configuración de la aplicación
+     * @return El servicio asíncrono, o el mismo delegate si está desactivado
+     */
+    public static IFileStorageService wrap(MinioService delegate, ApplicationConfig config) {
+        return config.getS3AsyncDownloads() > 0 ? new AsyncMinioService(delegate, config) : delegate;
+    }
+
+    /**
+     * Empieza a descargar el archivo si hay cupo; no bloquea
+     * @param fileKey Clave del archivo
+     */
+    @Override
+    public void prefetch(String fileKey) {
+        expirePrefetches();
+        if (prefetched.size() >= maxDownloads || prefetched.containsKey(fileKey) || !downloadPermits.tryAcquire()) {
+            prefetchesSkipped.incrementAndGet();
+            return;
+        }
+        CompletableFuture<BoundedBytesTransformer.Body> download = new CompletableFuture<>();
+        if (prefetched.putIfAbsent(fileKey, new Prefetch(download)) != null) {
+            downloadPermits.release();
+            prefetchesSkipped.incrementAndGet();
+            return;
+        }
+        prefetchesStarted.incrementAndGet();
+        logger.fine("📥 Prefetching file: " + fileKey);
+        start(fileKey, download);
+    }
+
+    /**
+     * Obtiene el archivo: toma la descarga anticipada si existe o la inicia
+     * (esperando cupo) y espera a que termine
+     * @param fileKey Clave del archivo
+     * @return Stream del contenido ya descargado, o null si no existe
+     * @throws IOException Si la descarga falla
+     */
+    @Override
+    public FileStream fetch(String fileKey) throws IOException {
+        BoundedBytesTransformer.Body body = await(fileKey, download(fileKey));
+        if (body != null && body.isTooLarge()) {
+            // El GET síncrono entrega el tamaño y el parser lo rechaza sin leer el cuerpo
+            logTooLarge(fileKey, body);
+            return delegate.fetch(fileKey);
+        }
+        return body != null ? toFileStream(body) : null;
+    }
+
+    /**
+     * GET condicional; si hay una descarga anticipada del archivo se usa esa
+     * respuesta en lugar de hacer otra petición
+     */
+    @Override
+    public FileStream fetchIfNoneMatch(String fileKey, String etag) throws IOException {
+        Prefetch prefetch = prefetched.remove(fileKey);
+        if (prefetch == null) {
+            return delegate.fetchIfNoneMatch(fileKey, etag);
+        }
+        prefetchesUsed.incrementAndGet();
+        BoundedBytesTransformer.Body body = await(fileKey, prefetch.download);
+        if (body == null) {
+            return null;
+        }
+        if (etag.equals(body.response().eTag())) {
+            return FileStream.notModified(etag);
+        }
+        if (body.isTooLarge()) {
+            logTooLarge(fileKey, body);
+            return delegate.fetchIfNoneMatch(fileKey, etag);
+        }
+        return toFileStream(body);
+    }
+
+    @Override
+    public ByteRange readRange(String fileKey, long offset, int length, String ifMatch) throws IOException {
+        return delegate.readRange(fileKey, offset, length, ifMatch);
+    }
+
+    @Override
+    public FileStream openStream(String fileKey) throws IOException {
+        FileStream stream = fetch(fileKey);
+        if (stream == null) {
+            throw new FileNotFoundException("File not found: " + fileKey);
+        }
+        return stream;
+    }
+
+    @Override
+    public byte[] downloadFile(String fileKey) throws IOException {
+        BoundedBytesTransformer.Body body = await(fileKey, download(fileKey));
+        if (body == null) {
+            throw new FileNotFoundException("File not found: " + fileKey);
+        }
+        if (body.isTooLarge()) {
+            logTooLarge(fileKey, body);
+            return delegate.downloadFile(fileKey);
+        }
+        return body.content();
+    }
+
+    /**
+     * Escribe el contenido ya descargado en el canal, sin copias intermedias
+     */
+    @Override
+    public long readInto(String fileKey, WritableByteChannel target) throws IOException {
+        BoundedBytesTransformer.Body body = await(fileKey, download(fileKey));
+        if (body == null) {
+            throw new FileNotFoundException("File not found: " + fileKey);
+        }
+        if (body.isTooLarge()) {
+            logTooLarge(fileKey, body);
+            return delegate.readInto(fileKey, target);
+        }
+        ByteBuffer content = ByteBuffer.wrap(body.content());
+        long total = content.remaining();
+        while (content.hasRemaining()) {
+            target.write(content);
+        }
+        return total;
+    }
+
+    @Override
+    public boolean fileExists(String fileKey) {
+        return delegate.fileExists(fileKey);
+    }
+
+    @Override
+    public FileInfo getFileInfo(String fileKey) {
+        return delegate.getFileInfo(fileKey);
+    }
+
+    @Override
+    public void deleteFile(String fileKey) throws IOException {
+        discard(fileKey);
+        delegate.deleteFile(fileKey);
+    }
+
+    @Override
+    public void deleteFileLater(String fileKey) {
+        discard(fileKey);
+        delegate.deleteFileLater(fileKey);
+    }
+
+    /**
+     * Descarga anticipada del archivo o, si no hay, una nueva (espera cupo)
+     */
+    private CompletableFuture<BoundedBytesTransformer.Body> download(String fileKey) throws IOException {
+        Prefetch prefetch = prefetched.remove(fileKey);
+        if (prefetch != null) {
+            prefetchesUsed.incrementAndGet();
+            return prefetch.download;
+        }
+        try {
+            downloadPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting to download " + fileKey);
+        }
+        CompletableFuture<BoundedBytesTransformer.Body> download = new CompletableFuture<>();
+        start(fileKey, download);
+        return download;
+    }
+
+    /**
+     * Inicia el GET asíncrono; el cupo ya tomado se libera al terminar
+     */
+    private void start(String fileKey, CompletableFuture<BoundedBytesTransformer.Body> target) {
+        try {
+            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(fileKey)
+                .build();
+            s3AsyncClient.getObject(getObjectRequest, new BoundedBytesTransformer(maxBodyBytes))
+                .whenComplete((body, error) -> {
+                    downloadPermits.release();
+                    if (error != null) {
+                        target.completeExceptionally(error);
+                    } else {
+                        target.complete(body);
+                    }
+                });
+        } catch (RuntimeException e) {
+            downloadPermits.release();
+            target.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Espera la descarga
+     * @return Contenido, o null si el archivo no existe
+     */
+    private static BoundedBytesTransformer.Body await(String fileKey,
+            CompletableFuture<BoundedBytesTransformer.Body> download) throws IOException {
+        try {
+            return download.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted downloading " + fileKey);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause.getCause() != null && !(cause instanceof NoSuchKeyException)) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof NoSuchKeyException) {
+                logger.info("❌ File not found: " + fileKey);
+                return null;
+            }
+            logger.severe("❌ Error downloading file " + fileKey + ": " + e.getCause().getMessage());
+            throw new IOException("Failed to download file " + fileKey + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static FileStream toFileStream(BoundedBytesTransformer.Body body) {
+        GetObjectResponse metadata = body.response();
+        // El parser toma el arreglo sin copiarlo (ver FileStream.getBufferedContent)
+        return FileStream.ofBytes(body.content(),
+            metadata.contentType() != null ? metadata.contentType() : "application/octet-stream",
+            metadata.lastModified() != null ? metadata.lastModified().toString() : "",
+            metadata.eTag());
+    }
+
+    private static void logTooLarge(String fileKey, BoundedBytesTransformer.Body body) {
+        logger.info("📏 File " + fileKey + " exceeds the in-memory limit (" + body.size()
+            + " bytes), falling back to a streamed download");
+    }
+
+    private void discard(String fileKey) {
+        Prefetch prefetch = prefetched.remove(fileKey);
+        if (prefetch != null) {
+            prefetch.download.cancel(false);
+        }
+    }
+
+    private void expirePrefetches() {
+        long now = System.nanoTime();
+        Iterator<Prefetch> pending = prefetched.values().iterator();
+        while (pending.hasNext()) {
+            Prefetch prefetch = pending.next();
+            if (now - prefetch.startedAt > TimeUnit.MILLISECONDS.toNanos(PREFETCH_TTL_MILLIS)) {
+                pending.remove();
+                prefetch.download.cancel(false);
+                prefetchesExpired.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Descargas anticipadas iniciadas
+     */
+    public long getPrefetchesStarted() {
+        return prefetchesStarted.get();
+    }
+
+    /**
+     * Descargas anticipadas que luego se usaron en un fetch
+     */
+    public long getPrefetchesUsed() {
+        return prefetchesUsed.get();
+    }
+
+    /**
+     * Descargas anticipadas omitidas por falta de cupo o porque ya estaban en curso
+     */
+    public long getPrefetchesSkipped() {
+        return prefetchesSkipped.get();
+    }
+
+    public long getPrefetchesExpired() {
+        return prefetchesExpired.get();
+    }
+
+    /**
+     * Resumen de los contadores para logs
+     */
+    public String summary() {
+        return "prefetchesStarted=" + getPrefetchesStarted() + ", prefetchesUsed=" + getPrefetchesUsed()
+            + ", prefetchesSkipped=" + getPrefetchesSkipped() + ", prefetchesExpired=" + getPrefetchesExpired();
+    }
+
+    /**
+     * Cierra el cliente asíncrono y descarta las descargas anticipadas (MinioService se cierra aparte)
+     */
+    public void close() {
+        try {
+            prefetched.values().forEach(prefetch -> prefetch.download.cancel(false));
+            prefetched.clear();
+            s3AsyncClient.close();
+            logger.info("✅ Async S3 client closed");
+        } catch (Exception e) {
+            logger.severe("❌ Error closing async S3 client: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Descarga anticipada en curso o terminada
+     */
+    private static final class Prefetch {
+        final CompletableFuture<BoundedBytesTransformer.Body> download;
+        final long startedAt = System.nanoTime();
+
+        Prefetch(CompletableFuture<BoundedBytesTransformer.Body> download) {
+            this.download = download;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.soulware.platform.docexcelparser.infrastructure.storage;
+
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Eliminación de objetos en segundo plano, agrupada con DeleteObjects.
+ *
+ * Quien procesa un archivo solo encola su clave; un hilo daemon espera hasta
+ * LINGER_MILLIS a que lleguen más y las elimina con una sola petición de hasta
+ * MAX_BATCH claves, en lugar de un DELETE síncrono por archivo. Los errores se
+ * registran y el objeto queda en el bucket. Si la cola está llena o el
+ * eliminador ya se cerró, la clave se elimina en el hilo que la envía.
+ */
+final class BatchingDeleter {
+
+    private static final Logger logger = Logger.getLogger(BatchingDeleter.class.getName());
+
+    /** Máximo de claves que acepta DeleteObjects en una petición */
+    static final int MAX_BATCH = 1000;
+    /** Espera máxima por más claves antes de enviar un lote */
+    static final long LINGER_MILLIS = 500;
+
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private final S3Client s3Client;
+    private final String bucketName;
+    private final BlockingQueue<String> pending = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread worker;
+    private volatile boolean closed;
+
+    BatchingDeleter(S3Client s3Client, String bucketName) {
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+        this.worker = new Thread(this::run, "storage-batch-deleter");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Encola la clave para el próximo lote
+     */
+    void submit(String key) {
+        if (closed || !pending.offer(key)) {
+            deleteBatch(List.of(key));
+        }
+    }
+
+    /**
+     * Detiene el hilo y elimina lo que quede pendiente
+     */
+    void close() {
+        // Sin interrumpir: el lote en curso termina su petición
+        closed = true;
+        try {
+            worker.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void run() {
+        List<String> batch = new ArrayList<>(MAX_BATCH);
+        while (!closed) {
+            try {
+                String first = pending.poll(LINGER_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LINGER_MILLIS);
+                while (batch.size() < MAX_BATCH) {
+                    String key = pending.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (key == null) {
+                        break;
+                    }
+                    batch.add(key);
+                    pending.drainTo(batch, MAX_BATCH - batch.size());
+                }
+                deleteBatch(batch);
+            } catch (InterruptedException e) {
+                // Las claves ya tomadas vuelven a la cola para el flush final
+                Thread.currentThread().interrupt();
+                pending.addAll(batch);
+                return;
+            } catch (RuntimeException e) {
+                // Un lote fallido no debe detener el hilo
+                logger.warning("⚠️  Batch delete error: " + e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    private void flush() {
+        List<String> batch = new ArrayList<>(MAX_BATCH);
+        while (pending.drainTo(batch, MAX_BATCH) > 0) {
+            deleteBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void deleteBatch(List<String> keys) {
+        List<ObjectIdentifier> objects = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            objects.add(ObjectIdentifier.builder().key(key).build());
+        }
+        try {
+            DeleteObjectsResponse response = s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                .bucket(bucketName)
+                .delete(Delete.builder().objects(objects).quiet(true).build())
+                .build());
+            for (S3Error error : response.errors()) {
+                logger.warning("⚠️  Could not delete " + error.key() + ": " + error.code() + " " + error.message());
+            }
+            logger.fine("🗑️  Batch deleted: " + (keys.size() - response.errors().size()) + " of " + keys.size() + " files");
+        } catch (Exception e) {
+            logger.warning("⚠️  Batch delete of " + keys.size() + " files failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.soulware.platform.docexcelparser.infrastructure.storage;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Recepción de un GET asíncrono en un arreglo acotado.
+ *
+ * Con el Content-Length conocido reserva el arreglo exacto y copia ahí cada
+ * bloque que llega, sin el buffer intermedio de AsyncResponseTransformer.toBytes.
+ * Si el tamaño anunciado (o lo recibido, cuando no se anuncia) supera maxBytes
+ * cancela el cuerpo sin leerlo y devuelve solo la respuesta, marcada como
+ * demasiado grande.
+ */
+final class BoundedBytesTransformer implements AsyncResponseTransformer<GetObjectResponse, BoundedBytesTransformer.Body> {
+
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final long maxBytes;
+    private volatile CompletableFuture<Body> future;
+    private volatile GetObjectResponse response;
+
+    /**
+     * @param maxBytes Tamaño máximo a recibir en memoria (0 = sin límite)
+     */
+    BoundedBytesTransformer(long maxBytes) {
+        this.maxBytes = maxBytes > 0 ? Math.min(maxBytes, MAX_ARRAY_SIZE) : MAX_ARRAY_SIZE;
+    }
+
+    @Override
+    public CompletableFuture<Body> prepare() {
+        future = new CompletableFuture<>();
+        return future;
+    }
+
+    @Override
+    public void onResponse(GetObjectResponse response) {
+        this.response = response;
+    }
+
+    @Override
+    public void onStream(SdkPublisher<ByteBuffer> publisher) {
+        publisher.subscribe(new Collector(response, future));
+    }
+
+    @Override
+    public void exceptionOccurred(Throwable error) {
+        future.completeExceptionally(error);
+    }
+
+    /**
+     * Copia los bloques del cuerpo al arreglo y completa el resultado
+     */
+    private final class Collector implements Subscriber<ByteBuffer> {
+        private final GetObjectResponse response;
+        private final CompletableFuture<Body> target;
+        private Subscription subscription;
+        private byte[] buffer;
+        private int length;
+        private boolean done;
+
+        Collector(GetObjectResponse response, CompletableFuture<Body> target) {
+            this.response = response;
+            this.target = target;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            Long declared = response.contentLength();
+            if (declared != null && declared > maxBytes) {
+                tooLarge(declared);
+                return;
+            }
+            buffer = new byte[declared != null ? declared.intValue() : (int) Math.min(INITIAL_CAPACITY, maxBytes + 1)];
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(ByteBuffer chunk) {
+            if (done) {
+                return;
+            }
+            long needed = (long) length + chunk.remaining();
+            if (needed > maxBytes) {
+                tooLarge(needed);
+                return;
+            }
+            if (needed > buffer.length) {
+                // Sin Content-Length, o más datos que los anunciados
+                buffer = Arrays.copyOf(buffer, (int) Math.min(Math.max(needed, buffer.length * 2L), maxBytes));
+            }
+            int read = chunk.remaining();
+            chunk.get(buffer, length, read);
+            length += read;
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            if (!done) {
+                done = true;
+                target.completeExceptionally(error);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (!done) {
+                done = true;
+                target.complete(new Body(response, length == buffer.length ? buffer : Arrays.copyOf(buffer, length),
+                    length));
+            }
+        }
+
+        private void tooLarge(long size) {
+            done = true;
+            buffer = null;
+            subscription.cancel();
+            target.complete(new Body(response, null, size));
+        }
+    }
+
+    /**
+     * Resultado del GET: respuesta y contenido, o solo la respuesta si era demasiado grande
+     */
+    static final class Body {
+        private final GetObjectResponse response;
+        private final byte[] content;
+        private final long size;
+
+        Body(GetObjectResponse response, byte[] content, long size) {
+            this.response = response;
+            this.content = content;
+            this.size = size;
+        }
+
+        GetObjectResponse response() {
+            return response;
+        }
+
+        /**
+         * Contenido recibido, o null si se canceló por tamaño
+         */
+        byte[] content() {
+            return content;
+        }
+
+        /**
+         * Tamaño anunciado o recibido hasta cancelar
+         */
+        long size() {
+            return size;
+        }
+
+        boolean isTooLarge() {
+            return content == null;
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package com.soulware.platform.docexcelparser.infrastructure.storage;
+
+import com.soulware.platform.docexcelparser.domain.service.IFileStorageService;
+import com.soulware.platform.docexcelparser.infrastructure.config.ApplicationConfig;
+import jakarta.enterprise.inject.Alternative;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Caché local en disco de los archivos descargados del almacenamiento.
+ *
+ * Envuelve otro IFileStorageService (MinioService). Cada cuerpo descargado se
+ * guarda en un archivo identificado por bucket, clave y ETag; las lecturas
+ * siguientes hacen un GET condicional (If-None-Match) y, si el servidor responde
+ * 304, el contenido se lee del disco a través de un FileChannel mapeado en
+ * memoria en lugar de volver a descargarlo. La caché está acotada por
+ * S3_CACHE_MAX_BYTES y desaloja por tamaño los archivos usados hace más tiempo.
+ * El índice vive en memoria: al iniciar se descartan los archivos de ejecuciones
+ * anteriores. Está desactivada por defecto: solo ahorra descargas cuando los
+ * mismos archivos se leen más de una vez.
+ */
+@Alternative
+public class CachingFileStorageService implements IFileStorageService {
+
+    private static final Logger logger = Logger.getLogger(CachingFileStorageService.class.getName());
+
+    private static final String BODY_SUFFIX = ".body";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    private final IFileStorageService delegate;
+    private final String bucketName;
+    private final Path cacheDir;
+    private final long maxBytes;
+
+    // bucket/clave -> versión en disco, en orden de acceso (el primero es el menos usado)
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CachingFileStorageService() {
+        this(new MinioService(), new ApplicationConfig());
+    }
+
+    public CachingFileStorageService(IFileStorageService delegate, ApplicationConfig config) {
+        this(delegate, config.getS3Bucket(), Path.of(config.getS3CacheDir()), config.getS3CacheMaxBytes());
+    }
+
+    CachingFileStorageService(IFileStorageService delegate, String bucketName, Path cacheDir, long maxBytes) {
+        this.delegate = delegate;
+        this.bucketName = bucketName;
+        this.cacheDir = cacheDir;
+        this.maxBytes = prepare(cacheDir, maxBytes);
+        logger.info("🗄️  Storage cache: " + cacheDir + " (" + this.maxBytes + " bytes max)");
+    }
+
+    /**
+     * Envuelve el servicio con la caché si S3_CACHE_MAX_BYTES es mayor que 0
+     * @param delegate Servicio de almacenamiento remoto
+     * @param config Configuración de la aplicación
+     * @return El servicio con caché, o el mismo delegate si la caché está desactivada
+     */
+    public static IFileStorageService wrap(IFileStorageService delegate, ApplicationConfig config) {
+        return config.getS3CacheMaxBytes() > 0 ? new CachingFileStorageService(delegate, config) : delegate;
+    }
+
+    /**
+     * Crea el directorio y borra los archivos de ejecuciones anteriores
+     * @return Tamaño máximo efectivo (0 si el directorio no se puede usar)
+     */
+    private static long prepare(Path cacheDir, long maxBytes) {
+        if (maxBytes <= 0) {
+            return 0;
+        }
+        try {
+            Files.createDirectories(cacheDir);
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(cacheDir,
+                    "*{" + BODY_SUFFIX + "," + TEMP_SUFFIX + "}")) {
+                for (Path file : stale) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            return maxBytes;
+        } catch (IOException e) {
+            logger.warning("⚠️  Storage cache disabled, cannot use " + cacheDir + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Obtiene el archivo desde la caché si el servidor confirma que no cambió, o
+     * lo descarga y lo guarda en la caché
+     * @param fileKey Clave del archivo
+     * @return Stream del archivo, o null si no existe
+     * @throws IOException Si hay error al obtener el archivo
+     */
+    @Override
+    public FileStream fetch(String fileKey) throws IOException {
+        if (maxBytes == 0) {
+            return delegate.fetch(fileKey);
+        }
+        String cacheKey = bucketName + "/" + fileKey;
+        CacheEntry cached = lookup(cacheKey);
+        if (cached != null) {
+            FileStream response = delegate.fetchIfNoneMatch(fileKey, cached.etag);
+            if (response == null) {
+                invalidate(cacheKey);
+                return null;
+            }
+            if (response.isNotModified()) {
+                // El 304 no trae contenido: se libera la conexión antes de servir la caché o descargar de nuevo
+                response.close();
+                FileStream body = open(cached);
+                if (body != null) {
+                    hits.incrementAndGet();
+                    bytesSaved.addAndGet(cached.size);
+                    logger.fine("✅ Storage cache hit: " + fileKey + " (" + cached.size + " bytes)");
+                    return body;
+                }
+                // El archivo en disco desapareció: se descarga completo
+                invalidate(cacheKey);
+                response = delegate.fetch(fileKey);
+            }
+            return store(cacheKey, response);
+        }
+        return store(cacheKey, delegate.fetch(fileKey));
+    }
+
+    /**
+     * Anticipa la descarga solo si el archivo no está en la caché: si está, el
+     * fetch hace un GET condicional que no trae el contenido
+     */
+    @Override
+    public void prefetch(String fileKey) {
+        if (maxBytes == 0 || lookup(bucketName + "/" + fileKey) == null) {
+            delegate.prefetch(fileKey);
+        }
+    }
+
+    @Override
+    public FileStream fetchIfNoneMatch(String fileKey, String etag) throws IOException {
+        return delegate.fetchIfNoneMatch(fileKey, etag);
+    }
+
+    /**
+     * Los rangos no pasan por la caché: se leen siempre del almacenamiento
+     */
+    @Override
+    public ByteRange readRange(String fileKey, long offset, int length, String ifMatch) throws IOException {
+        return delegate.readRange(fileKey, offset, length, ifMatch);
+    }
+
+    @Override
+    public FileStream openStream(String fileKey) throws IOException {
+        FileStream stream = fetch(fileKey);
+        if (stream == null) {
+            throw new FileNotFoundException("File not found: " + fileKey);
+        }
+        return stream;
+    }
+
+    @Override
+    public byte[] downloadFile(String fileKey) throws IOException {
+        try (InputStream in = openStream(fileKey)) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Override
+    public long readInto(String fileKey, WritableByteChannel target) throws IOException {
+        try (InputStream in = openStream(fileKey)) {
+            return copy(in, target);
+        }
+    }
+
+    @Override
+    public boolean fileExists(String fileKey) {
+        return delegate.fileExists(fileKey);
+    }
+
+    @Override
+    public FileInfo getFileInfo(String fileKey) {
+        return delegate.getFileInfo(fileKey);
+    }
+
+    @Override
+    public void deleteFile(String fileKey) throws IOException {
+        invalidate(bucketName + "/" + fileKey);
+        delegate.deleteFile(fileKey);
+    }
+
+    @Override
+    public void deleteFileLater(String fileKey) {
+        invalidate(bucketName + "/" + fileKey);
+        delegate.deleteFileLater(fileKey);
+    }
+
+    /**
+     * Guarda la respuesta en la caché y devuelve su contenido leído desde el disco.
+     * Las respuestas sin ETag, sin tamaño conocido o más grandes que la caché se
+     * devuelven sin guardar.
+     */
+    private FileStream store(String cacheKey, FileStream response) throws IOException {
+        if (response == null) {
+            return null;
+        }
+        misses.incrementAndGet();
+        if (response.getEtag() == null || response.getSize() < 0 || response.getSize() > maxBytes) {
+            return response;
+        }
+        Path temp = Files.createTempFile(cacheDir, "download-", TEMP_SUFFIX);
+        CacheEntry entry;
+        try {
+            long written;
+            try (response; FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                written = copy(response, channel);
+            }
+            if (written != response.getSize()) {
+                throw new IOException("Incomplete download of " + cacheKey + ": " + written + " of "
+                    + response.getSize() + " bytes");
+            }
+            Path file = cacheDir.resolve(fileName(cacheKey, response.getEtag()));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            entry = new CacheEntry(file, response.getEtag(), written, response.getContentType(), response.getLastModified());
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        // Se mapea antes de publicar la entrada para que un desalojo concurrente no la deje sin contenido
+        FileStream body = open(entry);
+        if (body == null) {
+            throw new IOException("Cached file disappeared: " + entry.file);
+        }
+        put(cacheKey, entry);
+        return body;
+    }
+
+    /**
+     * Abre el archivo de la caché mapeado en memoria
+     * @return Stream del contenido, o null si el archivo ya no existe
+     */
+    private static FileStream open(CacheEntry entry) throws IOException {
+        try (FileChannel channel = FileChannel.open(entry.file, StandardOpenOption.READ)) {
+            // El mapeo sigue siendo válido después de cerrar el canal (y de borrar el archivo)
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, entry.size);
+            return new FileStream(new ByteBufferInputStream(mapped), entry.size, entry.contentType,
+                entry.lastModified, entry.etag);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private synchronized CacheEntry lookup(String cacheKey) {
+        return entries.get(cacheKey);
+    }
+
+    private synchronized void put(String cacheKey, CacheEntry entry) {
+        CacheEntry previous = entries.put(cacheKey, entry);
+        cachedBytes += entry.size;
+        if (previous != null) {
+            cachedBytes -= previous.size;
+            if (!previous.file.equals(entry.file)) {
+                delete(previous.file);
+            }
+        }
+        Iterator<Map.Entry<String, CacheEntry>> eldest = entries.entrySet().iterator();
+        while (cachedBytes > maxBytes && eldest.hasNext()) {
+            CacheEntry evicted = eldest.next().getValue();
+            if (evicted == entry) {
+                continue;
+            }
+            eldest.remove();
+            cachedBytes -= evicted.size;
+            evictions.incrementAndGet();
+            delete(evicted.file);
+        }
+    }
+
+    private synchronized void invalidate(String cacheKey) {
+        CacheEntry removed = entries.remove(cacheKey);
+        if (removed != null) {
+            cachedBytes -= removed.size;
+            delete(removed.file);
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warning("⚠️  Could not delete cached file " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static long copy(InputStream in, WritableByteChannel target) throws IOException {
+        byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+        ByteBuffer view = ByteBuffer.wrap(buffer);
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            view.clear().limit(read);
+            while (view.hasRemaining()) {
+                target.write(view);
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Nombre del archivo en disco: SHA-256 de bucket, clave y ETag
+     */
+    private static String fileName(String cacheKey, String etag) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest((cacheKey + "\n" + etag).getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(digest.length * 2 + BODY_SUFFIX.length());
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return name.append(BODY_SUFFIX).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Lecturas servidas desde la caché tras un 304
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Lecturas que descargaron el contenido (sin entrada en la caché o con una versión nueva)
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Bytes que no se volvieron a descargar gracias a la caché
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Resumen de los contadores para logs
+     */
+    public String summary() {
+        return "hits=" + getHits() + ", misses=" + getMisses() + ", bytesSaved=" + getBytesSaved()
+            + ", evictions=" + getEvictions() + ", cachedBytes=" + getCachedBytes();
+    }
+
+    /**
+     * Versión de un archivo guardada en disco
+     */
+    private static final class CacheEntry {
+        final Path file;
+        final String etag;
+        final long size;
+        final String contentType;
+        final String lastModified;
+
+        CacheEntry(Path file, String etag, long size, String contentType, String lastModified) {
+            this.file = file;
+            this.etag = etag;
+            this.size = size;
+            this.contentType = contentType;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * InputStream sobre un buffer mapeado, sin copias intermedias
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.soulware.platform.docexcelparser.infrastructure.storage;
 
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
@@ -12,8 +13,12 @@ import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignReques
 import com.soulware.platform.docexcelparser.domain.service.IFileStorageService; // AGREGAR
 import jakarta.enterprise.context.ApplicationScoped;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.time.Duration;
 import java.util.logging.Logger;
 
@@ -25,10 +30,14 @@ public class MinioService implements IFileStorageService{
     
     private static final Logger logger = Logger.getLogger(MinioService.class.getName());
     
+    /** Tamaño del buffer de copia de readInto */
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+    
     private final S3Client s3Client;
     private final S3Presigner s3Presigner;
     private final String bucketName;
     private final String endpoint;
+    private final BatchingDeleter deleter;
     
     public MinioService() {
         // Configuración desde variables de entorno o valores por defecto para Supabase
@@ -68,6 +77,8 @@ public class MinioService implements IFileStorageService{
                 .build())
             .build();
         
+        this.deleter = new BatchingDeleter(s3Client, bucketName);
+        
         logger.info("🗂️  MinIO Service initialized:");
         logger.info("   Endpoint: " + endpoint);
         logger.info("   Bucket: " + bucketName);
@@ -103,6 +114,157 @@ public class MinioService implements IFileStorageService{
         }
     }
     
+    /**
+     * Obtiene el objeto con un solo GET: los metadatos vienen en la misma
+     * respuesta y NoSuchKey equivale a "no existe", sin HEAD previos
+     * @param key Clave del archivo
+     * @return Stream con el tamaño, tipo de contenido, fecha y ETag de la respuesta, o null si no existe
+     * @throws IOException Si el objeto no se puede obtener
+     */
+    @Override
+    public IFileStorageService.FileStream fetch(String key) throws IOException {
+        return get(key, null);
+    }
+    
+    /**
+     * GET condicional con If-None-Match: si el ETag coincide el servidor responde
+     * 304 sin cuerpo
+     * @param key Clave del archivo
+     * @param etag ETag de la versión que ya se tiene
+     * @return Stream de la nueva versión, FileStream.notModified si no cambió, o null si no existe
+     * @throws IOException Si el objeto no se puede obtener
+     */
+    @Override
+    public IFileStorageService.FileStream fetchIfNoneMatch(String key, String etag) throws IOException {
+        return get(key, etag);
+    }
+    
+    private IFileStorageService.FileStream get(String key, String ifNoneMatch) throws IOException {
+        try {
+            logger.fine("📥 Fetching file: " + key);
+            
+            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .ifNoneMatch(ifNoneMatch)
+                .build();
+                
+            ResponseInputStream<GetObjectResponse> response = s3Client.getObject(getObjectRequest);
+            GetObjectResponse metadata = response.response();
+            long size = metadata.contentLength() != null ? metadata.contentLength() : -1;
+            return new IFileStorageService.FileStream(response, size,
+                metadata.contentType() != null ? metadata.contentType() : "application/octet-stream",
+                metadata.lastModified() != null ? metadata.lastModified().toString() : "",
+                metadata.eTag());
+        } catch (NoSuchKeyException e) {
+            logger.info("❌ File not found: " + key);
+            return null;
+        } catch (S3Exception e) {
+            if (ifNoneMatch != null && e.statusCode() == 304) {
+                logger.fine("✅ File not modified: " + key);
+                return IFileStorageService.FileStream.notModified(ifNoneMatch);
+            }
+            logger.severe("❌ Error fetching file " + key + ": " + e.getMessage());
+            throw new IOException("Failed to fetch file " + key + ": " + e.getMessage(), e);
+        } catch (Exception e) {
+            logger.severe("❌ Error fetching file " + key + ": " + e.getMessage());
+            throw new IOException("Failed to fetch file " + key + ": " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Lee un rango del objeto con un GET con cabecera Range; el tamaño total sale
+     * de Content-Range. Si el servidor ignora el rango se devuelve el objeto completo
+     * @param key Clave del archivo
+     * @param offset Posición del primer byte, o negativo para los últimos length bytes
+     * @param length Cantidad de bytes a leer
+     * @param ifMatch ETag que debe tener el objeto (If-Match), o null
+     * @return Rango leído, o null si el objeto no existe
+     * @throws IOException Si el rango no se puede leer o el objeto cambió
+     */
+    @Override
+    public IFileStorageService.ByteRange readRange(String key, long offset, int length, String ifMatch) throws IOException {
+        String range = offset < 0 ? "bytes=-" + length : "bytes=" + offset + "-" + (offset + length - 1);
+        try {
+            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .range(range)
+                .ifMatch(ifMatch)
+                .build();
+                
+            ResponseBytes<GetObjectResponse> response = s3Client.getObjectAsBytes(getObjectRequest);
+            byte[] bytes = response.asByteArrayUnsafe();
+            String contentRange = response.response().contentRange();
+            long start = 0;
+            long totalSize = bytes.length;
+            if (contentRange != null && contentRange.startsWith("bytes ")) {
+                // "bytes <inicio>-<fin>/<total>"
+                int dash = contentRange.indexOf('-');
+                int slash = contentRange.indexOf('/');
+                start = Long.parseLong(contentRange.substring(6, dash).trim());
+                totalSize = Long.parseLong(contentRange.substring(slash + 1).trim());
+            }
+            logger.fine("📥 Range " + range + " of " + key + ": " + bytes.length + " of " + totalSize + " bytes");
+            return new IFileStorageService.ByteRange(bytes, start, totalSize, response.response().eTag());
+        } catch (NoSuchKeyException e) {
+            logger.info("❌ File not found: " + key);
+            return null;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 416) {
+                // Rango fuera del objeto: solo ocurre con objetos vacíos al pedir el final
+                return new IFileStorageService.ByteRange(new byte[0], 0, 0, ifMatch);
+            }
+            logger.severe("❌ Error reading range " + range + " of " + key + ": " + e.getMessage());
+            throw new IOException("Failed to read range " + range + " of " + key + ": " + e.getMessage(), e);
+        } catch (Exception e) {
+            logger.severe("❌ Error reading range " + range + " of " + key + ": " + e.getMessage());
+            throw new IOException("Failed to read range " + range + " of " + key + ": " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Abre el objeto como stream: el cuerpo de la respuesta GET se lee de la red
+     * a medida que se consume, sin copiarlo antes a memoria
+     * @param key Clave del archivo
+     * @return Stream con el tamaño y tipo de contenido de la respuesta
+     * @throws IOException Si el objeto no existe o no se puede abrir
+     */
+    @Override
+    public IFileStorageService.FileStream openStream(String key) throws IOException {
+        IFileStorageService.FileStream stream = fetch(key);
+        if (stream == null) {
+            throw new FileNotFoundException("File not found: " + key);
+        }
+        return stream;
+    }
+    
+    /**
+     * Copia el objeto al canal con un buffer fijo de 64 KB, sin cargarlo completo en memoria
+     * @param key Clave del archivo
+     * @param target Canal de destino (no se cierra)
+     * @return Bytes copiados
+     * @throws IOException Si hay error en la descarga o al escribir en el canal
+     */
+    @Override
+    public long readInto(String key, WritableByteChannel target) throws IOException {
+        try (InputStream in = openStream(key)) {
+            byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+            ByteBuffer view = ByteBuffer.wrap(buffer);
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                view.clear().limit(read);
+                while (view.hasRemaining()) {
+                    target.write(view);
+                }
+                total += read;
+            }
+            logger.fine("✅ File copied: " + key + " (" + total + " bytes)");
+            return total;
+        }
+    }
+    
     /**
      * Verifica si un archivo existe en el bucket
      * @param key Clave del archivo
@@ -151,6 +313,15 @@ public class MinioService implements IFileStorageService{
         }
     }
     
+    /**
+     * Encola la eliminación para el próximo lote de DeleteObjects
+     * @param key Clave del archivo
+     */
+    @Override
+    public void deleteFileLater(String key) {
+        deleter.submit(key);
+    }
+    
     /**
      * Obtiene información de un archivo
      * @param key Clave del archivo
@@ -294,6 +465,7 @@ public class MinioService implements IFileStorageService{
      */
     public void close() {
         try {
+            deleter.close();
             s3Client.close();
             s3Presigner.close();
             logger.info("✅ MinIO connections closed");
@@ -5,25 +5,33 @@ import jakarta.servlet.ServletContextListener;
 import jakarta.servlet.annotation.WebListener;
 import javax.jms.*;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.JsonNode;
 import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.ActiveMQSession;
 import com.soulware.platform.docexcelparser.infrastructure.parser.ExcelPatientParser;
+import com.soulware.platform.docexcelparser.domain.model.ParseOutcome;
 import com.soulware.platform.docexcelparser.domain.model.PatientProfile;
 import com.soulware.platform.docexcelparser.infrastructure.messaging.PatientJSONSenderService;
+import com.soulware.platform.docexcelparser.infrastructure.storage.AsyncMinioService;
+import com.soulware.platform.docexcelparser.infrastructure.storage.CachingFileStorageService;
 import com.soulware.platform.docexcelparser.infrastructure.storage.MinioService;
 import com.soulware.platform.docexcelparser.domain.service.IFileStorageService;
 import com.soulware.platform.docexcelparser.infrastructure.config.ApplicationConfig;
-import java.util.Base64;
+import com.soulware.platform.docexcelparser.infrastructure.messaging.ExcelInputEnvelope;
+import com.soulware.platform.docexcelparser.infrastructure.logging.AppLog;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Direct JMS Listener basado en la implementación que funciona en lab62
@@ -32,7 +40,10 @@ import java.util.logging.Logger;
 @WebListener
 public class DirectJMSListener implements ServletContextListener {
 
-    private static final Logger logger = Logger.getLogger(DirectJMSListener.class.getName());
+    private static final AppLog log = AppLog.forClass(DirectJMSListener.class);
+
+    /** Espera máxima al cerrar para procesar los mensajes ya recibidos */
+    private static final long DRAIN_TIMEOUT_MILLIS = 60_000;
     
     private static ApplicationConfig config = new ApplicationConfig();
 
@@ -49,26 +60,22 @@ public class DirectJMSListener implements ServletContextListener {
            private static ExcelPatientParser excelParser;
            private static PatientJSONSenderService patientJSONSender;
            private static MinioService minioService;
+           private static IFileStorageService downloadService;
+           private static IFileStorageService fileStorage;
+           private static ExecutorService pollingExecutor;
 
     @Override
     public void contextInitialized(ServletContextEvent sce) {
         synchronized (DirectJMSListener.class) {
             if (isInitialized) {
-                logger.info("DirectJMSListener already initialized, skipping...");
+                log.info("DirectJMSListener already initialized, skipping...");
                 return;
             }
 
             String brokerUrl = config.getJmsBrokerUrl();
             String queueName = config.getJmsQueueExcelInput();
             
-            System.out.println("==========================================");
-            System.out.println("=== DIRECT JMS LISTENER STARTING ===");
-            System.out.println("=== BASADO EN LAB62 IMPLEMENTATION ===");
-            System.out.println("=== BROKER: " + brokerUrl + " ===");
-            System.out.println("=== QUEUE: " + queueName + " ===");
-            System.out.println("=== TIMESTAMP: " + LocalDateTime.now() + " ===");
-            System.out.println("==========================================");
-            logger.info("=== DirectJMSListener STARTING ===");
+            log.info(() -> "=== DirectJMSListener STARTING === Broker: " + brokerUrl + ", cola: " + queueName);
 
             try {
                 closeExistingConnections(); // Asegurarse de cerrar conexiones anteriores
@@ -84,6 +91,10 @@ public class DirectJMSListener implements ServletContextListener {
                        
                        // Inicializar el servicio MinIO
                        minioService = new MinioService();
+                       // Descargas con el cliente asíncrono (S3_ASYNC_DOWNLOADS=0 usa solo el síncrono)
+                       // y caché local en disco delante (desactivada con S3_CACHE_MAX_BYTES=0)
+                       downloadService = AsyncMinioService.wrap(minioService, config);
+                       fileStorage = CachingFileStorageService.wrap(downloadService, config);
 
                 // Usar ActiveMQConnectionFactory directamente como en lab62
                 // Configuración mejorada para Azure/redes remotas
@@ -104,10 +115,9 @@ public class DirectJMSListener implements ServletContextListener {
                     String brokerUrlWithPrefetch = brokerUrl + "?jms.prefetchPolicy.queuePrefetch=1";
                     factory = new ActiveMQConnectionFactory(brokerUrlWithPrefetch);
                     factory.setAlwaysSessionAsync(false);
-                    System.out.println("✅ Prefetch configurado a 1 (solo 1 mensaje a la vez)");
+                    log.debug("✅ Prefetch configurado a 1 (solo 1 mensaje a la vez)");
                 } catch (Exception e) {
-                    System.out.println("⚠️  No se pudo configurar prefetch, usando configuración por defecto");
-                    logger.warning("Could not configure prefetch: " + e.getMessage());
+                    log.warn(() -> "⚠️  Could not configure prefetch, using defaults: " + e.getMessage());
                 }
                 
                 connection = factory.createConnection();
@@ -117,28 +127,21 @@ public class DirectJMSListener implements ServletContextListener {
                 connection.setExceptionListener(new ExceptionListener() {
                     @Override
                     public void onException(JMSException exception) {
-                        System.err.println("==========================================");
-                        System.err.println("=== JMS CONNECTION EXCEPTION ===");
-                        System.err.println("=== ERROR: " + exception.getMessage() + " ===");
-                        System.err.println("=== IMPORTANTE: Problema de conexión detectado ===");
-                        System.err.println("==========================================");
-                        logger.severe("JMS Connection Exception: " + exception.getMessage());
-                        exception.printStackTrace();
+                        log.error(() -> "=== JMS CONNECTION EXCEPTION === Problema de conexión detectado: " + exception.getMessage(), exception);
                     }
                 });
 
-                session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                // Cada mensaje se confirma por separado después de procesarlo: si el proceso
+                // cae, el broker vuelve a entregar los recibidos que no se terminaron
+                session = connection.createSession(false, ActiveMQSession.INDIVIDUAL_ACKNOWLEDGE);
                 Queue queue = session.createQueue(queueName);
 
                 // NO crear consumer aquí - se creará en el polling manual
                 // Esto evita problemas con mensajes bloqueados
-                System.out.println("⚠️  Consumer se creará en el polling manual");
-                System.out.println("   (Esto evita problemas con mensajes bloqueados)");
-                logger.info("Consumer will be created in manual polling thread");
+                log.debug("Consumer will be created in manual polling thread");
 
                 // Start connection
-                logger.info("Starting connection...");
-                System.out.println("Starting connection...");
+                log.debug("Starting connection...");
                 connection.start();
                 
                 // Iniciar polling manual (método principal para Azure/redes remotas)
@@ -147,21 +150,10 @@ public class DirectJMSListener implements ServletContextListener {
                 isInitialized = true;
                 listenerStatus = "DIRECT JMS ACTIVO - Escuchando en " + queueName + " (basado en lab62)";
 
-                System.out.println("==========================================");
-                System.out.println("=== SUCCESS: DIRECT JMS LISTENER CONNECTED ===");
-                System.out.println("=== QUEUE: " + queueName + " ===");
-                System.out.println("=== LISTENING FOR REAL MESSAGES... ===");
-                System.out.println("=== BASADO EN IMPLEMENTACIÓN LAB62 ===");
-                System.out.println("==========================================");
-                logger.info("SUCCESS: DirectJMSListener connected to " + queueName);
+                log.info(() -> "SUCCESS: DirectJMSListener connected to " + queueName);
 
             } catch (JMSException e) {
-                System.err.println("==========================================");
-                System.err.println("=== FAILED TO INITIALIZE DIRECT JMS LISTENER ===");
-                System.err.println("=== ERROR: " + e.getMessage() + " ===");
-                System.err.println("=== FALLBACK: Using SimpleTestListener ===");
-                System.err.println("==========================================");
-                logger.log(Level.SEVERE, "FAILED to initialize DirectJMSListener: " + e.getMessage(), e);
+                log.error(() -> "FAILED to initialize DirectJMSListener: " + e.getMessage(), e);
                 listenerStatus = "DIRECT JMS FALLIDO - " + e.getMessage();
                 isInitialized = false;
             }
@@ -170,8 +162,8 @@ public class DirectJMSListener implements ServletContextListener {
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
-           System.out.println("=== DIRECT JMS LISTENER STOPPING ===");
-           logger.info("=== DirectJMSListener STOPPING ===");
+           log.info("=== DirectJMSListener STOPPING ===");
+           stopManualPolling();
            closeExistingConnections();
            clearMessages();
            
@@ -180,6 +172,14 @@ public class DirectJMSListener implements ServletContextListener {
                patientJSONSender.closeConnection();
            }
            
+           if (fileStorage instanceof CachingFileStorageService cache) {
+               log.info(() -> "Caché de almacenamiento: " + cache.summary());
+           }
+           if (downloadService instanceof AsyncMinioService asyncDownloads) {
+               log.info(() -> "Descargas asíncronas: " + asyncDownloads.summary());
+               asyncDownloads.close();
+           }
+           
            // Cerrar conexión del servicio MinIO
            if (minioService != null) {
                minioService.close();
@@ -208,10 +208,9 @@ public class DirectJMSListener implements ServletContextListener {
                 connection.close();
                 connection = null;
             }
-            System.out.println("Direct JMS connections closed successfully");
-            logger.info("Direct JMS connections closed successfully");
+            log.info("Direct JMS connections closed successfully");
         } catch (JMSException e) {
-            logger.log(Level.SEVERE, "Error closing Direct JMS resources: " + e.getMessage(), e);
+            log.error(() -> "Error closing Direct JMS resources: " + e.getMessage(), e);
         }
     }
 
@@ -233,8 +232,7 @@ public class DirectJMSListener implements ServletContextListener {
     public static void clearMessages() {
         receivedMessages.clear();
         messageHistory.clear();
-        System.out.println("=== MENSAJES LIMPIADOS DEL DIRECT JMS LISTENER ===");
-        logger.info("Messages cleared from DirectJMSListener.");
+        log.debug("Messages cleared from DirectJMSListener.");
     }
 
     /**
@@ -251,8 +249,7 @@ public class DirectJMSListener implements ServletContextListener {
     public static void clearLastMessage() {
         if (!messageHistory.isEmpty()) {
             messageHistory.remove(messageHistory.size() - 1);
-            System.out.println("=== ÚLTIMO MENSAJE LIMPIADO DEL DIRECT JMS LISTENER ===");
-            logger.info("Last message cleared from DirectJMSListener.");
+            log.debug("Last message cleared from DirectJMSListener.");
         }
     }
 
@@ -261,44 +258,24 @@ public class DirectJMSListener implements ServletContextListener {
      */
     private static void processExcelFromMinIO(String fileKey, String fileName, String messageId) {
         try {
-            System.out.println("==========================================");
-            System.out.println("=== PROCESANDO EXCEL DESDE MINIO ===");
-            System.out.println("=== FILE KEY: " + fileKey + " ===");
-            System.out.println("=== FILE NAME: " + fileName + " ===");
-            System.out.println("=== MESSAGE ID: " + messageId + " ===");
-            System.out.println("==========================================");
+            log.info(() -> "Procesando Excel desde MinIO: " + fileKey + " (" + fileName + ", mensaje " + messageId + ")");
             
-            // Verificar que el archivo existe en MinIO
-            if (!minioService.fileExists(fileKey)) {
-                System.err.println("❌ FILE NOT FOUND in MinIO: " + fileKey);
-                logger.severe("File not found in MinIO: " + fileKey);
+            // El parser lee el archivo desde MinIO: un solo GET directo al parser (sin copia intermedia ni Base64),
+            // o por rangos solo las partes que usa si S3_RANGED_READ_TAIL_BYTES está configurado
+            // Un workbook puede traer varios pacientes: uno por hoja o uno por fila en listados
+            ParseOutcome outcome = excelParser.parseBatchOutcome(fileStorage, fileKey);
+            if (outcome == null) {
+                log.error(() -> "❌ File not found in MinIO: " + fileKey);
                 return;
             }
-            
-            // Obtener información del archivo
-            IFileStorageService.FileInfo fileInfo = minioService.getFileInfo(fileKey);
-            if (fileInfo != null) {
-                System.out.println("📄 File Info:");
-                System.out.println("   Size: " + fileInfo.getSize() + " bytes");
-                System.out.println("   Content-Type: " + fileInfo.getContentType());
-                System.out.println("   Last Modified: " + fileInfo.getLastModified());
+            if (!outcome.isSuccess()) {
+                // Entrada rechazada: no se publican pacientes "de error"; el archivo queda en MinIO para revisión
+                log.warn(() -> "Excel no procesado, no se publica nada: " + outcome);
+                return;
             }
+            List<PatientProfile> patients = outcome.getPatients();
             
-            // Descargar Excel desde MinIO
-            byte[] excelBytes = minioService.downloadFile(fileKey);
-            System.out.println("✅ Excel downloaded from MinIO: " + excelBytes.length + " bytes");
-            
-            // Convertir bytes a Base64 para el parser (mantener compatibilidad)
-            String base64Data = Base64.getEncoder().encodeToString(excelBytes);
-            
-            // Procesar con el parser existente
-            PatientProfile patient = excelParser.parsePatientFromExcel(base64Data);
-            List<PatientProfile> patients = List.of(patient);
-            
-            System.out.println("==========================================");
-            System.out.println("=== EXCEL PROCESADO EXITOSAMENTE ===");
-            System.out.println("=== PACIENTES ENCONTRADOS: " + patients.size() + " ===");
-            System.out.println("==========================================");
+            log.info(() -> "Excel procesado: " + patients.size() + " pacientes encontrados en " + outcome.getTotalMillis() + " ms");
             
             // Almacenar pacientes procesados
             processedPatients.addAll(patients);
@@ -309,61 +286,54 @@ public class DirectJMSListener implements ServletContextListener {
             }
             
             // Mostrar información de pacientes procesados
-            for (int i = 0; i < patients.size(); i++) {
-                PatientProfile patientItem = patients.get(i);
-                System.out.println("Paciente " + (i + 1) + ": " + patientItem.getFirstNames() + " " + patientItem.getPaternalSurname());
+            if (log.isDebugEnabled()) {
+                for (int i = 0; i < patients.size(); i++) {
+                    PatientProfile patientItem = patients.get(i);
+                    log.debug("Paciente " + (i + 1) + ": " + patientItem.getFirstNames() + " " + patientItem.getPaternalSurname());
+                }
             }
             
             // Enviar datos del paciente a cola separada
             for (PatientProfile patientItem : patients) {
                 boolean sent = patientJSONSender.sendPatientDataToQueue(patientItem);
                 if (sent) {
-                    System.out.println("✅ Datos del paciente enviados a cola separada: " + patientItem.getFirstNames() + " " + patientItem.getPaternalSurname());
+                    log.debug(() -> "✅ Datos del paciente enviados a cola separada: " + patientItem.getFirstNames() + " " + patientItem.getPaternalSurname());
                 } else {
-                    System.err.println("❌ Error enviando datos del paciente a cola separada: " + patientItem.getFirstNames() + " " + patientItem.getPaternalSurname());
+                    log.warn(() -> "❌ Error enviando datos del paciente a cola separada: " + patientItem.getFirstNames() + " " + patientItem.getPaternalSurname());
                 }
             }
             
-            // Opcional: eliminar archivo temporal de MinIO
-            try {
-                minioService.deleteFile(fileKey);
-                System.out.println("🗑️  Archivo temporal eliminado de MinIO: " + fileKey);
-            } catch (Exception e) {
-                System.out.println("⚠️  No se pudo eliminar archivo temporal: " + e.getMessage());
-            }
+            // Eliminar archivo temporal de MinIO en segundo plano (agrupado con otros)
+            fileStorage.deleteFileLater(fileKey);
+            log.debug(() -> "🗑️  Archivo temporal programado para eliminar de MinIO: " + fileKey);
             
         } catch (IOException e) {
-            System.err.println("❌ Error downloading Excel from MinIO: " + e.getMessage());
-            logger.log(Level.SEVERE, "Error downloading Excel from MinIO: " + e.getMessage(), e);
+            log.error(() -> "Error downloading Excel from MinIO: " + e.getMessage(), e);
         } catch (Exception e) {
-            System.err.println("❌ Error processing Excel from MinIO: " + e.getMessage());
-            logger.log(Level.SEVERE, "Error processing Excel from MinIO: " + e.getMessage(), e);
+            log.error(() -> "Error processing Excel from MinIO: " + e.getMessage(), e);
         }
     }
 
     /**
      * Procesa los datos de Excel desde Base64 (método legacy para compatibilidad)
      */
-    private static void processExcelData(String base64Data, String fileName, String messageId) {
+    private static void processExcelData(ExcelInputEnvelope envelope, String fileName, String messageId) {
         try {
-            System.out.println("==========================================");
-            System.out.println("=== PROCESANDO EXCEL DESDE BASE64 ===");
-            System.out.println("=== FILE: " + fileName + " ===");
-            System.out.println("=== MESSAGE ID: " + messageId + " ===");
-            System.out.println("==========================================");
+            log.info(() -> "Procesando Excel desde Base64: " + fileName + " (mensaje " + messageId + ")");
             
-            // Decodificar Base64
-            byte[] excelBytes = Base64.getDecoder().decode(base64Data);
-            System.out.println("Excel bytes decoded: " + excelBytes.length + " bytes");
+            // Decodificar Base64 directamente desde el JSON del mensaje
+            byte[] excelBytes = envelope.decodeExcel();
+            log.debug(() -> "Excel bytes decoded: " + excelBytes.length + " bytes");
             
-            // Procesar con el parser
-            PatientProfile patient = excelParser.parsePatientFromExcel(base64Data);
-            List<PatientProfile> patients = List.of(patient);
+            // Procesar con el parser usando los bytes ya decodificados
+            ParseOutcome outcome = excelParser.parseBatchOutcome(excelBytes);
+            if (!outcome.isSuccess()) {
+                log.warn(() -> "Excel no procesado, no se publica nada: " + outcome);
+                return;
+            }
+            List<PatientProfile> patients = outcome.getPatients();
             
-            System.out.println("==========================================");
-            System.out.println("=== EXCEL PROCESADO EXITOSAMENTE ===");
-            System.out.println("=== PACIENTES ENCONTRADOS: " + patients.size() + " ===");
-            System.out.println("==========================================");
+            log.info(() -> "Excel procesado: " + patients.size() + " pacientes encontrados en " + outcome.getTotalMillis() + " ms");
             
                    // Almacenar pacientes procesados
                    processedPatients.addAll(patients);
@@ -374,27 +344,25 @@ public class DirectJMSListener implements ServletContextListener {
                    }
                    
                    // Log de cada paciente
-                   for (int i = 0; i < patients.size(); i++) {
-                       PatientProfile patientItem = patients.get(i);
-                       System.out.println("Paciente " + (i + 1) + ": " + patientItem.getFirstNames() + " " + patientItem.getPaternalSurname());
+                   if (log.isDebugEnabled()) {
+                       for (int i = 0; i < patients.size(); i++) {
+                           PatientProfile patientItem = patients.get(i);
+                           log.debug("Paciente " + (i + 1) + ": " + patientItem.getFirstNames() + " " + patientItem.getPaternalSurname());
+                       }
                    }
                    
                    // Enviar datos del paciente a cola separada
                    for (PatientProfile patientItem : patients) {
                        boolean sent = patientJSONSender.sendPatientDataToQueue(patientItem);
                        if (sent) {
-                           System.out.println("✅ Datos del paciente enviados a cola separada: " + patientItem.getFirstNames() + " " + patientItem.getPaternalSurname());
+                           log.debug(() -> "✅ Datos del paciente enviados a cola separada: " + patientItem.getFirstNames() + " " + patientItem.getPaternalSurname());
                        } else {
-                           System.err.println("❌ Error enviando datos del paciente a cola separada: " + patientItem.getFirstNames() + " " + patientItem.getPaternalSurname());
+                           log.warn(() -> "❌ Error enviando datos del paciente a cola separada: " + patientItem.getFirstNames() + " " + patientItem.getPaternalSurname());
                        }
                    }
             
         } catch (Exception e) {
-            System.err.println("==========================================");
-            System.err.println("=== ERROR PROCESANDO EXCEL ===");
-            System.err.println("=== ERROR: " + e.getMessage() + " ===");
-            System.err.println("==========================================");
-            logger.log(Level.SEVERE, "Error processing Excel data: " + e.getMessage(), e);
+            log.error(() -> "Error processing Excel data: " + e.getMessage(), e);
         }
     }
 
@@ -420,8 +388,7 @@ public class DirectJMSListener implements ServletContextListener {
      */
     public static void clearProcessedPatients() {
         processedPatients.clear();
-        System.out.println("=== PACIENTES PROCESADOS LIMPIADOS ===");
-        logger.info("Processed patients cleared.");
+        log.debug("Processed patients cleared.");
     }
     
     /**
@@ -434,27 +401,32 @@ public class DirectJMSListener implements ServletContextListener {
      * - Problemas con keep-alive
      */
     private static void startManualPolling(Session session, Queue queue) {
-        java.util.concurrent.Executors.newSingleThreadExecutor().submit(() -> {
+        pollingExecutor = Executors.newSingleThreadExecutor();
+        pollingExecutor.submit(() -> {
             MessageConsumer pollingConsumer = null;
+            // Con descargas asíncronas los mensajes pasan a un hilo de procesamiento y el polling
+            // sigue recibiendo: el archivo de cada mensaje se descarga mientras se parsean los anteriores
+            int lookahead = config.getS3AsyncDownloads();
+            BlockingQueue<Message> handoff = lookahead > 0 ? new ArrayBlockingQueue<>(lookahead) : null;
+            // Con lecturas por rango no se descarga el archivo completo por adelantado
+            boolean prefetchFiles = config.getS3RangedReadTailBytes() == 0;
+            AtomicBoolean pollingStopped = new AtomicBoolean();
+            // Procesados por el hilo de trabajo; se confirman desde este hilo, el único que usa la sesión
+            ConcurrentLinkedQueue<Message> processed = new ConcurrentLinkedQueue<>();
+            Thread worker = handoff != null ? startMessageWorker(handoff, pollingStopped, processed) : null;
             try {
-                logger.info("Starting manual polling thread (primary method for Azure/remote ActiveMQ)...");
-                System.out.println("==========================================");
-                System.out.println("=== INICIANDO POLLING MANUAL ===");
-                System.out.println("=== MÉTODO PRINCIPAL PARA AZURE/ACTIVEMQ REMOTO ===");
-                System.out.println("=== COLA: " + queue.getQueueName() + " ===");
-                System.out.println("=== INTERVALO: 3 segundos ===");
-                System.out.println("==========================================");
+                log.info("Starting manual polling thread (primary method for Azure/remote ActiveMQ)...");
                 
                 // Crear consumer para polling (sin MessageListener)
                 pollingConsumer = session.createConsumer(queue);
-                System.out.println("✅ Consumer creado para polling manual");
-                System.out.println();
+                log.debug("✅ Consumer creado para polling manual");
                 
                 int pollCount = 0;
                 int consecutiveErrors = 0;
                 while (isInitialized && connection != null && session != null) {
                     try {
                         pollCount++;
+                        acknowledgeProcessed(processed);
                         
                         // Intentar recibir mensaje
                         Message message = null;
@@ -467,12 +439,12 @@ public class DirectJMSListener implements ServletContextListener {
                                 message = pollingConsumer.receive(2000); // 2 segundos timeout
                             }
                         } catch (JMSException receiveEx) {
-                            System.err.println("Error en receive (Poll #" + pollCount + "): " + receiveEx.getMessage());
+                            log.warn("Error en receive (Poll #" + pollCount + "): " + receiveEx.getMessage());
                             consecutiveErrors++;
                             
                             // Si hay muchos errores consecutivos, recrear el consumer
                             if (consecutiveErrors >= 3) {
-                                System.out.println("⚠️  Muchos errores consecutivos, recreando consumer...");
+                                log.warn("⚠️  Muchos errores consecutivos, recreando consumer...");
                                 try {
                                     if (pollingConsumer != null) {
                                         pollingConsumer.close();
@@ -482,7 +454,7 @@ public class DirectJMSListener implements ServletContextListener {
                                 }
                                 
                                 pollingConsumer = session.createConsumer(queue);
-                                System.out.println("✅ Consumer recreado");
+                                log.debug("✅ Consumer recreado");
                                 consecutiveErrors = 0;
                                 Thread.sleep(1000);
                                 continue;
@@ -496,38 +468,45 @@ public class DirectJMSListener implements ServletContextListener {
                         consecutiveErrors = 0;
                         
                         if (message != null) {
-                            System.out.println("==========================================");
-                            System.out.println("=== MENSAJE RECIBIDO POR POLLING MANUAL ===");
-                            System.out.println("=== POLL #" + pollCount + " ===");
-                            System.out.println("=== TIMESTAMP: " + LocalDateTime.now() + " ===");
-                            System.out.println("==========================================");
-                            logger.info("=== MESSAGE RECEIVED BY MANUAL POLLING (Poll #" + pollCount + ") ===");
+                            if (log.isInfoEnabled()) {
+                                log.info("=== MESSAGE RECEIVED BY MANUAL POLLING (Poll #" + pollCount + ") ===");
+                            }
                             
-                            // Procesar el mensaje
-                            processMessage(message);
+                            if (handoff != null) {
+                                // Empezar la descarga ya; si hay lookahead mensajes esperando, bloquea hasta que haya lugar
+                                if (prefetchFiles) {
+                                    prefetchFileKey(message);
+                                }
+                                handoff.put(message);
+                            } else {
+                                // Procesar el mensaje
+                                processMessage(message);
+                                acknowledge(message);
+                            }
                             
-                        } else if (pollCount % 20 == 0) {
-                            // Log cada 20 polls (cada ~60 segundos) para confirmar que está funcionando
-                            System.out.println("Polling activo (Poll #" + pollCount + ") - No hay mensajes en la cola");
-                            logger.fine("Manual polling active (Poll #" + pollCount + ") - No messages");
+                        } else {
+                            if (pollCount % 20 == 0) {
+                                // Log cada 20 polls vacíos (cada ~100 segundos) para confirmar que está funcionando
+                                if (log.isDebugEnabled()) {
+                                    log.debug("Manual polling active (Poll #" + pollCount + ") - No messages");
+                                }
+                            }
+                            
+                            // Pausa solo si la cola está vacía; con mensajes se sigue recibiendo de inmediato
+                            Thread.sleep(3000); // 3 segundos entre polls
                         }
                         
-                        // Pequeña pausa antes del siguiente polling
-                        Thread.sleep(3000); // 3 segundos entre polls
-                        
                     } catch (JMSException e) {
-                        logger.log(Level.WARNING, "Error in manual polling (Poll #" + pollCount + "): " + e.getMessage(), e);
-                        System.err.println("Error en polling manual (Poll #" + pollCount + "): " + e.getMessage());
+                        log.warn("Error in manual polling (Poll #" + pollCount + "): " + e.getMessage(), e);
                         
                         // Verificar si la conexión sigue activa
                         if (connection != null) {
                             try {
                                 // Intentar verificar el estado de la conexión
                                 String clientId = connection.getClientID();
-                                System.out.println("Verificando conexión - ClientID: " + clientId);
+                                log.debug(() -> "Verificando conexión - ClientID: " + clientId);
                             } catch (JMSException connEx) {
-                                System.err.println("⚠️  CONEXIÓN PERDIDA - Intentando reconectar...");
-                                logger.severe("Connection lost during polling: " + connEx.getMessage());
+                                log.error(() -> "⚠️  Connection lost during polling: " + connEx.getMessage(), connEx);
                                 // Aquí podrías implementar lógica de reconexión si es necesario
                             }
                         }
@@ -539,34 +518,154 @@ public class DirectJMSListener implements ServletContextListener {
                             break;
                         }
                     } catch (InterruptedException e) {
-                        logger.info("Manual polling thread interrupted");
-                        System.out.println("=== POLLING MANUAL INTERRUMPIDO ===");
+                        log.info("Manual polling thread interrupted");
                         Thread.currentThread().interrupt();
                         break;
                     }
                 }
                 
-                System.out.println("=== POLLING MANUAL DETENIDO (Total polls: " + pollCount + ") ===");
-                logger.info("Manual polling thread stopped (Total polls: " + pollCount + ")");
+                log.info("Manual polling thread stopped (Total polls: " + pollCount + ")");
                 
             } catch (Exception e) {
-                logger.log(Level.SEVERE, "Unexpected error in manual polling thread: " + e.getMessage(), e);
-                System.err.println("Error inesperado en polling manual: " + e.getMessage());
-                e.printStackTrace();
+                log.error(() -> "Unexpected error in manual polling thread: " + e.getMessage(), e);
             } finally {
+                if (worker != null) {
+                    // Se terminan de procesar los mensajes entregados al hilo; los que no
+                    // alcancen quedan sin confirmar y el broker los vuelve a entregar
+                    pollingStopped.set(true);
+                    try {
+                        worker.join(DRAIN_TIMEOUT_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    worker.interrupt();
+                    acknowledgeProcessed(processed);
+                }
                 // Cerrar el consumer de polling
                 try {
                     if (pollingConsumer != null) {
                         pollingConsumer.close();
-                        System.out.println("✅ Consumer de polling cerrado");
+                        log.debug("✅ Consumer de polling cerrado");
                     }
                 } catch (JMSException e) {
-                    logger.log(Level.WARNING, "Error closing polling consumer: " + e.getMessage(), e);
+                    log.warn(() -> "Error closing polling consumer: " + e.getMessage(), e);
                 }
             }
         });
     }
     
+    /**
+     * Detiene el polling y espera a que se procesen los mensajes ya recibidos,
+     * antes de cerrar la sesión
+     */
+    private static void stopManualPolling() {
+        isInitialized = false;
+        if (pollingExecutor == null) {
+            return;
+        }
+        pollingExecutor.shutdown();
+        try {
+            // Un receive en curso (2 s) más la pausa entre polls y el vaciado de la cola
+            if (!pollingExecutor.awaitTermination(DRAIN_TIMEOUT_MILLIS + 10_000, TimeUnit.MILLISECONDS)) {
+                log.warn("Manual polling did not stop in time");
+                pollingExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pollingExecutor.shutdownNow();
+        }
+        pollingExecutor = null;
+    }
+    
+    /**
+     * Confirma un mensaje ya procesado
+     */
+    private static void acknowledge(Message message) {
+        try {
+            message.acknowledge();
+        } catch (JMSException e) {
+            log.warn(() -> "Could not acknowledge message, it may be redelivered: " + e.getMessage());
+        }
+    }
+    
+    private static void acknowledgeProcessed(ConcurrentLinkedQueue<Message> processed) {
+        Message message;
+        while ((message = processed.poll()) != null) {
+            acknowledge(message);
+        }
+    }
+    
+    /**
+     * Hilo que procesa en orden los mensajes recibidos por el polling y deja cada
+     * uno en processed para que el polling lo confirme; al detenerse el polling
+     * termina de procesar los que quedan en la cola
+     */
+    private static Thread startMessageWorker(BlockingQueue<Message> handoff, AtomicBoolean pollingStopped,
+                                             ConcurrentLinkedQueue<Message> processed) {
+        Thread worker = new Thread(() -> {
+            try {
+                while (true) {
+                    Message message = handoff.poll(500, TimeUnit.MILLISECONDS);
+                    if (message != null) {
+                        processMessage(message);
+                        processed.add(message);
+                    } else if (pollingStopped.get()) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!handoff.isEmpty()) {
+                log.warn(() -> "Message worker stopped with " + handoff.size() + " messages not processed (left for redelivery)");
+            }
+            log.info("Message worker stopped");
+        }, "excel-message-worker");
+        worker.setDaemon(true);
+        worker.start();
+        return worker;
+    }
+    
+    /**
+     * Anticipa la descarga del archivo de un mensaje con fileKey. El cuerpo de un
+     * BytesMessage se vuelve al inicio para que processMessage lo lea completo.
+     */
+    private static void prefetchFileKey(Message message) {
+        try {
+            ExcelInputEnvelope envelope;
+            if (message instanceof TextMessage textMessage) {
+                String text = textMessage.getText();
+                if (text == null || text.isBlank()) {
+                    return;
+                }
+                envelope = ExcelInputEnvelope.read(text);
+            } else if (message instanceof BytesMessage bytesMessage) {
+                byte[] body = new byte[(int) bytesMessage.getBodyLength()];
+                bytesMessage.readBytes(body);
+                bytesMessage.reset();
+                if (body.length == 0) {
+                    return;
+                }
+                envelope = ExcelInputEnvelope.read(body);
+            } else {
+                return;
+            }
+            if (envelope.hasFileKey()) {
+                fileStorage.prefetch(envelope.getFileKey());
+            }
+        } catch (Exception e) {
+            // El mensaje se procesa igual; solo se pierde la descarga anticipada
+            log.debug(() -> "No se pudo anticipar la descarga: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Primeros caracteres de un mensaje binario para el historial (evita guardar payloads de varios MB)
+     */
+    private static String preview(byte[] bytes) {
+        return new String(bytes, 0, Math.min(bytes.length, 200), StandardCharsets.UTF_8);
+    }
+    
     /**
      * Procesa un mensaje JMS (extraído del MessageListener para reutilización)
      * Este método es usado tanto por el MessageListener como por el polling manual
@@ -574,81 +673,73 @@ public class DirectJMSListener implements ServletContextListener {
     private static void processMessage(Message message) {
         try {
             String messageText = null;
+            byte[] messageBytes = null;
             String messageId = null;
             
             if (message instanceof TextMessage textMessage) {
                 messageText = textMessage.getText();
                 messageId = message.getJMSMessageID();
-                System.out.println("Message type: TextMessage");
-                System.out.println("Message ID: " + messageId);
-                System.out.println("Message length: " + messageText.length() + " characters");
-                System.out.println("Message content:");
-                System.out.println(messageText);
-                System.out.println("==========================================");
-                logger.info("Received TEXT message: " + messageText.length() + " characters");
+                if (log.isInfoEnabled()) {
+                    log.info("Received TEXT message " + messageId + ": " + (messageText != null ? messageText.length() : 0) + " characters");
+                }
                 
             } else if (message instanceof BytesMessage bytesMessage) {
-                byte[] messageBytes = new byte[(int) bytesMessage.getBodyLength()];
+                // El cuerpo se lee como bytes y se parsea sin convertirlo a String
+                messageBytes = new byte[(int) bytesMessage.getBodyLength()];
                 bytesMessage.readBytes(messageBytes);
-                messageText = new String(messageBytes, "UTF-8");
                 messageId = message.getJMSMessageID();
                 
-                System.out.println("==========================================");
-                System.out.println("=== MENSAJE JMS RECIBIDO (BYTES) ===");
-                System.out.println("=== ID: " + messageId + " ===");
-                System.out.println("Message content:");
-                System.out.println(messageText);
-                System.out.println("==========================================");
-                logger.info("Received BYTES message: " + messageText.length() + " characters");
+                if (log.isInfoEnabled()) {
+                    log.info("Received BYTES message " + messageId + ": " + messageBytes.length + " bytes");
+                }
             } else {
-                System.out.println("=== MENSAJE JMS RECIBIDO (NO TEXT): " + message.getClass().getName() + " ===");
-                logger.info("JMS Message Received (Non-Text): " + message.getClass().getName());
+                log.warn(() -> "JMS Message Received (Non-Text): " + message.getClass().getName());
                 return;
             }
             
-            if (messageText == null || messageText.trim().isEmpty()) {
-                System.out.println("Mensaje vacío, ignorando...");
+            if (messageBytes != null ? messageBytes.length == 0 : messageText == null || messageText.trim().isEmpty()) {
+                log.debug("Mensaje vacío, ignorando...");
                 return;
             }
             
-            // Procesar JSON y Excel
+            // Leer el sobre JSON por tokens; el excelBase64 no se materializa hasta usarlo
+            String storedText;
             try {
-                JsonNode jsonNode = objectMapper.readTree(messageText);
+                ExcelInputEnvelope envelope = messageBytes != null
+                    ? ExcelInputEnvelope.read(messageBytes)
+                    : ExcelInputEnvelope.read(messageText);
+                storedText = envelope.hasExcelBase64() || messageText == null ? envelope.toString() : messageText;
                 
                 // Extraer campos específicos
-                String jsonMessageId = jsonNode.has("messageId") ? jsonNode.get("messageId").asText() : "unknown";
-                String fileName = jsonNode.has("fileName") ? jsonNode.get("fileName").asText() : "unknown.xlsx";
-                String status = jsonNode.has("status") ? jsonNode.get("status").asText() : "unknown";
+                String jsonMessageId = envelope.getMessageId() != null ? envelope.getMessageId() : "unknown";
+                String fileName = envelope.getFileName() != null ? envelope.getFileName() : "unknown.xlsx";
+                String status = envelope.getStatus() != null ? envelope.getStatus() : "unknown";
                 
-                System.out.println("JSON Message ID: " + jsonMessageId);
-                System.out.println("File Name: " + fileName);
-                System.out.println("Status: " + status);
+                log.debug(() -> "JSON Message ID: " + jsonMessageId + ", file: " + fileName + ", status: " + status);
                 
                 // Procesar Excel desde MinIO si existe fileKey
-                if (jsonNode.has("fileKey")) {
-                    String fileKey = jsonNode.get("fileKey").asText();
-                    String minioFileName = jsonNode.has("fileName") ? 
-                        jsonNode.get("fileName").asText() : "excel-file.xlsx";
-                    System.out.println("MinIO File Key: " + fileKey);
-                    System.out.println("File Name: " + minioFileName);
+                if (envelope.hasFileKey()) {
+                    String fileKey = envelope.getFileKey();
+                    String minioFileName = envelope.getFileName() != null ?
+                        envelope.getFileName() : "excel-file.xlsx";
                     
                     // Procesar el Excel desde MinIO
                     processExcelFromMinIO(fileKey, minioFileName, jsonMessageId);
-                } else if (jsonNode.has("excelBase64")) {
+                } else if (envelope.hasExcelBase64()) {
                     // Mantener compatibilidad con mensajes antiguos (Base64)
-                    String base64 = jsonNode.get("excelBase64").asText();
-                    System.out.println("Excel Base64 Length: " + base64.length() + " characters");
+                    log.debug(() -> "Excel Base64 Length: " + envelope.getExcelBase64Length() + " characters");
                     
-                    // Procesar el Excel desde Base64 (legacy)
-                    processExcelData(base64, fileName, jsonMessageId);
+                    // Procesar el Excel desde Base64 (legacy), decodificado directamente desde el JSON
+                    processExcelData(envelope, fileName, jsonMessageId);
                 } else {
-                    System.out.println("No Excel data found in message (neither fileKey nor excelBase64)");
+                    log.debug("No Excel data found in message (neither fileKey nor excelBase64)");
                 }
                 
             } catch (Exception jsonException) {
-                System.out.println("Error parsing JSON: " + jsonException.getMessage());
-                System.out.println("Raw message: " + messageText);
-                logger.log(Level.WARNING, "Error parsing JSON: " + jsonException.getMessage(), jsonException);
+                storedText = messageText != null ? messageText : preview(messageBytes);
+                String rawMessage = storedText;
+                log.warn(() -> "Error parsing JSON: " + jsonException.getMessage()
+                    + " - Raw message: " + AppLog.preview(rawMessage, 200), jsonException);
             }
             
             // Generar ID único para el mensaje si no existe
@@ -656,27 +747,20 @@ public class DirectJMSListener implements ServletContextListener {
             
             // Almacenar mensaje para consulta
             receivedMessages.offer(storedMessageId);
-            receivedMessages.offer(messageText);
-            messageHistory.add(messageText);
+            receivedMessages.offer(storedText);
+            messageHistory.add(storedText);
             
             // Mantener solo los últimos 10 mensajes
             if (messageHistory.size() > 10) {
                 messageHistory.remove(0);
             }
             
-            System.out.println("==========================================");
-            System.out.println("=== MESSAGE STORED SUCCESSFULLY ===");
-            System.out.println("=== MESSAGE ID: " + storedMessageId + " ===");
-            System.out.println("=== TOTAL MESSAGES: " + receivedMessages.size() + " ===");
-            System.out.println("==========================================");
+            log.debug(() -> "Message stored: " + storedMessageId + " (total: " + receivedMessages.size() + ")");
             
         } catch (JMSException e) {
-            logger.log(Level.SEVERE, "Error processing JMS message: " + e.getMessage(), e);
-            System.err.println("Error procesando mensaje JMS: " + e.getMessage());
+            log.error(() -> "Error processing JMS message: " + e.getMessage(), e);
         } catch (Exception e) {
-            logger.log(Level.SEVERE, "Unexpected error processing message: " + e.getMessage(), e);
-            System.err.println("Error inesperado procesando mensaje: " + e.getMessage());
-            e.printStackTrace();
+            log.error(() -> "Unexpected error processing message: " + e.getMessage(), e);
         }
     }
 }
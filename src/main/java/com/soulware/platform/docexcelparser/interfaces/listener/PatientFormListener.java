@@ -11,14 +11,12 @@ import com.soulware.platform.docexcelparser.application.service.PatientFormToExc
 import com.soulware.platform.docexcelparser.infrastructure.storage.MinioService;
 import com.soulware.platform.docexcelparser.infrastructure.messaging.APIGatewayPublisherService;
 import com.soulware.platform.docexcelparser.infrastructure.config.ApplicationConfig;
+import com.soulware.platform.docexcelparser.infrastructure.logging.AppLog;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * Listener para procesar formularios de pacientes desde JSON y convertirlos a Excel
@@ -27,7 +25,7 @@ import java.util.logging.Logger;
 @WebListener
 public class PatientFormListener implements ServletContextListener {
 
-    private static final Logger logger = Logger.getLogger(PatientFormListener.class.getName());
+    private static final AppLog log = AppLog.forClass(PatientFormListener.class);
 
     private static ApplicationConfig config = new ApplicationConfig();
 
@@ -48,13 +46,9 @@ public class PatientFormListener implements ServletContextListener {
 
     @Override
     public void contextInitialized(ServletContextEvent sce) {
-        System.out.println("==========================================");
-        System.out.println("=== PATIENT FORM LISTENER STARTING ===");
         String brokerUrl = config.getJmsBrokerUrl();
         String queueName = config.getJmsQueuePatientForm();
-        System.out.println("=== COLA: " + queueName + " ===");
-        System.out.println("=== TIMESTAMP: " + LocalDateTime.now() + " ===");
-        System.out.println("==========================================");
+        log.info(() -> "=== PATIENT FORM LISTENER STARTING === Cola: " + queueName);
         
         try {
             // Inicializar servicios
@@ -83,13 +77,7 @@ public class PatientFormListener implements ServletContextListener {
                         TextMessage textMessage = (TextMessage) message;
                         String messageText = textMessage.getText();
                         
-                        System.out.println("==========================================");
-                        System.out.println("=== PATIENT FORM MESSAGE RECEIVED ===");
-                        System.out.println("=== TIMESTAMP: " + LocalDateTime.now() + " ===");
-                        System.out.println("==========================================");
-                        System.out.println("Message content:");
-                        System.out.println(messageText);
-                        System.out.println("==========================================");
+                        log.debug(() -> "Patient form message received: " + AppLog.preview(messageText, 500));
                         
                         // Procesar el JSON del formulario de paciente
                         processPatientFormJSON(messageText, message.getJMSMessageID());
@@ -104,11 +92,9 @@ public class PatientFormListener implements ServletContextListener {
                             messageHistory.remove(0);
                         }
                         
-                        System.out.println("==========================================");
-                        System.out.println("=== MESSAGE STORED SUCCESSFULLY ===");
-                        System.out.println("=== MESSAGE ID: " + message.getJMSMessageID() + " ===");
-                        System.out.println("=== TOTAL MESSAGES: " + receivedMessages.size() + " ===");
-                        System.out.println("==========================================");
+                        if (log.isDebugEnabled()) {
+                            log.debug("Message stored: " + message.getJMSMessageID() + " (total: " + receivedMessages.size() + ")");
+                        }
                         
                     } else if (message instanceof BytesMessage) {
                         BytesMessage bytesMessage = (BytesMessage) message;
@@ -116,13 +102,7 @@ public class PatientFormListener implements ServletContextListener {
                         bytesMessage.readBytes(messageBytes);
                         String messageText = new String(messageBytes);
                         
-                        System.out.println("==========================================");
-                        System.out.println("=== PATIENT FORM BYTES MESSAGE RECEIVED ===");
-                        System.out.println("=== TIMESTAMP: " + LocalDateTime.now() + " ===");
-                        System.out.println("==========================================");
-                        System.out.println("Message content:");
-                        System.out.println(messageText);
-                        System.out.println("==========================================");
+                        log.debug(() -> "Patient form bytes message received: " + AppLog.preview(messageText, 500));
                         
                         // Procesar el JSON del formulario de paciente
                         processPatientFormJSON(messageText, message.getJMSMessageID());
@@ -138,12 +118,10 @@ public class PatientFormListener implements ServletContextListener {
                         }
                         
                     } else {
-                        System.out.println("=== MENSAJE NO SOPORTADO: " + message.getClass().getName() + " ===");
-                        logger.info("Unsupported message type: " + message.getClass().getName());
+                        log.warn(() -> "Unsupported message type: " + message.getClass().getName());
                     }
                 } catch (Exception e) {
-                    System.err.println("Error processing patient form message: " + e.getMessage());
-                    logger.log(Level.SEVERE, "Error processing patient form message: " + e.getMessage(), e);
+                    log.error(() -> "Error processing patient form message: " + e.getMessage(), e);
                 }
             });
 
@@ -153,19 +131,10 @@ public class PatientFormListener implements ServletContextListener {
             isInitialized = true;
             listenerStatus = "PATIENT FORM LISTENER ACTIVO - Escuchando en " + queueName;
             
-            System.out.println("==========================================");
-            System.out.println("=== SUCCESS: PATIENT FORM LISTENER CONNECTED ===");
-            System.out.println("=== QUEUE: " + queueName + " ===");
-            System.out.println("=== LISTENING FOR PATIENT FORM MESSAGES... ===");
-            System.out.println("==========================================");
-            logger.info("SUCCESS: PatientFormListener connected to " + queueName);
+            log.info(() -> "SUCCESS: PatientFormListener connected to " + queueName);
 
         } catch (JMSException e) {
-            System.err.println("==========================================");
-            System.err.println("=== FAILED TO INITIALIZE PATIENT FORM LISTENER ===");
-            System.err.println("=== ERROR: " + e.getMessage() + " ===");
-            System.err.println("==========================================");
-            logger.log(Level.SEVERE, "FAILED to initialize PatientFormListener: " + e.getMessage(), e);
+            log.error(() -> "FAILED to initialize PatientFormListener: " + e.getMessage(), e);
             listenerStatus = "PATIENT FORM LISTENER FALLIDO - " + e.getMessage();
             isInitialized = false;
         }
@@ -173,8 +142,7 @@ public class PatientFormListener implements ServletContextListener {
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
-        System.out.println("=== PATIENT FORM LISTENER STOPPING ===");
-        logger.info("=== PatientFormListener STOPPING ===");
+        log.info("=== PatientFormListener STOPPING ===");
         closeConnections();
         clearMessages();
     }
@@ -184,24 +152,20 @@ public class PatientFormListener implements ServletContextListener {
      */
     private static void processPatientFormJSON(String jsonMessage, String messageId) {
         try {
-            System.out.println("==========================================");
-            System.out.println("=== PROCESANDO FORMULARIO DE PACIENTE ===");
-            System.out.println("=== MESSAGE ID: " + messageId + " ===");
-            System.out.println("==========================================");
+            log.info(() -> "Procesando formulario de paciente: " + messageId);
             
             // Parsear JSON
             JsonNode jsonNode = objectMapper.readTree(jsonMessage);
             
             // Validar que tenga los campos básicos
             if (!jsonNode.has("firstNames") || !jsonNode.has("paternalSurname")) {
-                System.err.println("❌ JSON inválido: faltan campos obligatorios");
-                logger.severe("Invalid JSON: missing required fields");
+                log.error("❌ Invalid JSON: missing required fields");
                 return;
             }
             
             // Convertir JSON a Excel
             byte[] excelBytes = excelService.convertPatientFormToExcel(jsonNode);
-            System.out.println("✅ Excel generado: " + excelBytes.length + " bytes");
+            log.debug(() -> "✅ Excel generado: " + excelBytes.length + " bytes");
             
             // Generar nombre de archivo único
             String fileName = generateFileName(jsonNode);
@@ -211,40 +175,31 @@ public class PatientFormListener implements ServletContextListener {
             boolean uploadSuccess = minioService.uploadFile(fileKey, excelBytes, "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
             
             if (uploadSuccess) {
-                System.out.println("✅ Excel subido a Supabase Storage: " + fileKey);
+                log.debug(() -> "✅ Excel subido a Supabase Storage: " + fileKey);
                 
                 // Generar URL de descarga
                 String downloadUrl = minioService.generatePresignedGetUrl(fileKey, 60); // 60 minutos
                 
                 if (downloadUrl != null) {
-                    System.out.println("✅ URL de descarga generada: " + downloadUrl);
+                    log.debug("✅ URL de descarga generada");
                     
                     // Enviar URL al API Gateway
                     boolean apiSuccess = apiGatewayPublisher.sendExcelLinkToAPIGateway(downloadUrl, fileName, messageId);
                     
                     if (apiSuccess) {
-                        System.out.println("✅ URL enviada al API Gateway exitosamente");
-                        System.out.println("==========================================");
-                        System.out.println("=== PROCESAMIENTO COMPLETADO EXITOSAMENTE ===");
-                        System.out.println("=== ARCHIVO: " + fileName + " ===");
-                        System.out.println("=== URL: " + downloadUrl + " ===");
-                        System.out.println("==========================================");
+                        log.info(() -> "✅ Procesamiento completado: " + fileName + " enviado al API Gateway");
                     } else {
-                        System.err.println("❌ Error enviando URL al API Gateway");
-                        logger.severe("Failed to send URL to API Gateway");
+                        log.error("❌ Failed to send URL to API Gateway");
                     }
                 } else {
-                    System.err.println("❌ Error generando URL de descarga");
-                    logger.severe("Failed to generate download URL");
+                    log.error("❌ Failed to generate download URL");
                 }
             } else {
-                System.err.println("❌ Error subiendo Excel a Supabase Storage");
-                logger.severe("Failed to upload Excel to Supabase Storage");
+                log.error("❌ Failed to upload Excel to Supabase Storage");
             }
             
         } catch (Exception e) {
-            System.err.println("❌ Error procesando formulario de paciente: " + e.getMessage());
-            logger.log(Level.SEVERE, "Error processing patient form: " + e.getMessage(), e);
+            log.error(() -> "❌ Error processing patient form: " + e.getMessage(), e);
         }
     }
 
@@ -281,9 +236,9 @@ public class PatientFormListener implements ServletContextListener {
             if (connection != null) {
                 connection.close();
             }
-            System.out.println("Patient Form JMS connections closed successfully");
+            log.info("Patient Form JMS connections closed successfully");
         } catch (JMSException e) {
-            logger.log(Level.SEVERE, "Error closing Patient Form JMS connections: " + e.getMessage(), e);
+            log.error(() -> "Error closing Patient Form JMS connections: " + e.getMessage(), e);
         }
     }
 
@@ -293,7 +248,7 @@ public class PatientFormListener implements ServletContextListener {
     public static void clearMessages() {
         receivedMessages.clear();
         messageHistory.clear();
-        System.out.println("Patient Form messages cleared");
+        log.debug("Patient Form messages cleared");
     }
 
     // Métodos estáticos para consulta
@@ -0,0 +1,102 @@
+package com.soulware.platform.docexcelparser.test;
+
+import com.soulware.platform.docexcelparser.infrastructure.parser.StreamingBase64Decoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark JMH del decodificador Base64 de una pasada contra la limpieza anterior
+ * (replaceAll + matches + padding + decode) de PatientDataService y ExcelPatientParser.
+ *
+ * Ejecutar main() (u org.openjdk.jmh.Main Base64DecoderBenchmark) con el classpath
+ * de test: target/test-classes, target/classes y las dependencias de scope test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Base64DecoderBenchmark {
+
+    /** Tamaño del archivo Excel simulado en KB */
+    @Param({"256", "4096"})
+    private int sizeKb;
+
+    /** "clean": Base64 continuo; "mime": con saltos de línea cada 76 caracteres */
+    @Param({"clean", "mime"})
+    private String encoding;
+
+    private String payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        byte[] excel = new byte[sizeKb * 1024];
+        new Random(42).nextBytes(excel);
+        payload = "mime".equals(encoding)
+            ? Base64.getMimeEncoder().encodeToString(excel)
+            : Base64.getEncoder().encodeToString(excel);
+    }
+
+    /**
+     * Limpieza anterior de PatientDataService.cleanBase64Data seguida del decode del parser
+     */
+    @Benchmark
+    public byte[] legacyCleanAndDecode() {
+        String cleaned = payload.replaceAll("\\s+", "")
+                                .replaceAll("[^A-Za-z0-9+/=]", "");
+        int remainder = cleaned.length() % 4;
+        if (remainder != 0) {
+            cleaned += "====".substring(0, 4 - remainder);
+        }
+        if (!cleaned.matches("^[A-Za-z0-9+/]*={0,2}$")) {
+            throw new IllegalArgumentException("Invalid base64 characters found after cleaning");
+        }
+        return Base64.getDecoder().decode(cleaned);
+    }
+
+    /**
+     * Validación anterior de ExcelPatientParser.robustBase64Validation (decode de prueba + decode real)
+     */
+    @Benchmark
+    public byte[] legacyRobustValidation() {
+        String cleaned = payload.replaceAll("\\s+", "")
+                                .replaceAll("[^A-Za-z0-9+/=]", "");
+        if (!cleaned.matches("^[A-Za-z0-9+/]*={0,2}$")) {
+            throw new IllegalArgumentException("Base64 contiene caracteres inválidos");
+        }
+        int remainder = cleaned.length() % 4;
+        if (remainder != 0) {
+            cleaned += "====".substring(0, 4 - remainder);
+        }
+        Base64.getDecoder().decode(cleaned);
+        return Base64.getDecoder().decode(cleaned);
+    }
+
+    @Benchmark
+    public byte[] singlePassDecoder() {
+        return StreamingBase64Decoder.decode(payload);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+            .include(Base64DecoderBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -1,6 +1,7 @@
 package com.soulware.platform.docexcelparser.test;
 
 import com.soulware.platform.docexcelparser.domain.model.PatientProfile;
+import com.soulware.platform.docexcelparser.infrastructure.parser.ExcelFormat;
 import com.soulware.platform.docexcelparser.infrastructure.parser.ExcelPatientParser;
 import com.soulware.platform.docexcelparser.application.service.PatientDataService;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -8,7 +9,9 @@ import jakarta.inject.Inject;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -150,36 +153,11 @@ public class ExcelParserTester {
     }
     
     /**
-     * Valida si los bytes corresponden a un archivo Excel válido
+     * Valida si los bytes corresponden a un archivo Excel válido: firma y, para
+     * los .xlsx, directorio central con workbook (ver ExcelFormat.detect)
      */
     private boolean isValidExcelFile(byte[] bytes) {
-        if (bytes.length < 4) {
-            return false;
-        }
-        
-        // Verificar la firma ZIP (los archivos .xlsx son archivos ZIP)
-        byte[] zipSignature1 = {0x50, 0x4B, 0x03, 0x04}; // ZIP local file header
-        byte[] zipSignature2 = {0x50, 0x4B, 0x05, 0x06}; // ZIP central directory
-        byte[] zipSignature3 = {0x50, 0x4B, 0x07, 0x08}; // ZIP end of central directory
-        
-        return startsWith(bytes, zipSignature1) || 
-               startsWith(bytes, zipSignature2) || 
-               startsWith(bytes, zipSignature3);
-    }
-    
-    /**
-     * Verifica si un array de bytes comienza con otro array de bytes
-     */
-    private boolean startsWith(byte[] array, byte[] prefix) {
-        if (array.length < prefix.length) {
-            return false;
-        }
-        for (int i = 0; i < prefix.length; i++) {
-            if (array[i] != prefix[i]) {
-                return false;
-            }
-        }
-        return true;
+        return ExcelFormat.detect(bytes) != ExcelFormat.NOT_SPREADSHEET;
     }
     
     /**
@@ -347,4 +325,26 @@ public class ExcelParserTester {
         
         return testParserWithBase64(exampleBase64);
     }
+    
+    /**
+     * Regresión: formulario en horizontal (pares etiqueta | valor en la misma fila)
+     * seguido de filas de observaciones. No debe leerse como listado: un solo
+     * paciente, Ana Perez Lopez, sexo Mujer
+     */
+    public Map<String, Object> horizontalFormTest() {
+        String horizontalFormBase64 = "UEsDBBQACAgIAEp2Ul0AAAAAAAAAAAAAAAATAAAAW0NvbnRlbnRfVHlwZXNdLnhtbLVTy27CMBD8lcjXKjb0UFUVgUMfxxap9ANce5NY+CWvofD3XQc4lFKJCnHyY2ZnZlf2ZLZxtlpDQhN8w8Z8xCrwKmjju4Z9LF7qe1Zhll5LGzw0bAvIZtPJYhsBK6r12LA+5/ggBKoenEQeInhC2pCczHRMnYhSLWUH4nY0uhMq+Aw+17losOnkCVq5srl63N0X6YbJGK1RMlMssfb6SLTeC/IEduBgbyLeEIFVzxtS2bVDKDJxhsNxYTlT3RsNJhkN/4oW2tYo0EGtHJVwKKoadB0TEVM2sM85lym/SkeCgshzQlGQNL/E+zAWFRKcZViIFzkedYsxgdTYA2RnOfYygX7PiV7T7xAbK34Qrpgjb+2JKZQAA3LNCdDKnTT+lPtXSMvPEJbX8y8Ow/4v+wFEMSzjQw4xfO/pN1BLBwiRLCi8OwEAAB0EAABQSwMEFAAICAgASnZSXQAAAAAAAAAAAAAAAAsAAABfcmVscy8ucmVsc62SwUoDMRCGXyXMvZttBRFp2osIvYnUBxiT2d2wm0xIRt2+vcGLtmxBweMwM9//Mcl2P4dJvVMunqOBddOComjZ+dgbeDk+ru5AFcHocOJIBk5UYL/bPtOEUlfK4FNRlRGLgUEk3Wtd7EABS8OJYu10nANKLXOvE9oRe9Kbtr3V+ScDzpnq4Azkg1uDOmLuSQzMk/7gPL4yj03F1sYp0W9Cueu8pQe2b4GiLGRfTIBedtl8uzi2T5nrJqb03zI0C0VHbpVqAmXx9eJXjG4WjCxn+pvS9UfRgQQdCn5RL4T02R/YfQJQSwcIbjIIS+UAAABKAgAAUEsDBBQACAgIAEp2Ul0AAAAAAAAAAAAAAAAQAAAAZG9jUHJvcHMvYXBwLnhtbE2OwQrCMBBE735FyL3d6kFE0pSCCJ7sQT8gpNs20GxCsko/35zU48wwj6e6za/ijSm7QK3c140USDaMjuZWPh/X6iQ7vVNDChETO8yiHCi3cmGOZ4BsF/Qm12WmskwhecMlphnCNDmLl2BfHonh0DRHwI2RRhyr+AVKrfoYV2cNFwfdR1OQYrjfFPz3Cn4O+gNQSwcI4Xx32JEAAAC3AAAAUEsDBBQACAgIAEp2Ul0AAAAAAAAAAAAAAAARAAAAZG9jUHJvcHMvY29yZS54bWxtkF1LwzAUhv9KyH2bpNMxQ9shykBQHFhRvAvJsS02HyTRbv/etM4K6l2S9zkPJ2+5PegBfYAPvTUVZjnFCIy0qjdthR+bXbbBKERhlBisgQofIeBtXUrHpfWw99aBjz0ElDwmcOkq3MXoOCFBdqBFyBNhUvhqvRYxXX1LnJBvogVSULomGqJQIgoyCTO3GPFJqeSidO9+mAVKEhhAg4mBsJyRHzaC1+HfgTlZyEPoF2ocx3xczVzaiJHnu9uHefmsN9PfJeC6PKm59CAiKJQEPB5dquQ7eVpdXTc7XBe0WGeMZmzTsDN+Tjm7eCnJr/lJ+HW2vr5MhXSA9vc3E7c8l+RPzfUnUEsHCPAQ324GAQAAsQEAAFBLAwQUAAgICABKdlJdAAAAAAAAAAAAAAAAFAAAAHhsL3NoYXJlZFN0cmluZ3MueG1sfZRLTsMwEIb3nMLyvk3cR5qiJAUFkJAorXgcwHWG1sixgx9VxbU4AhfDqBIqceWdM5//mcm3cLE4tALtQRuuZInJMMUIJFMNl9sSv77cDXK8qC4KYyxiyklb4mmGkZP8w0F9LIxzjHwXaUq8s7a7TBLDdtBSM1QdSE/elG6p9Z96m5hOA23MDsC2IhmlaZa0lEtcFYZXha2uOxCCNwqtqQUtVZHYqkh+2ZGvQcNnv/gXWp4PPfhFgtCjajcaDKpV2wmwygRdJe2XnuEQNF+6d9D94hMIvuXfXzKY6sW6sPGtsdTvX/M9F8FQJfxfBZEbxVwL0irUALpv/Ik3tOnfmkyzWT4no359xVxH2bkN/Squ4VRa6JNaaQ0KgQBmtU9yFsigkl4dhl0QXW0M6P1xICJ9OoheD3c/peMonUTpNEqzKJ1FaR6l87ieNI4Dff9xXBeJ+yJxYSRujMSVkbgzEpdGTqwl/j2qfgBQSwcIpk7zaWoBAAC8BAAAUEsDBBQACAgIAEp2Ul0AAAAAAAAAAAAAAAANAAAAeGwvc3R5bGVzLnhtbKWSsW7DIBCG9z4FYm9wMlRRhclQKVXnpFJXYs42KhwWkMju0xeM06RTh05393P/x+Ez343WkAv4oB3WdL2qKAFsnNLY1fT9uH/c0p144CFOBg49QCTJgKGmfYzDM2Oh6cHKsHIDYDppnbcyptJ3LAwepArZZA3bVNUTs1IjFRzPdm9jII07Y6xpRZngrcObsqZFEDx8kYs0ScmjpbbGGeeJRgUjqJpus4bSQul6kUafvJ550mozFXmThXnSpc9qdD6LrNwyh5BM2pifITa0CIIPMkbwuE8FWfLjNEBN0SEUzNz3R7eS/vPVy+nOMYd08cl5lZZw//4iCW6gjcngddfnGN3A8mGMzqZEadk5lCYjr44lSdgGjDnk1X20v9hjS8oO3lT+/CQ//5qmgZa0YEqR+fe0wv43loztb/6MZrffTXwDUEsHCKkxWEBDAQAAogIAAFBLAwQUAAgICABKdlJdAAAAAAAAAAAAAAAADwAAAHhsL3dvcmtib29rLnhtbI2OTU/DMAyG7/yKyHeWlCEEVdNdpkm7cRjcvdRdo+WjcrKNn0/aqcCRk/XKj18/zebLO3ElTjYGDdVKgaBgYmfDScPHYff4Cpv2oblFPh9jPIuCh6RhyHmspUxmII9pFUcKZdNH9phL5JNMIxN2aSDK3sknpV6kRxvg3lDzfzpi31tD22gunkK+lzA5zEU2DXZM0P6YvbPoMFP1pp419OgSgWybafNp6ZZ+wSkKNNle6YBHDWri5B9wdl6mCOhJw65YXRyyjSC4tp0G3ndrEDOzL7GaW5ZTuTxrvwFQSwcIRTziydwAAABhAQAAUEsDBBQACAgIAEp2Ul0AAAAAAAAAAAAAAAAaAAAAeGwvX3JlbHMvd29ya2Jvb2sueG1sLnJlbHOtkU1rwzAMQP+K0X1x0sEYo24vY9BrP36AsJU4NLGNpbXLv6+7w9ZABzv0JIzwew+0XH+NgzpR5j4GA01Vg6Jgo+tDZ+Cw/3h6BcWCweEQAxmYiGG9Wm5pQClf2PeJVWEENuBF0pvWbD2NyFVMFMqmjXlEKc/c6YT2iB3pRV2/6HzLgDlTbZyBvHENqD3mjsQAe8zkdpJLGlcFXFZTov9oY9v2lt6j/RwpyB27nsFB349Z3MTINNDjK76pf+mff/XnmI/sieRaXkbz6JIfwTVGz669ugBQSwcIZ+uiqNUAAAA0AgAAUEsDBBQACAgIAEp2Ul0AAAAAAAAAAAAAAAAYAAAAeGwvd29ya3NoZWV0cy9zaGVldDEueG1sjZZNj5swEIbv/RXI9wZsQj5WwGqXFLWHSlW/7iRxErQBR8a76c+vSbd2MjOWcsPimdeM4THOH/90x+hN6qFVfcH4JGGR7Ddq2/b7gv36WX9csMfyQ35W+mU4SGkiy/dDwQ7GnB7ieNgcZNcME3WSvb2zU7prjB3qfTyctGy2l6LuGIskmcVd0/aszLdtJ/txwkjLXcGe+EMtBIvL/AL/buV5uLqOxrnXSr2Mgy/bgtlHNM36hzzKjZF2bPSrHKtjVF5fHuebjrZy17wezXd1/izb/cHYTjPb6v8pV41pylyrc6TtHfuEm/HiiduJCjawaBgnLfO3MsnjNzvR5p14xgS/JSpMiFtihYn0lviEiektUWMic0Rs+3LNCdecQCUz0Bwm5qA5TCxAc5hYguYwwcEq1wTC6fZS116Ka8DCPxMIWPmKQMDSrwgkAy0SCFjrmkDmdItT1+IU14DlrwhkScdmLjbDXyx4IRVGQrEzFzvDsdAVjIRi5y52jmPBe64wEopduNgFjoXfBkZCsUsXu8Sx4HuqMBKK5YnfqRIcnMGdCDPB5Ks9kNjAZjCZ2AZDyX4D4lhrATcYggkme/c5tklAMwgmmOyV41gosYTJ90vHvXUcO5VC7QgmmOzF41irFP2l7lePe/c4NiuF8hFMMNnrx7FcKfSPYILJ3kCO/UqhggQTShbeQYH9SqGDBBNM9g4K4ogAHSSYYPLVIQD7laKf/B0OxlfHqFOzl18bvW/7IVorY1RnyyZz++3ulDJSjyMr38EeDt3gKHfmQrFI/zufXa6NOr3Xjsc7dwYt/wJQSwcIvQmIt2ACAAC2CgAAUEsBAhQAFAAICAgASnZSXZEsKLw7AQAAHQQAABMAAAAAAAAAAAAAAAAAAAAAAFtDb250ZW50X1R5cGVzXS54bWxQSwECFAAUAAgICABKdlJdbjIIS+UAAABKAgAACwAAAAAAAAAAAAAAAAB8AQAAX3JlbHMvLnJlbHNQSwECFAAUAAgICABKdlJd4Xx32JEAAAC3AAAAEAAAAAAAAAAAAAAAAACaAgAAZG9jUHJvcHMvYXBwLnhtbFBLAQIUABQACAgIAEp2Ul3wEN9uBgEAALEBAAARAAAAAAAAAAAAAAAAAGkDAABkb2NQcm9wcy9jb3JlLnhtbFBLAQIUABQACAgIAEp2Ul2mTvNpagEAALwEAAAUAAAAAAAAAAAAAAAAAK4EAAB4bC9zaGFyZWRTdHJpbmdzLnhtbFBLAQIUABQACAgIAEp2Ul2pMVhAQwEAAKICAAANAAAAAAAAAAAAAAAAAFoGAAB4bC9zdHlsZXMueG1sUEsBAhQAFAAICAgASnZSXUU84sncAAAAYQEAAA8AAAAAAAAAAAAAAAAA2AcAAHhsL3dvcmtib29rLnhtbFBLAQIUABQACAgIAEp2Ul1n66Ko1QAAADQCAAAaAAAAAAAAAAAAAAAAAPEIAAB4bC9fcmVscy93b3JrYm9vay54bWwucmVsc1BLAQIUABQACAgIAEp2Ul29CYi3YAIAALYKAAAYAAAAAAAAAAAAAAAAAA4KAAB4bC93b3Jrc2hlZXRzL3NoZWV0MS54bWxQSwUGAAAAAAkACQA/AgAAtAwAAAAA";
+        
+        Map<String, Object> testResult = testParserWithBase64(horizontalFormBase64);
+        PatientProfile patient = (PatientProfile) testResult.get("parserResult");
+        List<PatientProfile> batch = excelParser.parseBatchOutcome(Base64.getDecoder().decode(horizontalFormBase64)).getPatients();
+        boolean passed = patient != null
+            && "Ana".equals(patient.getFirstNames())
+            && "Perez".equals(patient.getPaternalSurname())
+            && "Lopez".equals(patient.getMaternalSurname())
+            && "Mujer".equals(patient.getGender())
+            && batch.size() == 1;
+        testResult.put("batchPatients", batch.size());
+        testResult.put("regressionPassed", passed);
+        return testResult;
+    }
 }